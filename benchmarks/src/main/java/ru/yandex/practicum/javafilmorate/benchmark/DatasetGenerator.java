@@ -0,0 +1,277 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.yandex.practicum.javafilmorate.model.EventType;
+import ru.yandex.practicum.javafilmorate.model.OperationType;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/* Детерминированный генератор данных для бенчмарков и нагрузочных прогонов: при одинаковых размере и seed
+   получается одна и та же база. Размер задаётся числом лайков, пользователи, фильмы, дружба, отзывы и события
+   масштабируются от него. Популярность фильмов и активность пользователей подчиняются степенному закону
+   (Ципф с показателем exponent): немногие фильмы и пользователи собирают большую часть лайков */
+@Slf4j
+@Getter
+public class DatasetGenerator {
+    public static final double DEFAULT_EXPONENT = 1.0;
+    static final String[] WORDS = {"Star", "Night", "River", "Ghost", "Summer", "Iron", "Last", "Silent",
+            "Red", "Lost", "City", "Dream", "Storm", "Winter", "Shadow", "Road"};
+    private static final int BATCH_SIZE = 5_000;
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+    private static final int MAX_VOTES_PER_REVIEW = 5;
+    /* События получают время с шагом в секунду от фиксированного момента, а не от текущих часов */
+    private static final long BASE_TIME = LocalDate.of(2023, 1, 1).toEpochDay() * 86_400_000L;
+    private static final String EVENT_SQL = "INSERT INTO EVENTS (EVENT_TYPE, OPERATION_TYPE, ENTITY_ID, USER_ID, " +
+            "EVENT_TIME) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int likes;
+    private final int users;
+    private final int films;
+    private final int directors;
+    private final int friendsPerUser;
+    private final int reviews;
+    private final double exponent;
+    private final long seed;
+    private final ZipfDistribution filmPopularity;
+    private final ZipfDistribution userActivity;
+    private int friendships;
+    private int votes;
+    private int events;
+
+    public DatasetGenerator(JdbcTemplate jdbcTemplate, int likes, long seed) {
+        this(jdbcTemplate, likes, seed, DEFAULT_EXPONENT);
+    }
+
+    public DatasetGenerator(JdbcTemplate jdbcTemplate, int likes, long seed, double exponent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.likes = likes;
+        this.users = Math.max(50, likes / 50);
+        this.films = Math.max(100, likes / 100);
+        this.directors = Math.max(10, films / 20);
+        this.friendsPerUser = Math.min(20, users - 1);
+        this.reviews = Math.max(100, likes / 10);
+        this.exponent = exponent;
+        this.seed = seed;
+        this.filmPopularity = new ZipfDistribution(films, exponent);
+        this.userActivity = new ZipfDistribution(users, exponent);
+    }
+
+    /* Наполняет базу по адресу --url: прежние объекты удаляются, схема и справочники создаются миграциями */
+    public static void main(String[] args) {
+        Arguments arguments = new Arguments(args);
+        /* Без контекста Spring Boot журнал по умолчанию пишет отладку каждого пакета */
+        LoggingSystem.get(DatasetGenerator.class.getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME,
+                LogLevel.INFO);
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                arguments.getString("url", "jdbc:h2:file:./db/filmorate"),
+                arguments.getString("user", "sa"),
+                arguments.getString("password", "password"), true);
+        try {
+            new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+            Flyway.configure().dataSource(dataSource).load().migrate();
+            new DatasetGenerator(new JdbcTemplate(dataSource), arguments.getInt("likes", 100_000),
+                    arguments.getLong("seed", 42), arguments.getDouble("exponent", DEFAULT_EXPONENT)).generate();
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    public void generate() {
+        long started = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Object[]> eventBatch = new ArrayList<>(BATCH_SIZE);
+        generateUsers(random);
+        generateDirectors();
+        generateFilms(random);
+        generateLikes(random, eventBatch);
+        generateFriends(random, eventBatch);
+        generateReviews(random, eventBatch);
+        flushIfFull(EVENT_SQL, eventBatch, true);
+        log.warn("БЕНЧМАРК: База наполнена за {} мс: {} пользователей, {} фильмов, {} лайков, {} связей дружбы, " +
+                        "{} отзывов, {} оценок отзывов, {} событий", (System.nanoTime() - started) / 1_000_000, users,
+                films, likes, friendships, reviews, votes, events);
+    }
+
+    private void generateUsers(SplittableRandom random) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= users; i++) {
+            batch.add(new Object[]{i, "user" + i + "@example.com", "user" + i, "User " + i,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000)))});
+            flushIfFull("INSERT INTO USERS (USER_ID, USER_EMAIL, USER_LOGIN, USER_NAME, USER_BIRTHDAY) " +
+                    "VALUES (?, ?, ?, ?, ?)", batch, i == users);
+        }
+        restartIdentity("USERS", "USER_ID", users);
+    }
+
+    private void generateDirectors() {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= directors; i++) {
+            batch.add(new Object[]{i, WORDS[i % WORDS.length] + " Director " + i});
+            flushIfFull("INSERT INTO DIRECTORS (DIRECTOR_ID, DIRECTOR_NAME) VALUES (?, ?)", batch, i == directors);
+        }
+        restartIdentity("DIRECTORS", "DIRECTOR_ID", directors);
+    }
+
+    private void generateFilms(SplittableRandom random) {
+        List<Object[]> filmBatch = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> genreBatch = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> directorBatch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= films; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            filmBatch.add(new Object[]{i, name, "Description of film " + i,
+                    Date.valueOf(LocalDate.of(1960 + random.nextInt(64), 1 + random.nextInt(12), 1)),
+                    60 + random.nextInt(120), 1 + random.nextInt(MPA)});
+            int firstGenre = 1 + random.nextInt(GENRES);
+            genreBatch.add(new Object[]{i, firstGenre});
+            if (random.nextBoolean()) {
+                genreBatch.add(new Object[]{i, 1 + firstGenre % GENRES});
+            }
+            directorBatch.add(new Object[]{i, 1 + random.nextInt(directors)});
+            /* Связи пишутся только вместе с фильмами, на которые они ссылаются */
+            if (i == films || filmBatch.size() >= BATCH_SIZE) {
+                flushIfFull("INSERT INTO FILMS (FILM_ID, FILM_NAME, FILM_DESCRIPTION, FILM_RELEASE_DATE, " +
+                        "FILM_DURATION, MPA_ID) VALUES (?, ?, ?, ?, ?, ?)", filmBatch, true);
+                flushIfFull("INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?)", genreBatch, true);
+                flushIfFull("INSERT INTO FILMS_DIRECTORS (FILM_ID, DIRECTOR_ID) VALUES (?, ?)", directorBatch, true);
+            }
+        }
+        restartIdentity("FILMS", "FILM_ID", films);
+    }
+
+    /* Фильмы внутри пользователя не повторяются: занятый фильм заменяется следующим свободным */
+    private void generateLikes(SplittableRandom random, List<Object[]> eventBatch) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int[] quotas = likeQuotas();
+        boolean[] liked = new boolean[films + 1];
+        int[] chosen = new int[films];
+        for (int userId = 1; userId <= users; userId++) {
+            for (int k = 0; k < quotas[userId]; k++) {
+                int filmId = filmPopularity.sample(random);
+                while (liked[filmId]) {
+                    filmId = filmId % films + 1;
+                }
+                liked[filmId] = true;
+                chosen[k] = filmId;
+                batch.add(new Object[]{filmId, userId});
+                addEvent(eventBatch, EventType.LIKE, filmId, userId);
+                flushIfFull("INSERT INTO LIKES (FILM_ID, USER_ID) VALUES (?, ?)", batch, false);
+            }
+            for (int k = 0; k < quotas[userId]; k++) {
+                liked[chosen[k]] = false;
+            }
+        }
+        flushIfFull("INSERT INTO LIKES (FILM_ID, USER_ID) VALUES (?, ?)", batch, true);
+        jdbcTemplate.update("UPDATE FILMS AS F SET FILM_LIKES = (SELECT COUNT(*) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID)");
+    }
+
+    /* Число лайков пользователя пропорционально его весу, но не больше половины каталога.
+       Что не поместилось у самых активных, раздаётся остальным по одному */
+    private int[] likeQuotas() {
+        int cap = Math.max(1, films / 2);
+        int[] quotas = new int[users + 1];
+        long assigned = 0;
+        for (int userId = 1; userId <= users; userId++) {
+            quotas[userId] = (int) Math.min(cap, (long) (likes * userActivity.weight(userId)));
+            assigned += quotas[userId];
+        }
+        boolean progress = true;
+        while (assigned < likes && progress) {
+            progress = false;
+            for (int userId = users; userId >= 1 && assigned < likes; userId--) {
+                if (quotas[userId] < cap) {
+                    quotas[userId]++;
+                    assigned++;
+                    progress = true;
+                }
+            }
+        }
+        return quotas;
+    }
+
+    /* Половина друзей - соседи по id, что даёт пересекающиеся круги общения,
+       половина - популярные пользователи, выбранные по тому же степенному закону */
+    private void generateFriends(SplittableRandom random, List<Object[]> eventBatch) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        Set<Integer> friends = new HashSet<>();
+        for (int userId = 1; userId <= users; userId++) {
+            friends.clear();
+            for (int k = 1; k <= friendsPerUser; k++) {
+                int friendId = k % 2 == 1
+                        ? 1 + (userId - 1 + k + random.nextInt(friendsPerUser)) % users
+                        : userActivity.sample(random);
+                if (friendId == userId || !friends.add(friendId)) {
+                    continue;
+                }
+                batch.add(new Object[]{userId, friendId});
+                addEvent(eventBatch, EventType.FRIEND, friendId, userId);
+                friendships++;
+                flushIfFull("INSERT INTO FRIENDS (USER_ID, FRIEND_ID) VALUES (?, ?)", batch, false);
+            }
+        }
+        flushIfFull("INSERT INTO FRIENDS (USER_ID, FRIEND_ID) VALUES (?, ?)", batch, true);
+    }
+
+    /* Популярные фильмы получают больше отзывов. Полезность отзыва - сумма сгенерированных оценок */
+    private void generateReviews(SplittableRandom random, List<Object[]> eventBatch) {
+        List<Object[]> reviewBatch = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> voteBatch = new ArrayList<>(BATCH_SIZE);
+        Set<Integer> voters = new HashSet<>();
+        for (int i = 1; i <= reviews; i++) {
+            int userId = 1 + random.nextInt(users);
+            int useful = 0;
+            voters.clear();
+            int voteCount = random.nextInt(MAX_VOTES_PER_REVIEW + 1);
+            for (int k = 0; k < voteCount; k++) {
+                int voterId = userActivity.sample(random);
+                if (voterId == userId || !voters.add(voterId)) {
+                    continue;
+                }
+                int vote = random.nextInt(3) == 0 ? -1 : 1;
+                voteBatch.add(new Object[]{i, voterId, vote});
+                useful += vote;
+                votes++;
+            }
+            reviewBatch.add(new Object[]{i, "Review " + i, random.nextBoolean(), filmPopularity.sample(random),
+                    userId, useful});
+            addEvent(eventBatch, EventType.REVIEW, i, userId);
+            if (i == reviews || reviewBatch.size() >= BATCH_SIZE) {
+                flushIfFull("INSERT INTO REVIEWS (ID, CONTENT, IS_POSITIVE, FILM_ID, USER_ID, USEFUL) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)", reviewBatch, true);
+                flushIfFull("INSERT INTO REVIEW_VOTES (REVIEW_ID, USER_ID, VOTE) VALUES (?, ?, ?)", voteBatch, true);
+            }
+        }
+        restartIdentity("REVIEWS", "ID", reviews);
+    }
+
+    private void addEvent(List<Object[]> eventBatch, EventType type, int entityId, int userId) {
+        eventBatch.add(new Object[]{type.name(), OperationType.ADD.name(), entityId, userId,
+                BASE_TIME + events * 1000L});
+        events++;
+        flushIfFull(EVENT_SQL, eventBatch, false);
+    }
+
+    private void flushIfFull(String sqlQuery, List<Object[]> batch, boolean force) {
+        if (!batch.isEmpty() && (force || batch.size() >= BATCH_SIZE)) {
+            jdbcTemplate.batchUpdate(sqlQuery, batch);
+            batch.clear();
+        }
+    }
+
+    private void restartIdentity(String table, String column, int max) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + (max + 1));
+    }
+}
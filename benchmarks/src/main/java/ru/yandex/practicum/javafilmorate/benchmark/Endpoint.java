@@ -0,0 +1,65 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+
+/* Запросы нагрузочного прогона. Фильмы и пользователи выбираются по тому же степенному закону,
+   что и при генерации данных, поэтому популярные записи запрашиваются чаще */
+enum Endpoint {
+    POPULAR("popular", "GET", (dataset, random) -> "/films/popular?count=10"),
+    FILM("film", "GET", (dataset, random) -> "/films/" + film(dataset, random)),
+    SEARCH("search", "GET", (dataset, random) -> "/films/search?by=title,director&query=" +
+            DatasetGenerator.WORDS[random.nextInt(DatasetGenerator.WORDS.length)].toLowerCase(Locale.ROOT)),
+    COMMON("common", "GET", (dataset, random) -> "/films/common?userId=" + user(dataset, random) +
+            "&friendId=" + user(dataset, random)),
+    RECOMMENDATIONS("recommendations", "GET", (dataset, random) -> "/users/" + user(dataset, random) +
+            "/recommendations"),
+    FRIENDS("friends", "GET", (dataset, random) -> "/users/" + user(dataset, random) + "/friends"),
+    COMMON_FRIENDS("commonFriends", "GET", (dataset, random) -> "/users/" + user(dataset, random) +
+            "/friends/common/" + user(dataset, random)),
+    FEED("feed", "GET", (dataset, random) -> "/users/" + user(dataset, random) + "/feed"),
+    REVIEWS("reviews", "GET", (dataset, random) -> "/reviews?count=10&filmId=" + film(dataset, random)),
+    LIKE("like", "PUT", (dataset, random) -> "/films/" + film(dataset, random) + "/like/" + user(dataset, random)),
+    UNLIKE("unlike", "DELETE", (dataset, random) -> "/films/" + film(dataset, random) + "/like/" +
+            user(dataset, random));
+
+    private final String key;
+    private final String method;
+    private final BiFunction<DatasetGenerator, SplittableRandom, String> path;
+
+    Endpoint(String key, String method, BiFunction<DatasetGenerator, SplittableRandom, String> path) {
+        this.key = key;
+        this.method = method;
+        this.path = path;
+    }
+
+    static Endpoint byKey(String key) {
+        return Arrays.stream(values())
+                .filter(endpoint -> endpoint.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестный запрос " + key + ", доступны: " +
+                        Arrays.toString(Arrays.stream(values()).map(Endpoint::getKey).toArray())));
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    HttpRequest request(URI base, DatasetGenerator dataset, SplittableRandom random) {
+        return HttpRequest.newBuilder(base.resolve(path.apply(dataset, random)))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static int film(DatasetGenerator dataset, SplittableRandom random) {
+        return dataset.getFilmPopularity().sample(random);
+    }
+
+    private static int user(DatasetGenerator dataset, SplittableRandom random) {
+        return dataset.getUserActivity().sample(random);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+
+/* Поднимает контекст приложения без веб-сервера поверх H2 в памяти и наполняет базу до заданного масштаба */
+@State(Scope.Benchmark)
+public class FilmorateState {
+    @Param({"1000", "100000", "1000000"})
+    public int likes;
+
+    @Param("42")
+    public long seed;
+
+    public ConfigurableApplicationContext context;
+    public DatasetGenerator dataset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(JavaFilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.h2.console.enabled=false",
+                        "--filmorate.snapshots.enabled=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--filmorate.events.mode=sync");
+        dataset = new DatasetGenerator(context.getBean(JdbcTemplate.class), likes, seed);
+        dataset.generate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Review;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.service.UserService;
+import ru.yandex.practicum.javafilmorate.storage.dao.FriendStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.ReviewStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Горячие пути чтения. Идентификаторы пользователей выбираются случайно на каждом вызове,
+   чтобы не мерить один и тот же закэшированный ответ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathBenchmark {
+
+    @State(Scope.Thread)
+    public static class Ids {
+        private SplittableRandom random;
+        private int users;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) {
+            random = new SplittableRandom(state.seed);
+            users = state.dataset.getUsers();
+        }
+
+        int userId() {
+            return 1 + random.nextInt(users);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Beans {
+        FilmDbStorage filmStorage;
+        UserService userService;
+        FriendStorage friendStorage;
+        ReviewStorage reviewStorage;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) {
+            filmStorage = state.bean(FilmDbStorage.class);
+            userService = state.bean(UserService.class);
+            friendStorage = state.bean(FriendStorage.class);
+            reviewStorage = state.bean(ReviewStorage.class);
+        }
+    }
+
+    @Benchmark
+    public List<Film> popularFilms(Beans beans) {
+        return beans.filmStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> searchBySubstring(Beans beans) {
+        return beans.filmStorage.searchBySubstring("ght 1", "title,director");
+    }
+
+    @Benchmark
+    public List<Film> commonFilms(Beans beans, Ids ids) {
+        return beans.filmStorage.commonFilms(ids.userId(), ids.userId());
+    }
+
+    @Benchmark
+    public List<Film> recommendations(Beans beans, Ids ids) {
+        return beans.userService.findRecommendationsForUser(ids.userId());
+    }
+
+    @Benchmark
+    public List<User> userFriends(Beans beans, Ids ids) {
+        return beans.friendStorage.getUserFriends(ids.userId());
+    }
+
+    @Benchmark
+    public List<User> commonFriends(Beans beans, Ids ids) {
+        return beans.friendStorage.getCommonsFriends(ids.userId(), ids.userId());
+    }
+
+    @Benchmark
+    public List<User> friendSuggestions(Beans beans, Ids ids) {
+        return beans.userService.getFriendSuggestions(ids.userId(), 10);
+    }
+
+    @Benchmark
+    public List<Review> allReviews(Beans beans) {
+        return beans.reviewStorage.findAllReviews(null, 10);
+    }
+}
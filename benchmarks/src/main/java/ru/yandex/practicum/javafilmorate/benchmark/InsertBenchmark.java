@@ -0,0 +1,75 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import ru.yandex.practicum.javafilmorate.model.ImportRow;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.storage.dao.ImportStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Стоимость вставки одной строки: SimpleJdbcInsert, который создаётся на каждый вызов и заново читает
+   метаданные таблицы, против общей вставки хранилища и пачки строк с ключами через импорт.
+   От объёма базы почти не зависит, достаточно одного масштаба: InsertBenchmark -p likes=1000 */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class Beans {
+        JdbcTemplate jdbcTemplate;
+        UserDbStorage userStorage;
+        ImportStorage importStorage;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) {
+            jdbcTemplate = state.bean(JdbcTemplate.class);
+            userStorage = state.bean(UserDbStorage.class);
+            importStorage = state.bean(ImportStorage.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Users {
+        private long next;
+
+        User next() {
+            next++;
+            return new User(null, "insert" + next + "@yandex.ru", "insert" + next, "Insert " + next,
+                    LocalDate.parse("1990-01-01"), null);
+        }
+    }
+
+    @Benchmark
+    public Number simpleJdbcInsertPerCall(Beans beans, Users users) {
+        return new SimpleJdbcInsert(beans.jdbcTemplate)
+                .withTableName("USERS")
+                .usingGeneratedKeyColumns("USER_ID")
+                .executeAndReturnKey(users.next().userRowMap());
+    }
+
+    @Benchmark
+    public User preparedInsert(Beans beans, Users users) {
+        return beans.userStorage.addUser(users.next());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<ImportRow<User>> batchInsert(Beans beans, Users users) {
+        List<ImportRow<User>> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            rows.add(new ImportRow<>(i, users.next()));
+        }
+        beans.importStorage.importUsers(rows);
+        return rows;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/* Нагрузочный прогон в одной JVM: приложение поднимается с веб-сервером на свободном порту поверх H2 в памяти,
+   база наполняется DatasetGenerator, после чего threads потоков в замкнутом цикле отправляют HTTP-запросы
+   по заданной смеси. Первые warmup секунд не учитываются, по остальным печатаются пропускная способность
+   и перцентили задержек для каждого запроса */
+@Slf4j
+public class LoadDriver {
+    private static final String DEFAULT_MIX = "popular=20,film=15,search=10,common=5,recommendations=10," +
+            "friends=10,commonFriends=5,feed=10,reviews=10,like=3,unlike=2";
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final URI base;
+    private final DatasetGenerator dataset;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final int[] cumulativeWeights;
+
+    public LoadDriver(URI base, DatasetGenerator dataset, Map<Endpoint, Integer> mix) {
+        this.base = base;
+        this.dataset = dataset;
+        this.cumulativeWeights = new int[mix.size()];
+        int total = 0;
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            total += entry.getValue();
+            cumulativeWeights[endpoints.size()] = total;
+            endpoints.add(entry.getKey());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        Arguments arguments = new Arguments(args);
+        Map<Endpoint, Integer> mix = parseMix(arguments.getString("mix", DEFAULT_MIX));
+        int threads = arguments.getInt("threads", 8);
+        int warmup = arguments.getInt("warmup", 10);
+        int duration = arguments.getInt("duration", 30);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(JavaFilmorateApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                        "--spring.h2.console.enabled=false",
+                        "--filmorate.snapshots.enabled=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+        try {
+            DatasetGenerator dataset = new DatasetGenerator(context.getBean(JdbcTemplate.class),
+                    arguments.getInt("likes", 100_000), arguments.getLong("seed", 42),
+                    arguments.getDouble("exponent", DatasetGenerator.DEFAULT_EXPONENT));
+            dataset.generate();
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadDriver driver = new LoadDriver(URI.create("http://localhost:" + port), dataset, mix);
+            log.warn("БЕНЧМАРК: Нагрузка в {} потоков: прогрев {} с, замер {} с, смесь {}", threads, warmup,
+                    duration, mix);
+            Map<Endpoint, Result> results = driver.run(threads, warmup, duration);
+            print(results, duration, System.out);
+        } finally {
+            context.close();
+        }
+    }
+
+    public Map<Endpoint, Result> run(int threads, int warmupSeconds, int durationSeconds)
+            throws InterruptedException, ExecutionException {
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long until = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Map<Endpoint, Result>>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long workerSeed = dataset.getSeed() + i;
+                workers.add(() -> work(new SplittableRandom(workerSeed), measureFrom, until));
+            }
+            Map<Endpoint, Result> results = new EnumMap<>(Endpoint.class);
+            for (Future<Map<Endpoint, Result>> future : executor.invokeAll(workers)) {
+                future.get().forEach((endpoint, result) ->
+                        results.computeIfAbsent(endpoint, e -> new Result()).merge(result));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /* Результаты копятся в гистограммах потока и сливаются в конце, поэтому замер не добавляет конкуренции */
+    private Map<Endpoint, Result> work(SplittableRandom random, long measureFrom, long until)
+            throws InterruptedException {
+        Map<Endpoint, Result> results = new EnumMap<>(Endpoint.class);
+        long started;
+        while ((started = System.nanoTime()) < until) {
+            Endpoint endpoint = pick(random);
+            boolean success;
+            try {
+                success = client.send(endpoint.request(base, dataset, random),
+                        HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+            } catch (IOException e) {
+                success = false;
+            }
+            long finished = System.nanoTime();
+            if (started >= measureFrom) {
+                results.computeIfAbsent(endpoint, e -> new Result()).record(finished - started, success);
+            }
+        }
+        return results;
+    }
+
+    private Endpoint pick(SplittableRandom random) {
+        int target = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= target) {
+            i++;
+        }
+        return endpoints.get(i);
+    }
+
+    /* Смесь задаётся как popular=20,feed=10: имя запроса и его относительный вес */
+    static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидался элемент смеси вида name=weight: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Endpoint.byKey(pair[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Смесь запросов пуста: " + mix);
+        }
+        return weights;
+    }
+
+    static void print(Map<Endpoint, Result> results, int durationSeconds, PrintStream out) {
+        String format = "%-16s %10s %8s %10s %9s %9s %9s %9s%n";
+        out.printf(format, "Endpoint", "Requests", "Errors", "Req/s", "p50, ms", "p95, ms", "p99, ms", "max, ms");
+        Result total = new Result();
+        results.forEach((endpoint, result) -> {
+            printRow(out, format, endpoint.getKey(), result, durationSeconds);
+            total.merge(result);
+        });
+        printRow(out, format, "total", total, durationSeconds);
+    }
+
+    private static void printRow(PrintStream out, String format, String name, Result result, int durationSeconds) {
+        Histogram latencies = result.latencies;
+        out.printf(format, name, latencies.getTotalCount() + result.errors, result.errors,
+                String.format("%.1f", (double) (latencies.getTotalCount() + result.errors) / durationSeconds),
+                millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(95)),
+                millis(latencies.getValueAtPercentile(99)), millis(latencies.getMaxValue()));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    /* Задержки успешных запросов в микросекундах и число ошибок */
+    public static class Result {
+        private final Histogram latencies = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        private long errors;
+
+        void record(long nanos, boolean success) {
+            if (success) {
+                latencies.recordValue(Math.min(HIGHEST_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+            } else {
+                errors++;
+            }
+        }
+
+        void merge(Result other) {
+            latencies.add(other.latencies);
+            errors += other.errors;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Стоимость отображения одной строки в пользователя и фильм: отключённый SqlRowSet с поиском столбцов
+   по имени, RowMapper по именам и RowMapper по номерам столбцов. Каждый вызов читает страницу из PAGE_SIZE
+   строк со случайного места, поэтому время и gc.alloc.rate.norm приводятся к одной строке */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final String FILMS = "FILM_ID, FILM_NAME, FILM_DESCRIPTION, FILM_RELEASE_DATE, FILM_DURATION, " +
+            "MPA_ID, FILM_LIKES";
+
+    @State(Scope.Benchmark)
+    public static class Beans {
+        JdbcTemplate jdbcTemplate;
+        UserDbStorage userStorage;
+        int users;
+        int films;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) {
+            jdbcTemplate = state.bean(JdbcTemplate.class);
+            userStorage = state.bean(UserDbStorage.class);
+            users = state.dataset.getUsers();
+            films = state.dataset.getFilms();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pages {
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) {
+            random = new SplittableRandom(state.seed);
+        }
+
+        int after(int rows) {
+            return random.nextInt(Math.max(1, rows - PAGE_SIZE));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public List<User> usersRowSet(Beans beans, Pages pages) {
+        SqlRowSet rs = beans.jdbcTemplate.queryForRowSet("SELECT * FROM USERS WHERE USER_ID > ? ORDER BY USER_ID " +
+                "LIMIT ?", pages.after(beans.users), PAGE_SIZE);
+        List<User> users = new ArrayList<>(PAGE_SIZE);
+        while (rs.next()) {
+            users.add(new User(rs.getInt("USER_ID"), rs.getString("USER_EMAIL"), rs.getString("USER_LOGIN"),
+                    rs.getString("USER_NAME"), rs.getDate("USER_BIRTHDAY").toLocalDate(), null));
+        }
+        return users;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public List<User> usersByName(Beans beans, Pages pages) {
+        return beans.jdbcTemplate.query("SELECT * FROM USERS WHERE USER_ID > ? ORDER BY USER_ID LIMIT ?",
+                (rs, rowNum) -> new User(rs.getInt("USER_ID"), rs.getString("USER_EMAIL"),
+                        rs.getString("USER_LOGIN"), rs.getString("USER_NAME"),
+                        rs.getDate("USER_BIRTHDAY").toLocalDate(), null),
+                pages.after(beans.users), PAGE_SIZE);
+    }
+
+    /* Отображение хранилища */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public List<User> usersPositional(Beans beans, Pages pages) {
+        return beans.userStorage.findAll(new Cursor(0, pages.after(beans.users)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public List<Film> filmsRowSet(Beans beans, Pages pages) {
+        SqlRowSet rs = beans.jdbcTemplate.queryForRowSet("SELECT * FROM FILMS WHERE FILM_ID > ? ORDER BY FILM_ID " +
+                "LIMIT ?", pages.after(beans.films), PAGE_SIZE);
+        List<Film> films = new ArrayList<>(PAGE_SIZE);
+        while (rs.next()) {
+            films.add(new Film(rs.getInt("FILM_ID"), rs.getString("FILM_NAME"), rs.getString("FILM_DESCRIPTION"),
+                    rs.getDate("FILM_RELEASE_DATE").toLocalDate(), rs.getInt("FILM_DURATION"),
+                    new Mpa(rs.getInt("MPA_ID"), null), rs.getInt("FILM_LIKES")));
+        }
+        return films;
+    }
+
+    /* Строки фильмов читаются так же, как в FilmDbStorage, без догрузки жанров и режиссёров */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public List<Film> filmsPositional(Beans beans, Pages pages) {
+        return beans.jdbcTemplate.query("SELECT " + FILMS + " FROM FILMS WHERE FILM_ID > ? ORDER BY FILM_ID LIMIT ?",
+                (rs, rowNum) -> new Film(rs.getInt(1), rs.getString(2), rs.getString(3),
+                        rs.getObject(4, LocalDate.class), rs.getInt(5), new Mpa(rs.getInt(6), null), rs.getInt(7)),
+                pages.after(beans.films), PAGE_SIZE);
+    }
+}
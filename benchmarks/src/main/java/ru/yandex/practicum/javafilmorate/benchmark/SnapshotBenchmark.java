@@ -0,0 +1,61 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/* Готовность индекса лайков при запуске: полная загрузка из таблицы LIKES против восстановления из снимка,
+   отображённого в память. Снимок пишется один раз на прогон во временный файл, журнал после него пуст */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+        LikeIndex likeIndex;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) throws IOException {
+            likeIndex = state.bean(LikeIndex.class);
+            likeIndex.load();
+            file = Files.createTempFile("likes", ".snapshot");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                likeIndex.writeSnapshot(out);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public long loadFromDatabase(Snapshot snapshot) {
+        snapshot.likeIndex.invalidate();
+        snapshot.likeIndex.load();
+        return snapshot.likeIndex.sizeInBytes();
+    }
+
+    @Benchmark
+    public long restoreFromSnapshot(Snapshot snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot.file, StandardOpenOption.READ)) {
+            if (!snapshot.likeIndex.restore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))) {
+                throw new IllegalStateException("Снимок индекса лайков не восстановлен");
+            }
+        }
+        return snapshot.likeIndex.sizeInBytes();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.javafilmorate.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/* Степенное распределение на 1..n: вероятность значения k пропорциональна 1 / k^exponent.
+   Таблица накопленных весов строится один раз, выборка - двоичным поиском, объект неизменяем */
+public class ZipfDistribution {
+    private final double[] cumulative;
+
+    public ZipfDistribution(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cumulative[k - 1] = sum;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, target);
+        return 1 + (index >= 0 ? index : -index - 1);
+    }
+
+    /* Доля значения k среди всех */
+    public double weight(int k) {
+        double previous = k == 1 ? 0 : cumulative[k - 2];
+        return (cumulative[k - 1] - previous) / cumulative[cumulative.length - 1];
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.javafilmorate.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.javafilmorate.service.FilmService;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/admin")
+@AllArgsConstructor
+public class AdminController {
+    private final FilmService filmService;
+
+    @PostMapping("/likes/rebuild")
+    public Map<String, Integer> rebuildLikeCounters() {
+        log.info("КОНТРОЛЛЕР: POST-запрос по эндпоинту /admin/likes/rebuild");
+        return Map.of("updatedFilms", filmService.rebuildLikeCounters());
+    }
+}
@@ -1,12 +1,16 @@
 package ru.yandex.practicum.javafilmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.javafilmorate.model.Film;
 import ru.yandex.practicum.javafilmorate.service.FilmService;
+import ru.yandex.practicum.javafilmorate.utils.NdjsonWriter;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
@@ -19,6 +23,19 @@ import java.util.List;
 @Validated
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films/export");
+        return ResponseEntity.ok()
+                .contentType(NdjsonWriter.APPLICATION_NDJSON)
+                .body(out -> {
+                    try (NdjsonWriter<Film> writer = new NdjsonWriter<>(objectMapper, out)) {
+                        filmService.exportAll(writer);
+                    }
+                });
+    }
 
     @GetMapping("/{id}")
     public Film findById(@PathVariable int id) {
@@ -26,32 +43,14 @@ public class FilmController {
         return filmService.findById(id);
     }
 
-    @GetMapping(value = "/popular", params = "genreId")
-    public List<Film> getPopularByGenre(@RequestParam(value = "count", defaultValue = "10") @Min(1) Integer count,
-                                        @RequestParam Integer genreId) {
-        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films/popular params = {count, genreId}");
-        return filmService.getPopularByGenre(count, genreId);
-    }
-
-    @GetMapping(value = "/popular", params = "year")
-    public List<Film> getPopularByYear(@RequestParam(defaultValue = "10") @Min(1) Integer count,
-                                       @RequestParam @Min(1895) Integer year) {
-        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films/popular params = {count, year}");
-        return filmService.getPopularByYear(count, year);
-    }
-
-    @GetMapping(value = "/popular", params = {"genreId", "year"})
-    public List<Film> getPopularByGenreAndYear(@RequestParam(defaultValue = "10") @Min(1) Integer count,
-                                               @RequestParam Integer genreId,
-                                               @RequestParam @Min(1895) Integer year) {
-        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films/popular params = {count, genreId, year}");
-        return filmService.getPopularByGenreAndYear(count, genreId, year);
-    }
-
     @GetMapping(value = "/popular")
-    public List<Film> getPopularFilms(@RequestParam(value = "count", defaultValue = "10") @Min(1) Integer count) {
-        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films/popular");
-        return filmService.getPopularFilms(count);
+    public ResponseEntity<List<Film>> getPopularFilms(@RequestParam(defaultValue = "10") @Min(1) Integer count,
+                                                      @RequestParam(required = false) Integer genreId,
+                                                      @RequestParam(required = false) @Min(1895) Integer year,
+                                                      @RequestParam(required = false) String cursor) {
+        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films/popular params = {count={}, genreId={}, year={}}",
+                count, genreId, year);
+        return filmService.getPopularFilms(genreId, year, cursor, count).toResponseEntity();
     }
 
     @GetMapping("/search")
@@ -61,9 +60,10 @@ public class FilmController {
     }
 
     @GetMapping
-    public List<Film> findAll() {
+    public ResponseEntity<List<Film>> findAll(@RequestParam(required = false) Integer count,
+                                              @RequestParam(required = false) String cursor) {
         log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /films");
-        return filmService.findAll();
+        return filmService.findAll(cursor, count).toResponseEntity();
     }
 
     @GetMapping("/director/{directorId}")
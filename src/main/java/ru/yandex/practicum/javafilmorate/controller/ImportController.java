@@ -0,0 +1,50 @@
+package ru.yandex.practicum.javafilmorate.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.javafilmorate.model.ImportReport;
+import ru.yandex.practicum.javafilmorate.service.ImportService;
+
+import java.io.InputStream;
+
+@Slf4j
+@RestController
+@RequestMapping("/import")
+@AllArgsConstructor
+public class ImportController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    private final ImportService importService;
+
+    @PostMapping(value = "/films", consumes = {NDJSON, CSV})
+    public ImportReport importFilms(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                    InputStream body) {
+        log.info("КОНТРОЛЛЕР: POST-запрос по эндпоинту /import/films");
+        return importService.importFilms(body, contentType);
+    }
+
+    @PostMapping(value = "/users", consumes = {NDJSON, CSV})
+    public ImportReport importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                    InputStream body) {
+        log.info("КОНТРОЛЛЕР: POST-запрос по эндпоинту /import/users");
+        return importService.importUsers(body, contentType);
+    }
+
+    @PostMapping(value = "/likes", consumes = {NDJSON, CSV})
+    public ImportReport importLikes(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                    InputStream body) {
+        log.info("КОНТРОЛЛЕР: POST-запрос по эндпоинту /import/likes");
+        return importService.importLikes(body, contentType);
+    }
+
+    @PostMapping(value = "/friends", consumes = {NDJSON, CSV})
+    public ImportReport importFriendships(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                          InputStream body) {
+        log.info("КОНТРОЛЛЕР: POST-запрос по эндпоинту /import/friends");
+        return importService.importFriendships(body, contentType);
+    }
+}
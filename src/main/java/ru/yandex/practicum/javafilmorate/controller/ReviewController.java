@@ -2,6 +2,7 @@ package ru.yandex.practicum.javafilmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.javafilmorate.model.Review;
 import ru.yandex.practicum.javafilmorate.service.ReviewService;
@@ -41,10 +42,11 @@ public class ReviewController {
     }
 
     @GetMapping
-    List<Review> findAllReviews(@RequestParam(defaultValue = "0") Integer filmId,
-                                @RequestParam(defaultValue = "10") Integer count) {
+    ResponseEntity<List<Review>> findAllReviews(@RequestParam(defaultValue = "0") Integer filmId,
+                                                @RequestParam(defaultValue = "10") Integer count,
+                                                @RequestParam(required = false) String cursor) {
         log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /reviews");
-        return reviewService.findReviewsByFilmID(filmId, count);
+        return reviewService.findReviewsByFilmID(filmId, cursor, count).toResponseEntity();
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -62,12 +64,12 @@ public class ReviewController {
     @DeleteMapping("/{id}/like/{userId}")
     public void removeLike(@PathVariable("id") Integer reviewID, @PathVariable("userId") Integer userId) {
         log.info("КОНТРОЛЛЕР: DELETE-запрос по эндпоинту /reviews/{}/like/{}", reviewID, userId);
-        reviewService.addDislike(reviewID, userId);
+        reviewService.removeLike(reviewID, userId);
     }
 
     @DeleteMapping("/{id}/dislike/{userId}")
     public void removeDislike(@PathVariable("id") Integer reviewID, @PathVariable("userId") Integer userId) {
         log.info("КОНТРОЛЛЕР: DELETE-запрос по эндпоинту /reviews/{}/dislike/{}", reviewID, userId);
-        reviewService.addLike(reviewID, userId);
+        reviewService.removeDislike(reviewID, userId);
     }
 }
@@ -1,13 +1,17 @@
 package ru.yandex.practicum.javafilmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.javafilmorate.model.Event;
 import ru.yandex.practicum.javafilmorate.model.Film;
 import ru.yandex.practicum.javafilmorate.model.User;
 import ru.yandex.practicum.javafilmorate.service.EventService;
 import ru.yandex.practicum.javafilmorate.service.UserService;
+import ru.yandex.practicum.javafilmorate.utils.NdjsonWriter;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -18,12 +22,26 @@ import java.util.List;
 @AllArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final ObjectMapper objectMapper;
     private final EventService eventService;
 
     @GetMapping
-    public List<User> findAll() {
+    public ResponseEntity<List<User>> findAll(@RequestParam(required = false) Integer count,
+                                              @RequestParam(required = false) String cursor) {
         log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /users");
-        return userService.findAll();
+        return userService.findAll(cursor, count).toResponseEntity();
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /users/export");
+        return ResponseEntity.ok()
+                .contentType(NdjsonWriter.APPLICATION_NDJSON)
+                .body(out -> {
+                    try (NdjsonWriter<User> writer = new NdjsonWriter<>(objectMapper, out)) {
+                        userService.exportAll(writer);
+                    }
+                });
     }
 
     @GetMapping("/{id}")
@@ -44,6 +62,12 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable int id, @RequestParam(defaultValue = "10") Integer count) {
+        log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /users/{}/friends/suggestions", id);
+        return userService.getFriendSuggestions(id, count);
+    }
+
     @PostMapping
     public User addUser(@Valid @RequestBody User user) {
         log.info("КОНТРОЛЛЕР: POST-запрос по эндпоинту /users");
@@ -76,14 +100,17 @@ public class UserController {
 
 
     @GetMapping("/{userId}/recommendations")
-    public List<Film> findRecomendationsForUser(@PathVariable("userId") Integer userId) {
+    public List<Film> findRecomendationsForUser(@PathVariable("userId") Integer userId,
+                                                @RequestParam(defaultValue = "1") Integer similarUsers) {
         log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /{}/recommendations", userId);
-        return userService.findRecommendationsForUser(userId);
+        return userService.findRecommendationsForUser(userId, similarUsers);
     }
 
     @GetMapping("/{userId}/feed")
-    public List<Event> getUserFeed(@PathVariable int userId) {
+    public ResponseEntity<List<Event>> getUserFeed(@PathVariable int userId,
+                                                   @RequestParam(required = false) Integer count,
+                                                   @RequestParam(required = false) String cursor) {
         log.info("КОНТРОЛЛЕР: GET-запрос по эндпоинту /{}/feed", userId);
-        return eventService.getUserFeed(userId);
+        return eventService.getUserFeed(userId, cursor, count).toResponseEntity();
     }
 }
\ No newline at end of file
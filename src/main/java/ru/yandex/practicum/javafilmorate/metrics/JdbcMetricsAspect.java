@@ -0,0 +1,76 @@
+package ru.yandex.practicum.javafilmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/* Замер каждого вызова JdbcTemplate. Публичные методы DAO из storage.dao.implementation запоминают себя
+   на время вызова, поэтому таймер filmorate.jdbc размечен классом и методом DAO, из которого пришёл запрос,
+   а также методом JdbcTemplate и исходом. Вызовы вне DAO (загрузка индексов) помечаются как none */
+@Aspect
+@Component
+public class JdbcMetricsAspect {
+    static final String JDBC_TIMER = "filmorate.jdbc";
+    private static final String NO_DAO = "none";
+    private static final ThreadLocal<Method> CURRENT_DAO_METHOD = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public JdbcMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.javafilmorate.storage.dao.implementation..*(..))")
+    public Object bindDaoMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method previous = CURRENT_DAO_METHOD.get();
+        CURRENT_DAO_METHOD.set(((MethodSignature) joinPoint.getSignature()).getMethod());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (previous == null) {
+                CURRENT_DAO_METHOD.remove();
+            } else {
+                CURRENT_DAO_METHOD.set(previous);
+            }
+        }
+    }
+
+    @Around("execution(* org.springframework.jdbc.core.JdbcOperations.*(..))")
+    public Object timeStatement(ProceedingJoinPoint joinPoint) throws Throwable {
+        SqlStatements.increment();
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = joinPoint.proceed();
+            success = true;
+            return result;
+        } finally {
+            timer(CURRENT_DAO_METHOD.get(), joinPoint.getSignature().getName(), success)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(Method daoMethod, String operation, boolean success) {
+        String dao = daoMethod == null ? NO_DAO : daoMethod.getDeclaringClass().getSimpleName();
+        String method = daoMethod == null ? NO_DAO : daoMethod.getName();
+        String outcome = success ? "SUCCESS" : "ERROR";
+        return timers.computeIfAbsent(dao + '.' + method + '.' + operation + '.' + outcome,
+                key -> Timer.builder(JDBC_TIMER)
+                        .description("Время вызова JdbcTemplate из DAO")
+                        .tag("dao", dao)
+                        .tag("method", method)
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.javafilmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedDirectorStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedGenreStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedMpaStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.ReferenceCache;
+
+import java.util.List;
+
+/* Попадания и промахи кэшей справочников: счётчик filmorate.cache.requests по имени справочника и результату */
+@Component
+public class ReferenceCacheMetrics implements MeterBinder {
+    static final String REQUESTS_COUNTER = "filmorate.cache.requests";
+
+    private final List<ReferenceCache<?>> caches;
+
+    public ReferenceCacheMetrics(CachedMpaStorage mpaStorage, CachedGenreStorage genreStorage,
+                                 CachedDirectorStorage directorStorage) {
+        this.caches = List.of(mpaStorage.getCache(), genreStorage.getCache(), directorStorage.getCache());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ReferenceCache<?> cache : caches) {
+            FunctionCounter.builder(REQUESTS_COUNTER, cache, ReferenceCache::getHits)
+                    .description("Обращения к кэшу справочника")
+                    .tag("cache", cache.getName())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder(REQUESTS_COUNTER, cache, ReferenceCache::getMisses)
+                    .description("Обращения к кэшу справочника")
+                    .tag("cache", cache.getName())
+                    .tag("result", "miss")
+                    .register(registry);
+        }
+    }
+}
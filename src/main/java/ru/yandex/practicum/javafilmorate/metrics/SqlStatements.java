@@ -0,0 +1,32 @@
+package ru.yandex.practicum.javafilmorate.metrics;
+
+/* Счётчик SQL-запросов HTTP-запроса, который обслуживает текущий поток. Вне HTTP-запроса
+   (фоновая запись событий, асинхронная выгрузка) счёт не ведётся */
+final class SqlStatements {
+    private static final ThreadLocal<int[]> COUNTER = new ThreadLocal<>();
+
+    private SqlStatements() {
+    }
+
+    static void begin() {
+        COUNTER.set(new int[1]);
+    }
+
+    static void increment() {
+        int[] counter = COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+
+    static int current() {
+        int[] counter = COUNTER.get();
+        return counter == null ? 0 : counter[0];
+    }
+
+    static int end() {
+        int statements = current();
+        COUNTER.remove();
+        return statements;
+    }
+}
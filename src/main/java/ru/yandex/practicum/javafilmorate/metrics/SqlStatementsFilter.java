@@ -0,0 +1,102 @@
+package ru.yandex.practicum.javafilmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/* Число SQL-запросов на HTTP-запрос: распределение filmorate.sql.statements по методу и шаблону адреса
+   и, если включено filmorate.metrics.sql-statements-header, заголовок X-Sql-Statements в ответе */
+@Component
+public class SqlStatementsFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    static final String STATEMENTS_SUMMARY = "filmorate.sql.statements";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean statementsHeader;
+
+    public SqlStatementsFilter(MeterRegistry meterRegistry,
+                               @Value("${filmorate.metrics.sql-statements-header:false}") boolean statementsHeader) {
+        this.meterRegistry = meterRegistry;
+        this.statementsHeader = statementsHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatements.begin();
+        int statements;
+        try {
+            chain.doFilter(request, statementsHeader ? new StatementsHeaderResponse(response) : response);
+        } finally {
+            statements = SqlStatements.end();
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder(STATEMENTS_SUMMARY)
+                .description("Число SQL-запросов на один HTTP-запрос")
+                .baseUnit("statements")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .register(meterRegistry)
+                .record(statements);
+        /* Ответ без тела ещё не отправлен, заголовок можно поставить после обработки */
+        if (statementsHeader && !response.isCommitted()) {
+            response.setIntHeader(STATEMENTS_HEADER, statements);
+        }
+    }
+
+    /* Заголовки нельзя менять после начала записи тела, поэтому счётчик выставляется перед ней */
+    private static class StatementsHeaderResponse extends HttpServletResponseWrapper {
+
+        StatementsHeaderResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            setStatementsHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            setStatementsHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            setStatementsHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            setStatementsHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            setStatementsHeader();
+            super.sendError(sc);
+        }
+
+        private void setStatementsHeader() {
+            if (!isCommitted()) {
+                setIntHeader(STATEMENTS_HEADER, SqlStatements.current());
+            }
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package ru.yandex.practicum.javafilmorate.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
 import javax.validation.constraints.NotBlank;
 import java.util.HashMap;
 import java.util.Map;
 
-@Data
-@AllArgsConstructor
+@Value
 public class Director {
     private Integer id;
     @NotBlank(message = "Имя режиссера не может быть пустым")
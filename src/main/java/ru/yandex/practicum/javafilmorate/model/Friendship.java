@@ -0,0 +1,13 @@
+package ru.yandex.practicum.javafilmorate.model;
+
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+
+@Value
+public class Friendship {
+    @NotNull(message = "Не указан id пользователя")
+    Integer userId;
+    @NotNull(message = "Не указан id друга")
+    Integer friendId;
+}
@@ -1,12 +1,10 @@
 package ru.yandex.practicum.javafilmorate.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
 import javax.validation.constraints.NotBlank;
 
-@Data
-@AllArgsConstructor
+@Value
 public class Genre {
     private int id;
     @NotBlank(message = "Название жанра не может быть пустым")
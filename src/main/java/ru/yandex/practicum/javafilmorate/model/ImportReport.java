@@ -0,0 +1,44 @@
+package ru.yandex.practicum.javafilmorate.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Итог импорта. Ошибки перечисляются не больше чем для maxErrors строк, остальные только считаются */
+@Getter
+public class ImportReport {
+    private final String entity;
+    private final List<RowError> errors = new ArrayList<>();
+    private long imported;
+    private long rejected;
+    private boolean errorsTruncated;
+    @Getter(AccessLevel.NONE)
+    private final int maxErrors;
+
+    public ImportReport(String entity, int maxErrors) {
+        this.entity = entity;
+        this.maxErrors = maxErrors;
+    }
+
+    public void addImported(long count) {
+        imported += count;
+    }
+
+    public void reject(long line, String message) {
+        rejected++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(line, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    @Value
+    public static class RowError {
+        long line;
+        String message;
+    }
+}
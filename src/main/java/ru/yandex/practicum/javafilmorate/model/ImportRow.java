@@ -0,0 +1,15 @@
+package ru.yandex.practicum.javafilmorate.model;
+
+import lombok.Data;
+
+/* Строка импорта: номер строки во входном потоке, разобранное значение и причина отказа, если строка отклонена */
+@Data
+public class ImportRow<T> {
+    private final long line;
+    private final T value;
+    private String error;
+
+    public boolean isRejected() {
+        return error != null;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.javafilmorate.model;
+
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+
+@Value
+public class Like {
+    @NotNull(message = "Не указан id фильма")
+    Integer filmId;
+    @NotNull(message = "Не указан id пользователя")
+    Integer userId;
+}
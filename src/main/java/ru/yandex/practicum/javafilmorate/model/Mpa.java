@@ -1,12 +1,10 @@
 package ru.yandex.practicum.javafilmorate.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
 import javax.validation.constraints.NotBlank;
 
-@Data
-@AllArgsConstructor
+@Value
 public class Mpa {
     private int id;
     @NotBlank(message = "Наименование рейтинга (MPA) не может быть пустым")
@@ -1,34 +1,68 @@
 package ru.yandex.practicum.javafilmorate.service;
 
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.javafilmorate.model.Event;
 import ru.yandex.practicum.javafilmorate.storage.dao.EventStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.UserStorage;
 import ru.yandex.practicum.javafilmorate.utils.CheckUtil;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.Page;
+import ru.yandex.practicum.javafilmorate.utils.Pagination;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Slf4j
 @Service
-@AllArgsConstructor
 public class EventService {
 
-    private EventStorage eventStorage;
-    private UserStorage userStorage;
+    private final EventStorage eventStorage;
+    private final UserStorage userStorage;
+    private final EventWriter eventWriter;
+    private final Pagination pagination;
+    private final int feedPageSize;
+
+    public EventService(EventStorage eventStorage, UserStorage userStorage, EventWriter eventWriter,
+                        Pagination pagination, @Value("${filmorate.events.feed-page-size:100}") int feedPageSize) {
+        this.eventStorage = eventStorage;
+        this.userStorage = userStorage;
+        this.eventWriter = eventWriter;
+        this.pagination = pagination;
+        this.feedPageSize = feedPageSize;
+    }
 
     public void add(Event event) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на добавление event userId={}", event.getUserId());
-        eventStorage.add(event);
+        eventWriter.write(event);
     }
 
-    public List<Event> getUserFeed(int userId) {
-        CheckUtil.checkNotFound(userStorage.findById(userId));
+    public Page<Event> getUserFeed(int userId, String cursor, Integer count) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на получение ленты user с Id={}", userId);
-        return eventStorage.getUserEvents(userId);
+        /* Лента должна содержать все события пользователя, подтверждённые до запроса */
+        eventWriter.flush(userId);
+        /* Без параметров отдаётся первая страница размера feed-page-size, продолжение - по X-Next-Cursor */
+        int limit = pagination.limit(count == null ? feedPageSize : count);
+        List<Event> rows = eventStorage.getUserEvents(userId, Cursor.decode(cursor), limit + 1);
+        checkUserIfEmpty(userId, rows);
+        /* Страницы идут от новых событий к старым, внутри страницы события в хронологическом порядке */
+        Page<Event> page = Page.of(rows, limit, event -> new Cursor(event.getEventId(), event.getEventId()));
+        List<Event> items = new ArrayList<>(page.getItems());
+        Collections.reverse(items);
+        return new Page<>(items, page.getNextCursor());
     }
 
+    public void deleteUserFeed(int userId) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на удаление ленты user с Id={}", userId);
+        eventStorage.deleteUserEvents(userId);
+    }
 
+    /* Непустая лента означает, что пользователь существует, - проверяем только пустую */
+    private void checkUserIfEmpty(int userId, List<Event> events) {
+        if (events.isEmpty()) {
+            CheckUtil.checkNotFound(userStorage.findById(userId));
+        }
+    }
 }
-
@@ -0,0 +1,206 @@
+package ru.yandex.practicum.javafilmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.javafilmorate.model.Event;
+import ru.yandex.practicum.javafilmorate.storage.dao.EventStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* Запись событий ленты. В режиме async события складываются в ограниченную очередь, а отдельный поток
+   пишет их в хранилище пачками - по количеству или по истечении короткого окна. Переполненная очередь
+   блокирует вызывающий поток. В режиме sync событие пишется сразу в потоке запроса. */
+@Slf4j
+@Component
+public class EventWriter {
+    public enum Mode { SYNC, ASYNC }
+
+    private static final long IDLE_POLL_MS = 500;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final EventStorage eventStorage;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushWindowMs;
+    private final BlockingQueue<Event> queue;
+    private final Object progress = new Object();
+    /* Для каждого пользователя с событиями в очереди - сколько принято и сколько уже обработано писателем.
+       Запись о пользователе удаляется, когда обработано всё принятое */
+    private final Map<Integer, Pending> pending = new HashMap<>();
+    private volatile boolean running;
+    private Thread writer;
+
+    public EventWriter(EventStorage eventStorage,
+                       @Value("${filmorate.events.mode:async}") Mode mode,
+                       @Value("${filmorate.events.batch-size:500}") int batchSize,
+                       @Value("${filmorate.events.flush-window-ms:10}") long flushWindowMs,
+                       @Value("${filmorate.events.queue-capacity:10000}") int queueCapacity) {
+        this.eventStorage = eventStorage;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.flushWindowMs = flushWindowMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (mode != Mode.ASYNC) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "event-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("СЕРВИС: Запущен асинхронный писатель событий (пачка {}, окно {} мс, очередь {})",
+                batchSize, flushWindowMs, queue.remainingCapacity());
+    }
+
+    public void write(Event event) {
+        if (!running) {
+            eventStorage.add(event);
+            return;
+        }
+        /* Событие учитывается до постановки в очередь, поэтому flush дождётся и событий, ещё не попавших в неё */
+        synchronized (progress) {
+            pending.computeIfAbsent(event.getUserId(), userId -> new Pending()).accepted++;
+        }
+        try {
+            /* Очередь ограничена: при переполнении запрос ждёт, пока писатель освободит место */
+            while (!queue.offer(event, IDLE_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    writeSync(event);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeSync(event);
+        }
+    }
+
+    /* Дожидается записи событий пользователя, принятых до вызова. События других пользователей не ждём */
+    public void flush(int userId) {
+        if (writer == null) {
+            return;
+        }
+        synchronized (progress) {
+            Pending user = pending.get(userId);
+            if (user == null) {
+                return;
+            }
+            long target = user.accepted;
+            try {
+                while (user.processed < target && writer.isAlive()) {
+                    progress.wait(IDLE_POLL_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        /* Если писатель не успел, дописываем остаток в текущем потоке */
+        List<Event> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+        log.info("СЕРВИС: Асинхронный писатель событий остановлен");
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushWindowMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    /* При остановке окно не дожидаемся: пачка пишется сразу, пока база ещё открыта */
+                    if (batch.size() >= batchSize || left <= 0 || !running) {
+                        break;
+                    }
+                    /* Ждём короткими отрезками, чтобы stop() не ждал конца длинного окна */
+                    Event next = queue.poll(Math.min(left, TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MS)),
+                            TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Event> batch) {
+        try {
+            eventStorage.addAll(batch);
+        } catch (RuntimeException e) {
+            /* Пачка откатилась целиком - пишем по одному, чтобы потерять только ошибочные события */
+            log.warn("СЕРВИС: Не удалось записать пачку из {} событий, запись по одному", batch.size(), e);
+            for (Event event : batch) {
+                try {
+                    eventStorage.add(event);
+                } catch (RuntimeException ex) {
+                    log.error("СЕРВИС: Событие userId={} отброшено", event.getUserId(), ex);
+                }
+            }
+        }
+        markProcessed(batch);
+    }
+
+    private void writeSync(Event event) {
+        try {
+            eventStorage.add(event);
+        } finally {
+            markProcessed(List.of(event));
+        }
+    }
+
+    private void markProcessed(List<Event> events) {
+        synchronized (progress) {
+            for (Event event : events) {
+                Pending user = pending.get(event.getUserId());
+                if (user != null && ++user.processed == user.accepted) {
+                    pending.remove(event.getUserId());
+                }
+            }
+            progress.notifyAll();
+        }
+    }
+
+    private static class Pending {
+        private long accepted;
+        private long processed;
+    }
+}
@@ -10,8 +10,12 @@ import ru.yandex.practicum.javafilmorate.model.OperationType;
 import ru.yandex.practicum.javafilmorate.storage.dao.FilmStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.LikeStorage;
 import ru.yandex.practicum.javafilmorate.utils.CheckUtil;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.Page;
+import ru.yandex.practicum.javafilmorate.utils.Pagination;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -20,6 +24,7 @@ public class FilmService {
     private final FilmStorage filmStorage;
     private final LikeStorage likeStorage;
     private final EventService eventService;
+    private final Pagination pagination;
 
     public Film findById(Integer filmId) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на получение фильма по id {}", filmId);
@@ -36,9 +41,16 @@ public class FilmService {
         return filmStorage.updateFilm(film);
     }
 
-    public List<Film> findAll() {
-        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка фильмов");
-        return filmStorage.findAll();
+    public Page<Film> findAll(String cursor, Integer count) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение страницы списка фильмов");
+        int limit = pagination.limit(count);
+        return Page.of(filmStorage.findAll(Cursor.decode(cursor), limit + 1), limit,
+                film -> new Cursor(film.getId(), film.getId()));
+    }
+
+    public void exportAll(Consumer<Film> action) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на потоковую выгрузку всех фильмов");
+        filmStorage.streamAll(action);
     }
 
     public void addLike(Integer filmId, Integer userId) {
@@ -55,9 +67,17 @@ public class FilmService {
         eventService.add(new Event(EventType.LIKE, OperationType.REMOVE, filmId, userId));
     }
 
-    public List<Film> getPopularFilms(Integer limit) {
-        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка {} самых популярных фильмов", limit);
-        return filmStorage.getPopularFilms(limit);
+    public int rebuildLikeCounters() {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на пересчёт счётчиков отметок \"like\"");
+        return likeStorage.rebuildLikeCounters();
+    }
+
+    public Page<Film> getPopularFilms(Integer genreId, Integer year, String cursor, Integer count) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка {} самых популярных фильмов " +
+                "(жанр {}, год {})", count, genreId, year);
+        int limit = pagination.limit(count);
+        return Page.of(filmStorage.getPopular(genreId, year, Cursor.decode(cursor), limit + 1), limit,
+                film -> new Cursor(film.getLikes(), film.getId()));
     }
 
     public void deleteFilm(int filmId) {
@@ -71,24 +91,6 @@ public class FilmService {
         return filmStorage.commonFilms(userId, friendId);
     }
 
-    public List<Film> getPopularByGenre(int count, int genreId) {
-        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка {} самых популярных фильмов в жанре " +
-                "{}.", count, genreId);
-        return filmStorage.getPopularByGenre(count, genreId);
-    }
-
-    public List<Film> getPopularByYear(int count, int year) {
-        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка {} самых популярных фильмов," +
-                " выпущенных в {} году.", count, year);
-        return filmStorage.getPopularByYear(count, year);
-    }
-
-    public List<Film> getPopularByGenreAndYear(int count, int genreId, int year) {
-        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка {} самых популярных фильмов в жанре " +
-                "{}, выпущенных в {} году.", count, genreId, year);
-        return filmStorage.getPopularByGenreAndYear(count, genreId, year);
-    }
-
     public List<Film> searchBySubstring(String query, String by) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка всех фильмов, содержащих строку {}", query);
         return filmStorage.searchBySubstring(query, by);
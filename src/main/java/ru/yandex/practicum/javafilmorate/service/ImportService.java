@@ -0,0 +1,233 @@
+package ru.yandex.practicum.javafilmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.javafilmorate.model.*;
+import ru.yandex.practicum.javafilmorate.storage.dao.ImportStorage;
+import ru.yandex.practicum.javafilmorate.utils.CsvReader;
+import ru.yandex.practicum.javafilmorate.utils.InvalidDataException;
+import ru.yandex.practicum.javafilmorate.utils.NdjsonWriter;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/* Массовый импорт из NDJSON или CSV. Поток читается построчно, строки проверяются так же, как в POST-запросах,
+   и пишутся порциями по chunkSize в отдельных транзакциях, поэтому память не зависит от размера файла */
+@Slf4j
+@Service
+public class ImportService {
+    private static final String LIST_SEPARATOR = "\\|";
+    private static final Set<String> REFERENCE_COLUMNS = Set.of("mpa");
+    private static final Set<String> REFERENCE_LIST_COLUMNS = Set.of("genres", "directors");
+
+    private final ImportStorage importStorage;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public ImportService(ImportStorage importStorage, ObjectMapper objectMapper, Validator validator,
+                         @Value("${filmorate.import.chunk-size:1000}") int chunkSize,
+                         @Value("${filmorate.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.importStorage = importStorage;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ImportReport importFilms(InputStream body, MediaType contentType) {
+        return importRows("films", body, contentType, Film.class, rows -> {
+            rows.forEach(row -> {
+                Film film = row.getValue();
+                if (film.getGenres() == null) {
+                    film.setGenres(new HashSet<>());
+                }
+                if (film.getDirectors() == null) {
+                    film.setDirectors(new HashSet<>());
+                }
+            });
+            importStorage.importFilms(rows);
+        });
+    }
+
+    public ImportReport importUsers(InputStream body, MediaType contentType) {
+        return importRows("users", body, contentType, User.class, importStorage::importUsers);
+    }
+
+    public ImportReport importLikes(InputStream body, MediaType contentType) {
+        return importRows("likes", body, contentType, Like.class, importStorage::importLikes,
+                importStorage::likesImported);
+    }
+
+    public ImportReport importFriendships(InputStream body, MediaType contentType) {
+        return importRows("friends", body, contentType, Friendship.class, importStorage::importFriendships,
+                importStorage::friendshipsImported);
+    }
+
+    private <T> ImportReport importRows(String entity, InputStream body, MediaType contentType, Class<T> type,
+                                        Consumer<List<ImportRow<T>>> writer) {
+        return importRows(entity, body, contentType, type, writer, () -> { });
+    }
+
+    /* completion вызывается после импорта, если записана хотя бы одна строка, - в том числе когда чтение потока
+       оборвалось после нескольких записанных порций */
+    private <T> ImportReport importRows(String entity, InputStream body, MediaType contentType, Class<T> type,
+                                        Consumer<List<ImportRow<T>>> writer, Runnable completion) {
+        log.info("СЕРВИС: Импорт {} из потока {}", entity, contentType);
+        ImportReport report = new ImportReport(entity, maxReportedErrors);
+        List<ImportRow<T>> chunk = new ArrayList<>(chunkSize);
+        Consumer<ImportRow<T>> collector = row -> {
+            if (row.isRejected()) {
+                report.reject(row.getLine(), row.getError());
+                return;
+            }
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                flush(chunk, writer, report);
+            }
+        };
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (NdjsonWriter.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+                readNdjson(reader, type, collector);
+            } else if (MediaType.parseMediaType(CsvReader.TEXT_CSV).isCompatibleWith(contentType)) {
+                readCsv(new CsvReader(reader), type, collector);
+            } else {
+                throw new InvalidDataException("Импорт поддерживает только форматы " +
+                        NdjsonWriter.APPLICATION_NDJSON + " и " + CsvReader.TEXT_CSV);
+            }
+            flush(chunk, writer, report);
+        } catch (IOException e) {
+            throw new InvalidDataException("Не удалось прочитать поток импорта: " + e.getMessage());
+        } finally {
+            if (report.getImported() > 0) {
+                completion.run();
+            }
+        }
+        log.info("СЕРВИС: Импорт {} завершён: записано {}, отклонено {}", entity, report.getImported(),
+                report.getRejected());
+        return report;
+    }
+
+    private <T> void readNdjson(BufferedReader reader, Class<T> type, Consumer<ImportRow<T>> collector)
+            throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                collector.accept(rejected(lineNumber, "Некорректный JSON: " + e.getOriginalMessage()));
+                continue;
+            }
+            collector.accept(toRow(lineNumber, node, type));
+        }
+    }
+
+    /* Первая запись CSV - заголовок с именами полей. Ссылки на рейтинг задаются id,
+       списки жанров и режиссёров - id через вертикальную черту */
+    private <T> void readCsv(CsvReader reader, Class<T> type, Consumer<ImportRow<T>> collector) throws IOException {
+        List<String> header = reader.next();
+        if (header == null) {
+            return;
+        }
+        List<String> record;
+        while ((record = reader.next()) != null) {
+            long lineNumber = reader.getRecordLine();
+            if (record.size() != header.size()) {
+                collector.accept(rejected(lineNumber, "Ожидалось полей: " + header.size() + ", получено: " +
+                        record.size()));
+                continue;
+            }
+            ObjectNode node = objectMapper.createObjectNode();
+            for (int i = 0; i < header.size(); i++) {
+                String column = header.get(i).trim();
+                String value = record.get(i).trim();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if (REFERENCE_COLUMNS.contains(column)) {
+                    node.putObject(column).put("id", value);
+                } else if (REFERENCE_LIST_COLUMNS.contains(column)) {
+                    ArrayNode ids = node.putArray(column);
+                    for (String id : value.split(LIST_SEPARATOR)) {
+                        ids.addObject().put("id", id.trim());
+                    }
+                } else {
+                    node.put(column, value);
+                }
+            }
+            collector.accept(toRow(lineNumber, node, type));
+        }
+    }
+
+    private <T> ImportRow<T> toRow(long lineNumber, JsonNode node, Class<T> type) {
+        T value;
+        try {
+            value = objectMapper.treeToValue(node, type);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return rejected(lineNumber, "Некорректные данные: " + e.getMessage().split("\n")[0]);
+        }
+        ImportRow<T> row = new ImportRow<>(lineNumber, value);
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            row.setError(violations.stream().map(ConstraintViolation::getMessage).sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return row;
+    }
+
+    private static <T> ImportRow<T> rejected(long lineNumber, String message) {
+        ImportRow<T> row = new ImportRow<>(lineNumber, null);
+        row.setError(message);
+        return row;
+    }
+
+    private static <T> void flush(List<ImportRow<T>> chunk, Consumer<List<ImportRow<T>>> writer,
+                                  ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            writer.accept(chunk);
+        } catch (DataAccessException e) {
+            /* Порция откатилась целиком */
+            log.warn("СЕРВИС: Порция импорта из {} строк не записана", chunk.size(), e);
+            chunk.forEach(row -> row.setError("Ошибка записи порции: " + e.getMostSpecificCause().getMessage()));
+        }
+        long imported = 0;
+        for (ImportRow<T> row : chunk) {
+            if (row.isRejected()) {
+                report.reject(row.getLine(), row.getError());
+            } else {
+                imported++;
+            }
+        }
+        report.addImported(imported);
+        chunk.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.javafilmorate.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(value = "filmorate.likes.rebuild-on-startup", havingValue = "true")
+public class LikeCountersInitializer {
+    private final FilmService filmService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildLikeCounters() {
+        int updated = filmService.rebuildLikeCounters();
+        log.info("СЕРВИС: При запуске пересчитаны счётчики отметок \"like\" у {} фильмов", updated);
+    }
+}
@@ -8,6 +8,9 @@ import ru.yandex.practicum.javafilmorate.model.EventType;
 import ru.yandex.practicum.javafilmorate.model.OperationType;
 import ru.yandex.practicum.javafilmorate.model.Review;
 import ru.yandex.practicum.javafilmorate.storage.dao.ReviewStorage;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.Page;
+import ru.yandex.practicum.javafilmorate.utils.Pagination;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 
@@ -19,11 +22,13 @@ public class ReviewService {
 
     private final ReviewStorage reviewStorage;
     private final EventService eventService;
+    private final Pagination pagination;
 
     @Autowired
-    public ReviewService(ReviewStorage reviewStorage, EventService eventService) {
+    public ReviewService(ReviewStorage reviewStorage, EventService eventService, Pagination pagination) {
         this.reviewStorage = reviewStorage;
         this.eventService = eventService;
+        this.pagination = pagination;
     }
 
     public Review add(Review review) {
@@ -45,9 +50,13 @@ public class ReviewService {
         return newReview;
     }
 
-    public List<Review> findReviewsByFilmID(int filmID, int count) {
+    public Page<Review> findReviewsByFilmID(int filmID, String cursor, Integer count) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка отзывов на фильм с id {}", filmID);
-        return (filmID != 0) ? reviewStorage.findReviewsByFilmID(filmID, count) : reviewStorage.findAllReviews(count);
+        int limit = pagination.limit(count);
+        Cursor after = Cursor.decode(cursor);
+        List<Review> rows = (filmID != 0) ? reviewStorage.findReviewsByFilmID(filmID, after, limit + 1)
+                : reviewStorage.findAllReviews(after, limit + 1);
+        return Page.of(rows, limit, review -> new Cursor(review.getUseful(), review.getReviewId()));
     }
 
     public Review findReviewByID(int reviewID) {
@@ -68,16 +77,24 @@ public class ReviewService {
     public void addLike(int reviewID, int userID) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на добавление лайка на отзыв по id {} от пользователя с id {} ",
                 reviewID, userID);
-        Review review = findReviewByID(reviewID);
-        review.setUseful(review.getUseful() + 1);
-        reviewStorage.updateUseful(review);
+        reviewStorage.setVote(reviewID, userID, 1);
     }
 
     public void addDislike(int reviewID, int userID) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на добавление дислайка на отзыв по id {} от пользователя с id {} ",
                 reviewID, userID);
-        Review review = findReviewByID(reviewID);
-        review.setUseful(review.getUseful() - 1);
-        reviewStorage.updateUseful(review);
+        reviewStorage.setVote(reviewID, userID, -1);
+    }
+
+    public void removeLike(int reviewID, int userID) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на удаление лайка на отзыв по id {} от пользователя с id {} ",
+                reviewID, userID);
+        reviewStorage.removeVote(reviewID, userID, 1);
+    }
+
+    public void removeDislike(int reviewID, int userID) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на удаление дислайка на отзыв по id {} от пользователя с id {} ",
+                reviewID, userID);
+        reviewStorage.removeVote(reviewID, userID, -1);
     }
 }
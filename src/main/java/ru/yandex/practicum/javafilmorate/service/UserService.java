@@ -7,21 +7,29 @@ import ru.yandex.practicum.javafilmorate.model.*;
 import ru.yandex.practicum.javafilmorate.storage.dao.FilmStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.FriendStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.UserStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
 import ru.yandex.practicum.javafilmorate.utils.CheckUtil;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.InvalidDataException;
+import ru.yandex.practicum.javafilmorate.utils.Page;
+import ru.yandex.practicum.javafilmorate.utils.Pagination;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 @AllArgsConstructor
 public class UserService {
+    private static final int MAX_SIMILAR_USERS = 100;
+    private static final int MAX_FRIEND_SUGGESTIONS = 100;
+
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
     private final FriendStorage friendStorage;
     private final EventService eventService;
+    private final Pagination pagination;
+    private final LikeIndex likeIndex;
 
     public User addUser(User user) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на добавление пользователя с id {}", user.getId());
@@ -33,9 +41,16 @@ public class UserService {
         return userStorage.updateUser(user);
     }
 
-    public List<User> findAll() {
-        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение списка всех пользователей");
-        return userStorage.findAll();
+    public Page<User> findAll(String cursor, Integer count) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение страницы списка пользователей");
+        int limit = pagination.limit(count);
+        return Page.of(userStorage.findAll(Cursor.decode(cursor), limit + 1), limit,
+                user -> new Cursor(user.getId(), user.getId()));
+    }
+
+    public void exportAll(Consumer<User> action) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на потоковую выгрузку всех пользователей");
+        userStorage.streamAll(action);
     }
 
     public void addFriend(Integer userId, Integer friendId) {
@@ -63,6 +78,15 @@ public class UserService {
         return friendStorage.getCommonsFriends(userId, friendId);
     }
 
+    public List<User> getFriendSuggestions(Integer userId, int count) {
+        log.info("СЕРВИС: Отправлен запрос к хранилищу на получение {} рекомендаций друзей для пользователя с id {}",
+                count, userId);
+        if (count < 1) {
+            throw new InvalidDataException("Количество рекомендаций друзей должно быть больше 0");
+        }
+        return friendStorage.getFriendSuggestions(userId, Math.min(count, MAX_FRIEND_SUGGESTIONS));
+    }
+
     public User findById(Integer userId) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на получение пользователя по id {}", userId);
         return userStorage.findById(userId);
@@ -71,58 +95,22 @@ public class UserService {
     public void deleteUser(int userId) {
         log.info("СЕРВИС: Отправлен запрос к хранилищу на удаление у пользователя с id {}.", userId);
         CheckUtil.checkNotFound(userStorage.deleteUser(userId), " пользователь с id=" + userId);
+        eventService.deleteUserFeed(userId);
     }
 
     public List<Film> findRecommendationsForUser(Integer userId) {
-        log.info("СЕРВИС: Обработка запроса на рекомендации фильмов для пользователя с id {}", userId);
-        /* Получаем матрицу всех лайков: каждый элемент содержит: Id фильма + список лайков этому фильму */
-        Map<Integer, Set<Integer>> likes = userStorage.getAllLikes();
-        /* Формируем список Id фильмов, которые лайкнул юзер, и список наборов лайков, где присутствует юзер */
-        List<Integer> userFilmsListId = new ArrayList<>();
-        List<Set<Integer>> listsIdUserPresent = new ArrayList<>();
-        for (Map.Entry<Integer, Set<Integer>> filmLikes : likes.entrySet())
-            if (filmLikes.getValue().contains(userId)) {
-                userFilmsListId.add(filmLikes.getKey());
-                listsIdUserPresent.add(filmLikes.getValue());
-            }
-        /* Определяем, какой юзер(похожий) чаще всего лайкал те же фильмы, что и юзер */
-        int similarUserId = findSimilarUserId(listsIdUserPresent, userId);
-        /* Заполняем список Id фильмов, которые лайкнул похожий юзер  */
-        List<Integer> similarUserFilmsListId = new ArrayList<>();
-        for (Map.Entry<Integer, Set<Integer>> filmLikes : likes.entrySet())
-            if (filmLikes.getValue().contains(similarUserId))
-                similarUserFilmsListId.add(filmLikes.getKey());
-        /* Сравниваем списки фильмов, оставляем фильмы, которые лайкнул похожий юзер, а основной не лайкнул  */
-        similarUserFilmsListId.removeAll(userFilmsListId);
-        /* Получаем фильмы по Id  */
-        List<Film> films = new ArrayList<>();
-        similarUserFilmsListId.forEach(filmId ->
-                films.add(filmStorage.findById(filmId))
-        );
-
-        return films;
+        return findRecommendationsForUser(userId, 1);
     }
 
-    private int findSimilarUserId(List<Set<Integer>> listsIdUserPresent, int userId) {
-        int similarUserId = 0;
-        int counterSimilarFilms = 0;
-        /* Идем по списку наборов лайков для каждого фильма */
-        for (int i = 0; i < listsIdUserPresent.size() && counterSimilarFilms < (listsIdUserPresent.size() - i); i++)
-            /* Идем по конкретному набору лайков для конкретного фильиа */
-            for (int candidateUserId : listsIdUserPresent.get(i))
-                if (candidateUserId != userId && candidateUserId != similarUserId) {
-                    /* Счетчик начинается с 1, т.к. кандидат в одном начальном наборе лайков с основным юзером */
-                    int tmpCounter = 1;
-                    /* Проходим по наборам лайков после текущего. Если находим кандидата в списке, то увеличиваем счетчик */
-                    for (int j = i + 1; j < listsIdUserPresent.size(); j++)
-                        if (listsIdUserPresent.get(j).contains(candidateUserId))
-                            tmpCounter++;
-                    /* Счетчик текущего кандидата сравниваем со счетчиком последнего похожего юзера */
-                    if (tmpCounter > counterSimilarFilms) {
-                        counterSimilarFilms = tmpCounter;
-                        similarUserId = candidateUserId;
-                    }
-                }
-        return similarUserId;
+    public List<Film> findRecommendationsForUser(Integer userId, int similarUsers) {
+        log.info("СЕРВИС: Обработка запроса на рекомендации фильмов для пользователя с id {} по {} похожим " +
+                "пользователям", userId, similarUsers);
+        if (similarUsers < 1) {
+            throw new InvalidDataException("Количество похожих пользователей должно быть больше 0");
+        }
+        /* Похожие пользователи - с наибольшим числом общих лайков, рекомендуем их фильмы, которых у пользователя нет */
+        List<LikeIndex.Similarity> similar = likeIndex.findSimilarUsers(userId,
+                Math.min(similarUsers, MAX_SIMILAR_USERS));
+        return filmStorage.findByIds(likeIndex.recommend(userId, similar));
     }
 }
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.javafilmorate.storage.cache;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.javafilmorate.model.Director;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.storage.dao.DirectorStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.DirectorDbStorage;
+
+import java.util.List;
+import java.util.Set;
+
+@Primary
+@Repository
+public class CachedDirectorStorage implements DirectorStorage {
+    private final DirectorDbStorage directorStorage;
+    private final ReferenceCache<Director> cache;
+
+    public CachedDirectorStorage(DirectorDbStorage directorStorage) {
+        this.directorStorage = directorStorage;
+        this.cache = new ReferenceCache<>("DIRECTORS", directorStorage::findAll, Director::getId);
+    }
+
+    @Override
+    public List<Director> findAll() {
+        return cache.getAll();
+    }
+
+    @Override
+    public Director findById(Integer directorId) {
+        Director director = directorId != null ? cache.get(directorId) : null;
+        return director != null ? director : directorStorage.findById(directorId);
+    }
+
+    @Override
+    public Director addDirector(Director director) {
+        try {
+            return directorStorage.addDirector(director);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public Director updateDirector(Director director) {
+        try {
+            return directorStorage.updateDirector(director);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void deleteDirector(Integer directorId) {
+        try {
+            directorStorage.deleteDirector(directorId);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public Set<Director> findDirectorsByFilmId(Integer filmId) {
+        return directorStorage.findDirectorsByFilmId(filmId);
+    }
+
+    @Override
+    public void addFilmDirectors(Film film) {
+        directorStorage.addFilmDirectors(film);
+    }
+
+    @Override
+    public void deleteFilmDirectors(Film film) {
+        directorStorage.deleteFilmDirectors(film);
+    }
+
+    public ReferenceCache<Director> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.javafilmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.javafilmorate.model.Event;
+import ru.yandex.practicum.javafilmorate.storage.dao.EventStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.EventDbStorage;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Лента с кэшем последних событий активных пользователей. Буфер пользователя создаётся при первом чтении
+   первой страницы и дальше пополняется при записи, поэтому свежие страницы ленты отдаются без запроса к БД. */
+@Slf4j
+@Primary
+@Repository
+public class CachedEventStorage implements EventStorage {
+    private final EventDbStorage eventStorage;
+    private final int eventsPerUser;
+    private final Map<Integer, RecentEvents> recent;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachedEventStorage(EventDbStorage eventStorage,
+                              @Value("${filmorate.events.recent-cache-size:200}") int eventsPerUser,
+                              @Value("${filmorate.events.recent-cache-users:10000}") int maxUsers) {
+        this.eventStorage = eventStorage;
+        this.eventsPerUser = eventsPerUser;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, RecentEvents> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    @Override
+    public Event add(Event event) {
+        Event added = eventStorage.add(event);
+        append(added);
+        return added;
+    }
+
+    @Override
+    public void addAll(List<Event> events) {
+        eventStorage.addAll(events);
+        events.forEach(this::append);
+    }
+
+    @Override
+    public List<Event> getUserEvents(int userId) {
+        return eventStorage.getUserEvents(userId);
+    }
+
+    @Override
+    public List<Event> getUserEvents(int userId, Cursor before, int limit) {
+        RecentEvents events;
+        boolean created = false;
+        synchronized (recent) {
+            events = recent.get(userId);
+            if (events == null && before == null && limit <= eventsPerUser) {
+                /* Буфер регистрируется до чтения из БД, чтобы не потерять события, записанные во время загрузки */
+                events = new RecentEvents(eventsPerUser);
+                recent.put(userId, events);
+                created = true;
+            }
+        }
+        if (events == null) {
+            misses.increment();
+            return eventStorage.getUserEvents(userId, before, limit);
+        }
+        if (created) {
+            log.info("КЭШ: Загрузка последних событий ленты user с Id={}", userId);
+            try {
+                List<Event> tail = eventStorage.getUserEvents(userId, null, eventsPerUser);
+                events.load(tail, tail.size() < eventsPerUser);
+            } catch (RuntimeException e) {
+                synchronized (recent) {
+                    recent.remove(userId, events);
+                }
+                throw e;
+            }
+        }
+        List<Event> page = events.page(before, limit);
+        if (page == null) {
+            misses.increment();
+            return eventStorage.getUserEvents(userId, before, limit);
+        }
+        hits.increment();
+        return page;
+    }
+
+    @Override
+    public void deleteUserEvents(int userId) {
+        try {
+            eventStorage.deleteUserEvents(userId);
+        } finally {
+            synchronized (recent) {
+                recent.remove(userId);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void append(Event event) {
+        RecentEvents events;
+        synchronized (recent) {
+            events = recent.get(event.getUserId());
+        }
+        if (events != null) {
+            events.append(event);
+        }
+    }
+}
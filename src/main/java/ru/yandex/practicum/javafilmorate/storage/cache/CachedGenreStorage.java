@@ -0,0 +1,52 @@
+package ru.yandex.practicum.javafilmorate.storage.cache;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Genre;
+import ru.yandex.practicum.javafilmorate.storage.dao.GenreStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.GenreDbStorage;
+
+import java.util.List;
+
+@Primary
+@Repository
+public class CachedGenreStorage implements GenreStorage {
+    private final GenreDbStorage genreStorage;
+    private final ReferenceCache<Genre> cache;
+
+    public CachedGenreStorage(GenreDbStorage genreStorage) {
+        this.genreStorage = genreStorage;
+        this.cache = new ReferenceCache<>("GENRES", genreStorage::findAll, Genre::getId);
+    }
+
+    @Override
+    public Genre findById(int genreId) {
+        Genre genre = cache.get(genreId);
+        return genre != null ? genre : genreStorage.findById(genreId);
+    }
+
+    @Override
+    public List<Genre> findAll() {
+        return cache.getAll();
+    }
+
+    @Override
+    public void reloadGenres(Film film) {
+        genreStorage.reloadGenres(film);
+    }
+
+    @Override
+    public void deleteFilmGenre(Film film) {
+        genreStorage.deleteFilmGenre(film);
+    }
+
+    @Override
+    public void addFilmGenre(Film film) {
+        genreStorage.addFilmGenre(film);
+    }
+
+    public ReferenceCache<Genre> getCache() {
+        return cache;
+    }
+}
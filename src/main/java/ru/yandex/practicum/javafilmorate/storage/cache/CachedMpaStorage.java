@@ -0,0 +1,36 @@
+package ru.yandex.practicum.javafilmorate.storage.cache;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.storage.dao.MpaStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.MpaDbStorage;
+
+import java.util.List;
+
+@Primary
+@Repository
+public class CachedMpaStorage implements MpaStorage {
+    private final MpaDbStorage mpaStorage;
+    private final ReferenceCache<Mpa> cache;
+
+    public CachedMpaStorage(MpaDbStorage mpaStorage) {
+        this.mpaStorage = mpaStorage;
+        this.cache = new ReferenceCache<>("MPA", mpaStorage::findAll, Mpa::getId);
+    }
+
+    @Override
+    public Mpa findById(int mpaId) {
+        Mpa mpa = cache.get(mpaId);
+        return mpa != null ? mpa : mpaStorage.findById(mpaId);
+    }
+
+    @Override
+    public List<Mpa> findAll() {
+        return cache.getAll();
+    }
+
+    public ReferenceCache<Mpa> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.javafilmorate.storage.cache;
+
+import ru.yandex.practicum.javafilmorate.model.Event;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/* Кольцевой буфер последних событий одного пользователя, упорядоченных по возрастанию id.
+   Пока буфер не загружен из БД, в него только накапливаются новые события. */
+class RecentEvents {
+    private final Event[] ring;
+    private int head;
+    private int size;
+    private boolean loaded;
+    /* В буфере вся история пользователя, а не только её хвост */
+    private boolean complete;
+
+    RecentEvents(int capacity) {
+        this.ring = new Event[capacity];
+    }
+
+    synchronized void append(Event event) {
+        if (size > 0 && last().getEventId() >= event.getEventId()) {
+            /* Редкий случай: событие записано параллельным потоком раньше соседнего */
+            List<Event> events = toList();
+            events.add(event);
+            reset(events);
+            return;
+        }
+        push(event);
+    }
+
+    /* Сливает загруженный из БД хвост (от новых к старым) с событиями, пришедшими во время загрузки */
+    synchronized void load(List<Event> newestFirst, boolean wholeHistory) {
+        List<Event> events = toList();
+        events.addAll(newestFirst);
+        complete = wholeHistory;
+        reset(events);
+        loaded = true;
+    }
+
+    /* Возвращает до rows событий раньше курсора от новых к старым или null, если буфер не покрывает окно */
+    synchronized List<Event> page(Cursor before, int rows) {
+        if (!loaded) {
+            return null;
+        }
+        List<Event> result = new ArrayList<>(Math.min(rows, size));
+        for (int i = size - 1; i >= 0 && result.size() < rows; i--) {
+            Event event = ring[(head + i) % ring.length];
+            if (before == null || event.getEventId() < before.getId()) {
+                result.add(event);
+            }
+        }
+        return result.size() == rows || complete ? result : null;
+    }
+
+    private void reset(List<Event> events) {
+        events.sort(Comparator.comparingInt(Event::getEventId));
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        Event previous = null;
+        for (Event event : events) {
+            if (previous == null || previous.getEventId() != event.getEventId()) {
+                push(event);
+            }
+            previous = event;
+        }
+    }
+
+    private void push(Event event) {
+        if (size == ring.length) {
+            ring[head] = event;
+            head = (head + 1) % ring.length;
+            complete = false;
+        } else {
+            ring[(head + size) % ring.length] = event;
+            size++;
+        }
+    }
+
+    private Event last() {
+        return ring[(head + size - 1) % ring.length];
+    }
+
+    private List<Event> toList() {
+        List<Event> events = new ArrayList<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            events.add(ring[(head + i) % ring.length]);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.javafilmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/* Кэш небольшого справочника: при первом обращении загружает таблицу целиком и отдаёт общие экземпляры */
+@Slf4j
+public class ReferenceCache<T> {
+    private final String name;
+    private final Supplier<List<T>> loader;
+    private final ToIntFunction<T> idExtractor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot<T> snapshot;
+
+    public ReferenceCache(String name, Supplier<List<T>> loader, ToIntFunction<T> idExtractor) {
+        this.name = name;
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+    }
+
+    /* null, если записи нет в загруженном справочнике. Каждое изменение справочника сбрасывает кэш, поэтому
+       отсутствующий id не перезагружает таблицу, а вызывающий проверяет его в хранилище одной строкой */
+    public T get(int id) {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            misses.increment();
+            current = load();
+        } else {
+            hits.increment();
+        }
+        return current.byId.get(id);
+    }
+
+    public List<T> getAll() {
+        Snapshot<T> current = snapshot;
+        if (current != null) {
+            hits.increment();
+            return current.values;
+        }
+        misses.increment();
+        return load().values;
+    }
+
+    public void invalidate() {
+        log.info("КЭШ: Сброс кэша справочника {}", name);
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Snapshot<T> load() {
+        long loadGeneration = generation.get();
+        log.info("КЭШ: Загрузка справочника {}", name);
+        List<T> values = List.copyOf(loader.get());
+        Map<Integer, T> byId = new HashMap<>();
+        for (T value : values) {
+            byId.put(idExtractor.applyAsInt(value), value);
+        }
+        Snapshot<T> loaded = new Snapshot<>(values, Map.copyOf(byId));
+        /* Если во время загрузки справочник был изменён, не публикуем устаревшие данные */
+        if (generation.get() == loadGeneration) {
+            snapshot = loaded;
+        }
+        return loaded;
+    }
+
+    private static class Snapshot<T> {
+        private final List<T> values;
+        private final Map<Integer, T> byId;
+
+        private Snapshot(List<T> values, Map<Integer, T> byId) {
+            this.values = values;
+            this.byId = byId;
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package ru.yandex.practicum.javafilmorate.storage.dao;
 
 import ru.yandex.practicum.javafilmorate.model.Event;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 import java.util.List;
 
 public interface EventStorage {
 
     Event add(Event event);
 
+    void addAll(List<Event> events);
+
     List<Event> getUserEvents(int userId);
+
+    List<Event> getUserEvents(int userId, Cursor before, int limit);
+
+    void deleteUserEvents(int userId);
 }
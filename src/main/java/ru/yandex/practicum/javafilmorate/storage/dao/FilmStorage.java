@@ -2,13 +2,21 @@ package ru.yandex.practicum.javafilmorate.storage.dao;
 
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Component
 public interface FilmStorage {
     List<Film> findAll();
 
+    List<Film> findAll(Cursor after, int limit);
+
+    void streamAll(Consumer<Film> action);
+
+    List<Film> findByIds(List<Integer> filmIds);
+
     Film addFilm(Film film);
 
     Film updateFilm(Film film);
@@ -29,5 +37,7 @@ public interface FilmStorage {
 
     List<Film> getPopularByGenreAndYear(int count, int genreId, int year);
 
+    List<Film> getPopular(Integer genreId, Integer year, Cursor after, int count);
+
     List<Film> searchBySubstring(String query, String by);
 }
\ No newline at end of file
@@ -13,4 +13,6 @@ public interface FriendStorage {
 
     List<User> getCommonsFriends(int userId, int friendId);
 
+    List<User> getFriendSuggestions(int userId, int count);
+
 }
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.javafilmorate.storage.dao;
+
+import ru.yandex.practicum.javafilmorate.model.*;
+
+import java.util.List;
+
+/* Пакетная запись порции импорта в одной транзакции. Строки с несуществующими ссылками
+   и повторы помечаются отклонёнными, остальные записываются */
+public interface ImportStorage {
+    void importFilms(List<ImportRow<Film>> rows);
+
+    void importUsers(List<ImportRow<User>> rows);
+
+    void importLikes(List<ImportRow<Like>> rows);
+
+    void importFriendships(List<ImportRow<Friendship>> rows);
+
+    /* Вызываются один раз после всех порций импорта: индексы в памяти перечитываются целиком,
+       а не после каждой порции */
+    void likesImported();
+
+    void friendshipsImported();
+}
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.javafilmorate.storage.dao;
 
 import ru.yandex.practicum.javafilmorate.model.Review;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 
 import java.util.List;
 
@@ -9,11 +10,13 @@ public interface ReviewStorage {
 
     public Review update(Review review);
 
-    public void updateUseful(Review review);
+    public void setVote(int reviewID, int userID, int vote);
 
-    public List<Review> findAllReviews(int count);
+    public void removeVote(int reviewID, int userID, int vote);
 
-    public List<Review> findReviewsByFilmID(int filmID, int count);
+    public List<Review> findAllReviews(Cursor after, int count);
+
+    public List<Review> findReviewsByFilmID(int filmID, Cursor after, int count);
 
     public Review findReviewByID(int reviewID);
 
@@ -2,10 +2,10 @@ package ru.yandex.practicum.javafilmorate.storage.dao;
 
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.function.Consumer;
 
 @Component
 public interface UserStorage {
@@ -19,5 +19,7 @@ public interface UserStorage {
 
     List<User> findAll();
 
-    Map<Integer, Set<Integer>> getAllLikes();
+    List<User> findAll(Cursor after, int limit);
+
+    void streamAll(Consumer<User> action);
 }
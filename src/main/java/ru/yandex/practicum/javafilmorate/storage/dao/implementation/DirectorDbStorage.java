@@ -4,17 +4,15 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.javafilmorate.model.Director;
 import ru.yandex.practicum.javafilmorate.model.Film;
 import ru.yandex.practicum.javafilmorate.storage.dao.DirectorStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.SearchIndex;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,29 +22,24 @@ import java.util.Set;
 @Repository
 public class DirectorDbStorage implements DirectorStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final SearchIndex searchIndex;
 
     @Override
     public List<Director> findAll() {
         log.info("ХРАНИЛИЩЕ: Получение из хранилища списка всех режиссёров");
-        String sqlQuery = "SELECT * FROM DIRECTORS";
-        List<Director> directors = new ArrayList<>();
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery);
-        while (rs.next()) {
-            directors.add(directorRowMap(rs));
-        }
-        return directors;
+        String sqlQuery = "SELECT " + Rows.DIRECTOR_COLUMNS + " FROM DIRECTORS";
+        return jdbcTemplate.query(sqlQuery, Rows.DIRECTOR);
     }
 
     @Override
     public Director findById(Integer directorId) {
         log.info("ХРАНИЛИЩЕ: Получение режиссёра по id {}", directorId);
-        String sqlQuery = "SELECT * FROM DIRECTORS WHERE DIRECTOR_ID = ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, directorId);
-        if (rs.next()) {
-            return directorRowMap(rs);
-        } else {
+        String sqlQuery = "SELECT " + Rows.DIRECTOR_COLUMNS + " FROM DIRECTORS WHERE DIRECTOR_ID = ?";
+        List<Director> directors = jdbcTemplate.query(sqlQuery, Rows.DIRECTOR, directorId);
+        if (directors.isEmpty()) {
             throw new UnregisteredDataException("Режиссёр с id " + directorId + " не зарегистрирован в системе");
         }
+        return directors.get(0);
     }
 
     @Override
@@ -55,11 +48,12 @@ public class DirectorDbStorage implements DirectorStorage {
         if (director == null) {
             throw new UnregisteredDataException("При добавлении режиссёра был передан null");
         }
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("DIRECTORS")
-                .usingGeneratedKeyColumns("DIRECTOR_ID");
-        director.setId(simpleJdbcInsert.executeAndReturnKey(director.directorToMap()).intValue());
-        return director;
+        /* Режиссёр неизменяем, поэтому добавленный возвращается новым объектом со сгенерированным id */
+        Integer id = jdbcTemplate.queryForObject("SELECT DIRECTOR_ID FROM FINAL TABLE " +
+                "(INSERT INTO DIRECTORS (DIRECTOR_NAME) VALUES (?))", Integer.class, director.getName());
+        Director added = new Director(id, director.getName());
+        searchIndex.putDirector(added.getId(), added.getName());
+        return added;
     }
 
     @Override
@@ -70,6 +64,7 @@ public class DirectorDbStorage implements DirectorStorage {
         }
         String sqlQuery = "UPDATE DIRECTORS SET DIRECTOR_NAME = ? WHERE DIRECTOR_ID = ?";
         jdbcTemplate.update(sqlQuery, director.getName(), director.getId());
+        searchIndex.putDirector(director.getId(), director.getName());
         return director;
     }
 
@@ -77,21 +72,18 @@ public class DirectorDbStorage implements DirectorStorage {
     public void deleteDirector(Integer directorId) {
         log.info("ХРАНИЛИЩЕ: Удаление режиссёра с id {}", directorId);
         String sqlQuery = "DELETE FROM DIRECTORS WHERE DIRECTOR_ID = ?";
-        jdbcTemplate.update(sqlQuery, directorId);
+        if (jdbcTemplate.update(sqlQuery, directorId) > 0) {
+            searchIndex.removeDirector(directorId);
+        }
     }
 
     @Override
     public Set<Director> findDirectorsByFilmId(Integer filmId) {
         log.info("ХРАНИЛИЩЕ: Поиск режиссёров для фильма с id {}", filmId);
-        Set<Director> directors = new HashSet<>();
-        String sqlQuery = "SELECT D.* FROM FILMS_DIRECTORS AS FD " +
+        String sqlQuery = "SELECT " + Rows.columns("D", Rows.DIRECTOR_COLUMNS) + " FROM FILMS_DIRECTORS AS FD " +
                 "JOIN DIRECTORS AS D ON FD.DIRECTOR_ID = D.DIRECTOR_ID " +
                 "WHERE FD.FILM_ID = ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, filmId);
-        while (rs.next()) {
-            directors.add(directorRowMap(rs));
-        }
-        return directors;
+        return new HashSet<>(jdbcTemplate.query(sqlQuery, Rows.DIRECTOR, filmId));
     }
 
     @Override
@@ -121,12 +113,4 @@ public class DirectorDbStorage implements DirectorStorage {
         String sqlQuery = "DELETE FROM FILMS_DIRECTORS WHERE FILM_ID = ?";
         jdbcTemplate.update(sqlQuery, film.getId());
     }
-
-    public Director directorRowMap(SqlRowSet rs) {
-        log.info("ХРАНИЛИЩЕ: Производится маппинг режиссёра");
-        return new Director(
-                rs.getInt("DIRECTOR_ID"),
-                rs.getString("DIRECTOR_NAME")
-        );
-    }
 }
@@ -3,17 +3,13 @@ package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.javafilmorate.model.Event;
-import ru.yandex.practicum.javafilmorate.model.EventType;
-import ru.yandex.practicum.javafilmorate.model.OperationType;
 import ru.yandex.practicum.javafilmorate.storage.dao.EventStorage;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @AllArgsConstructor
@@ -25,30 +21,37 @@ public class EventDbStorage implements EventStorage {
     @Override
     public Event add(Event event) {
         log.info("ХРАНИЛИЩЕ: Добавление в хранилище event с userId={}", event.getUserId());
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("Events")
-                .usingGeneratedKeyColumns("EVENT_ID");
-        Map<String, Object> params = Map.of("EVENT_TYPE", event.getEventType().toString(),
-                "OPERATION_TYPE", event.getOperation().toString(), "ENTITY_ID", event.getEntityId(),
-                "USER_ID", event.getUserId(), "EVENT_TIME", event.getTimestamp());
-        event.setEventId(simpleJdbcInsert.executeAndReturnKey(params).intValue());
-        return event;
+        return Inserts.EVENT.insert(jdbcTemplate, event);
     }
 
+    /* Пачка событий пишется одним batch-запросом в одной транзакции, id событий берутся из сгенерированных ключей */
+    @Override
+    @Transactional
+    public void addAll(List<Event> events) {
+        log.info("ХРАНИЛИЩЕ: Добавление в хранилище пачки из {} event", events.size());
+        Inserts.EVENT.insertAll(jdbcTemplate, events);
+    }
+
+    @Override
     public List<Event> getUserEvents(int userId) {
-        String sqlQuery = "SELECT * FROM Events e WHERE e.USER_ID=?";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> eventRowMap(rs), userId);
+        String sqlQuery = "SELECT " + Rows.EVENT_COLUMNS + " FROM Events e WHERE e.USER_ID=? ORDER BY e.EVENT_ID";
+        return jdbcTemplate.query(sqlQuery, Rows.EVENT, userId);
     }
 
-    private Event eventRowMap(ResultSet rs) throws SQLException {
-        return Event.builder()
-                .eventId(rs.getInt("EVENT_ID"))
-                .eventType(EventType.valueOf(rs.getString("EVENT_TYPE")))
-                .operation(OperationType.valueOf(rs.getString("OPERATION_TYPE")))
-                .entityId(rs.getInt("ENTITY_ID"))
-                .userId(rs.getInt("USER_ID"))
-                .timestamp(rs.getLong("EVENT_TIME"))
-                .build();
+    /* События пользователя от новых к старым, строго раньше курсора */
+    @Override
+    public List<Event> getUserEvents(int userId, Cursor before, int limit) {
+        log.info("ХРАНИЛИЩЕ: Получение {} событий ленты user с Id={}", limit, userId);
+        String sqlQuery = "SELECT " + Rows.EVENT_COLUMNS + " FROM Events e WHERE e.USER_ID=? AND e.EVENT_ID < ? " +
+                "ORDER BY e.EVENT_ID DESC LIMIT ?";
+        int beforeId = before == null ? Integer.MAX_VALUE : before.getId();
+        return jdbcTemplate.query(sqlQuery, Rows.EVENT, userId, beforeId, limit);
+    }
+
+    @Override
+    public void deleteUserEvents(int userId) {
+        log.info("ХРАНИЛИЩЕ: Удаление ленты user с Id={}", userId);
+        jdbcTemplate.update("DELETE FROM Events WHERE USER_ID=?", userId);
     }
 
 }
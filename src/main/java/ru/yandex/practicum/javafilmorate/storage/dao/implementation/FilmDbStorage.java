@@ -1,199 +1,261 @@
 package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
 
 import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.javafilmorate.model.Director;
 import ru.yandex.practicum.javafilmorate.model.Film;
 import ru.yandex.practicum.javafilmorate.model.Genre;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
 import ru.yandex.practicum.javafilmorate.storage.dao.DirectorStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.FilmStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.GenreStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.MpaStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.SearchIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.TopReviewsIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @AllArgsConstructor
 @Repository
 public class FilmDbStorage implements FilmStorage {
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final String FILM_COLUMNS = "FILM_ID, FILM_NAME, FILM_DESCRIPTION, FILM_RELEASE_DATE, " +
+            "FILM_DURATION, MPA_ID, FILM_LIKES";
+    private static final RowMapper<FilmRow> FILM_ROW = (rs, rowNum) -> new FilmRow(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getObject(4, LocalDate.class),
+            rs.getInt(5),
+            rs.getInt(6),
+            rs.getInt(7));
+
     private final JdbcTemplate jdbcTemplate;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
     private final DirectorStorage directorStorage;
+    private final PopularityIndex popularityIndex;
+    private final SearchIndex searchIndex;
+    private final LikeIndex likeIndex;
+    private final TopReviewsIndex topReviews;
 
     @Override
     public List<Film> findAll() {
         log.info("ХРАНИЛИЩЕ: Получение из хранилища списка всех фильмов");
-        String sqlQuery = "SELECT * FROM FILMS";
-        List<Film> films = new ArrayList<>();
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
-        }
-        return films;
+        String sqlQuery = "SELECT " + FILM_COLUMNS + " FROM FILMS";
+        return hydrate(jdbcTemplate.query(sqlQuery, FILM_ROW));
+    }
+
+    @Override
+    public List<Film> findAll(Cursor after, int limit) {
+        log.info("ХРАНИЛИЩЕ: Получение из хранилища страницы из {} фильмов", limit);
+        String sqlQuery = "SELECT " + FILM_COLUMNS + " FROM FILMS WHERE FILM_ID > ? ORDER BY FILM_ID LIMIT ?";
+        return hydrate(jdbcTemplate.query(sqlQuery, FILM_ROW,
+                after != null ? after.getId() : 0, limit));
+    }
+
+    /* Выгрузка всего каталога без накопления в памяти: строки читаются порциями через курсор JDBC,
+       каждая порция догружается жанрами и режиссёрами и сразу отдаётся дальше */
+    @Override
+    public void streamAll(Consumer<Film> action) {
+        log.info("ХРАНИЛИЩЕ: Потоковая выгрузка всех фильмов");
+        List<FilmRow> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT " + FILM_COLUMNS + " FROM FILMS ORDER BY FILM_ID");
+            ps.setFetchSize(STREAM_CHUNK_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            chunk.add(FILM_ROW.mapRow(rs, 0));
+            if (chunk.size() == STREAM_CHUNK_SIZE) {
+                hydrate(chunk).forEach(action);
+                chunk.clear();
+            }
+        });
+        hydrate(chunk).forEach(action);
     }
 
+    /* Ссылки фильма проверяются одним запросом до вставки, связи с жанрами и режиссёрами добавляются пакетами.
+       Ответ собирается из проверенных данных без повторного чтения фильма */
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         log.info("ХРАНИЛИЩЕ: Добавление фильма с id {} в хранилище", film.getId());
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("FILMS")
-                .usingGeneratedKeyColumns("FILM_ID");
-        film.setId(simpleJdbcInsert.executeAndReturnKey(film.filmToMap()).intValue());
-        genreStorage.addFilmGenre(film);
-        directorStorage.addFilmDirectors(film);
-        return findById(film.getId());
+        Set<Integer> genreIds = genreIds(film);
+        Set<Integer> directorIds = directorIds(film);
+        FilmReferences references = findReferences(null, film.getMpa().getId(), genreIds, directorIds);
+        references.check(film.getMpa().getId(), genreIds, directorIds);
+
+        Inserts.FILM.insert(jdbcTemplate, film);
+        insertLinks("INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?)", film.getId(), genreIds);
+        insertLinks("INSERT INTO FILMS_DIRECTORS (FILM_ID, DIRECTOR_ID) VALUES (?, ?)", film.getId(), directorIds);
+        Film saved = references.toFilm(film, 0);
+        index(saved);
+        return saved;
     }
 
+    /* Строка фильма обновляется первой: это проверяет его существование и блокирует строку до конца транзакции,
+       поэтому текущие связи, прочитанные следом, не изменятся параллельным обновлением. Затем одним запросом
+       проверяются рейтинг, жанры и режиссёры, а в связях удаляется и добавляется только разница */
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
         log.info("ХРАНИЛИЩЕ: Обновление данных по фильму с id {}", film.getId());
-        if (getAllFilms(film.getId()).next()) {
-            String sqlQuery = "UPDATE FILMS SET FILM_NAME = ?, FILM_DESCRIPTION = ?, FILM_RELEASE_DATE = ?, " +
-                    "FILM_DURATION = ?, MPA_ID = ? WHERE FILM_ID = ?";
-            jdbcTemplate.update(sqlQuery,
+        String sqlQuery = "UPDATE FILMS SET FILM_NAME = ?, FILM_DESCRIPTION = ?, FILM_RELEASE_DATE = ?, " +
+                "FILM_DURATION = ?, MPA_ID = ? WHERE FILM_ID = ?";
+        int updated;
+        try {
+            updated = jdbcTemplate.update(sqlQuery,
                     film.getName(),
                     film.getDescription(),
                     film.getReleaseDate(),
                     film.getDuration(),
                     film.getMpa().getId(),
                     film.getId());
-            mpaStorage.findById(film.getMpa().getId());
-            deleteFilmGenres(film.getId());
-            fillFilmGenres(film);
-            film.setGenres(getFilmGenres(film.getId()));
-            directorStorage.deleteFilmDirectors(film);
-            directorStorage.addFilmDirectors(film);
-            return film;
-        } else {
+        } catch (DataIntegrityViolationException e) {
+            throw new UnregisteredDataException("MPA с id " + film.getMpa().getId() + " не зарегистрирован в системе");
+        }
+        if (updated == 0) {
             throw new UnregisteredDataException("Фильм с id " + film.getId() + " не зарегистрирован в системе");
         }
+
+        Set<Integer> genreIds = genreIds(film);
+        Set<Integer> directorIds = directorIds(film);
+        FilmReferences references = findReferences(film.getId(), film.getMpa().getId(), genreIds, directorIds);
+        references.check(film.getMpa().getId(), genreIds, directorIds);
+
+        deleteLinks("DELETE FROM FILM_GENRES WHERE FILM_ID = ? AND GENRE_ID = ANY(?)", film.getId(),
+                difference(references.getCurrentGenreIds(), genreIds));
+        insertLinks("INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?)", film.getId(),
+                difference(genreIds, references.getCurrentGenreIds()));
+        deleteLinks("DELETE FROM FILMS_DIRECTORS WHERE FILM_ID = ? AND DIRECTOR_ID = ANY(?)", film.getId(),
+                difference(references.getCurrentDirectorIds(), directorIds));
+        insertLinks("INSERT INTO FILMS_DIRECTORS (FILM_ID, DIRECTOR_ID) VALUES (?, ?)", film.getId(),
+                difference(directorIds, references.getCurrentDirectorIds()));
+        Film saved = references.toFilm(film, references.getLikes());
+        index(saved);
+        return saved;
     }
 
     @Override
     public boolean deleteFilm(int filmId) {
         log.info("ХРАНИЛИЩЕ: Удаление из хранилища фильма с id {}", filmId);
         String sqlQuery = "DELETE FROM FILMS WHERE FILM_ID = ? ";
-        return jdbcTemplate.update(sqlQuery, filmId) > 0;
+        boolean deleted = jdbcTemplate.update(sqlQuery, filmId) > 0;
+        if (deleted) {
+            popularityIndex.removeFilm(filmId);
+            searchIndex.removeFilm(filmId);
+            likeIndex.removeFilm(filmId);
+            topReviews.removeFilm(filmId);
+        }
+        return deleted;
     }
 
     @Override
     public Film findById(int filmId) {
         log.info("ХРАНИЛИЩЕ: Получение фильма по id {}", filmId);
-        String sqlQuery = "SELECT * FROM FILMS WHERE FILM_ID = ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, filmId);
-        if (rs.next()) {
-            return filmRowMap(rs);
-        } else {
+        String sqlQuery = "SELECT " + FILM_COLUMNS + " FROM FILMS WHERE FILM_ID = ?";
+        List<Film> films = hydrate(jdbcTemplate.query(sqlQuery, FILM_ROW, filmId));
+        if (films.isEmpty()) {
             throw new UnregisteredDataException("Фильм с id " + filmId + " не зарегистрирован в системе");
         }
+        return films.get(0);
     }
 
     @Override
-    public List<Film> getPopularFilms(int limit) {
-        List<Film> films = new ArrayList<>();
-        String sqlQuery = "SELECT F.*, COUNT(L.ID) FROM FILMS AS F " +
-                "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                "GROUP BY F.FILM_ID ORDER BY COUNT(L.ID) DESC LIMIT ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, limit);
-        System.out.println(rs);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
+    public List<Film> findByIds(List<Integer> filmIds) {
+        log.info("ХРАНИЛИЩЕ: Получение фильмов по списку из {} id", filmIds.size());
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery = "SELECT " + FILM_COLUMNS + " FROM FILMS WHERE FILM_ID = ANY(?)";
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : hydrate(jdbcTemplate.query(sqlQuery, FILM_ROW,
+                (Object) filmIds.toArray(new Integer[0])))) {
+            filmsById.put(film.getId(), film);
+        }
+        /* Сохраняем порядок, в котором были переданы id */
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Integer filmId : filmIds) {
+            Film film = filmsById.get(filmId);
+            if (film != null) {
+                films.add(film);
+            }
         }
-        log.info("ХРАНИЛИЩЕ: Получение списка {} самых популярных фильмов", limit);
         return films;
     }
 
+    @Override
+    public List<Film> getPopularFilms(int limit) {
+        log.info("ХРАНИЛИЩЕ: Получение списка {} самых популярных фильмов", limit);
+        return findByIds(popularityIndex.top(null, null, limit));
+    }
+
     @Override
     public List<Film> getPopularByGenre(int count, int genreId) {
-        List<Film> films = new ArrayList<>();
-        String sqlQuery = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
-                "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                "LEFT JOIN FILM_GENRES AS FG ON F.FILM_ID = FG.FILM_ID " +
-                "WHERE FG.GENRE_ID = ? " +
-                "GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC LIMIT ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, genreId, count);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
-        }
         log.info("ХРАНИЛИЩЕ: Получение списка {} самых популярных фильмов с id жанра {}", count, genreId);
-        return films;
+        return findByIds(popularityIndex.top(genreId, null, count));
     }
 
     @Override
     public List<Film> getPopularByYear(int count, int year) {
-        List<Film> films = new ArrayList<>();
-        String sqlQuery = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
-                "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                "WHERE YEAR(F.FILM_RELEASE_DATE) = ? " +
-                "GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC LIMIT ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, year, count);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
-        }
         log.info("ХРАНИЛИЩЕ: Получение списка {} самых популярных фильмов с годом релиза {}", count, year);
-        return films;
+        return findByIds(popularityIndex.top(null, year, count));
     }
 
     @Override
     public List<Film> getPopularByGenreAndYear(int count, int genreId, int year) {
-        List<Film> films = new ArrayList<>();
-        String sqlQuery = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
-                "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                "LEFT JOIN FILM_GENRES AS FG ON F.FILM_ID = FG.FILM_ID " +
-                "WHERE FG.GENRE_ID = ? AND YEAR(F.FILM_RELEASE_DATE) = ? " +
-                "GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC LIMIT ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, genreId, year, count);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
-        }
         log.info("ХРАНИЛИЩЕ: Получение списка {} самых популярных фильмов с id жанра {} и годом релиза {}", count,
                 genreId, year);
-        return films;
+        return findByIds(popularityIndex.top(genreId, year, count));
+    }
+
+    @Override
+    public List<Film> getPopular(Integer genreId, Integer year, Cursor after, int count) {
+        log.info("ХРАНИЛИЩЕ: Получение страницы из {} самых популярных фильмов с id жанра {} и годом релиза {}",
+                count, genreId, year);
+        return findByIds(popularityIndex.top(genreId, year, after, count));
     }
 
     @Override
     public List<Film> searchBySubstring(String query, String by) {
-        List<Film> films = new ArrayList<>();
-        String sql;
+        boolean byTitle;
+        boolean byDirector;
         if (by.equalsIgnoreCase("director")) {
             log.info("ХРАНИЛИЩЕ: Получение фильмов с именем режиссера, содержащим подстроку {}", query);
-            sql = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
-                    "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                    "LEFT JOIN FILMS_DIRECTORS AS FD ON F.FILM_ID = FD.FILM_ID " +
-                    "LEFT JOIN DIRECTORS AS D ON FD.DIRECTOR_ID = D.DIRECTOR_ID " +
-                    "WHERE LOWER(D.DIRECTOR_NAME) LIKE '%" + query.toLowerCase() + "%'" +
-                    "GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC, F.FILM_ID";
+            byTitle = false;
+            byDirector = true;
         } else if (by.equalsIgnoreCase("title")) {
             log.info("ХРАНИЛИЩЕ: Получение фильмов с названием, содержащим подстроку {}", query);
-            sql = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
-                    "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                    "WHERE LOWER(F.FILM_NAME) LIKE '%" + query.toLowerCase() + "%'" +
-                    "GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC, F.FILM_ID";
+            byTitle = true;
+            byDirector = false;
         } else if (by.equalsIgnoreCase("director,title") || by.equalsIgnoreCase("title,director")) {
             log.info("ХРАНИЛИЩЕ: Получение фильмов с именем режиссера или названием, содержащим подстроку {}", query);
-            sql = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
-                    "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
-                    "LEFT JOIN FILMS_DIRECTORS AS FD ON F.FILM_ID = FD.FILM_ID " +
-                    "LEFT JOIN DIRECTORS AS D ON FD.DIRECTOR_ID = D.DIRECTOR_ID " +
-                    "WHERE LOWER(D.DIRECTOR_NAME) LIKE '%" + query.toLowerCase() +
-                    "%' OR LOWER(F.FILM_NAME) LIKE '%" + query.toLowerCase() + "%' " +
-                    "GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC, F.FILM_ID";
+            byTitle = true;
+            byDirector = true;
         } else {
             throw new UnregisteredDataException("Запрос поиска по параметру " + by + " не найден");
         }
-
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sql);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
-        }
+        List<Film> films = findByIds(new ArrayList<>(searchIndex.search(query, byTitle, byDirector)));
+        films.sort(Comparator.comparingInt(Film::getLikes).reversed().thenComparing(Film::getId));
         return films;
     }
 
@@ -201,113 +263,135 @@ public class FilmDbStorage implements FilmStorage {
     public List<Film> findDirectorFilmsByYearOrLikes(int directorId, String sortBy) {
         directorStorage.findById(directorId); // проверка директора на существование
         String sql;
-        List<Film> films = new ArrayList<>();
         if (sortBy.equalsIgnoreCase("year")) {
-            sql = "SELECT F.* FROM FILMS AS F " +
+            sql = "SELECT " + Rows.columns("F", FILM_COLUMNS) + " FROM FILMS AS F " +
                     "JOIN FILMS_DIRECTORS AS FD ON F.FILM_ID = FD.FILM_ID " +
                     "WHERE FD.DIRECTOR_ID = " + directorId +
                     " ORDER BY F.FILM_RELEASE_DATE";
         } else if (sortBy.equalsIgnoreCase("likes")) {
-            sql = "SELECT F.*, COUNT(L.USER_ID) FROM FILMS AS F " +
+            sql = "SELECT " + Rows.columns("F", FILM_COLUMNS) + " FROM FILMS AS F " +
                     "JOIN FILMS_DIRECTORS AS FD ON F.FILM_ID = FD.FILM_ID " +
-                    "LEFT JOIN LIKES AS L ON F.FILM_ID = L.FILM_ID " +
                     "WHERE FD.DIRECTOR_ID = " + directorId +
-                    " GROUP BY F.FILM_ID ORDER BY COUNT(L.USER_ID) DESC";
+                    " ORDER BY F.FILM_LIKES DESC, F.FILM_ID";
         } else {
             throw new UnregisteredDataException("Сортировка по запрошенному параметру не реализована");
         }
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sql);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
-        }
-        return films;
+        return hydrate(jdbcTemplate.query(sql, FILM_ROW));
     }
 
-    private Film filmRowMap(SqlRowSet rs) {
-        log.info("ХРАНИЛИЩЕ: Производится маппинг фильма");
-        Film film = new Film(
-                rs.getInt("FILM_ID"),
-                rs.getString("FILM_NAME"),
-                rs.getString("FILM_DESCRIPTION"),
-                rs.getDate("FILM_RELEASE_DATE").toLocalDate(),
-                rs.getInt("FILM_DURATION"),
-                mpaStorage.findById(rs.getInt("MPA_ID")),
-                getFilmLikes(rs.getInt("FILM_ID")));
-        film.setGenres(getFilmGenres(film.getId()));
-        film.setDirectors(directorStorage.findDirectorsByFilmId(film.getId()));
-        return film;
-    }
+    /* Догружает жанры и режиссёров для всей страницы фильмов: по одному запросу на связь.
+       Рейтинги и жанры берутся из кэша справочников, количество лайков - из счётчика в FILMS */
+    private List<Film> hydrate(List<FilmRow> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        log.info("ХРАНИЛИЩЕ: Производится маппинг {} фильмов", rows.size());
+        Integer[] filmIds = rows.stream().map(FilmRow::getId).distinct().toArray(Integer[]::new);
 
-    private Genre genreRowMap(SqlRowSet rs) {
-        log.info("ХРАНИЛИЩЕ: Производится маппинг жанра");
-        return new Genre(
-                rs.getInt("GENRE_ID"),
-                rs.getString("GENRE_NAME")
-        );
-    }
+        Map<Integer, Set<Genre>> genresByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, GENRE_ID FROM FILM_GENRES WHERE FILM_ID = ANY(?)",
+                (RowCallbackHandler) rs -> genresByFilm
+                        .computeIfAbsent(rs.getInt(1), k -> new TreeSet<>(Comparator.comparingInt(Genre::getId)))
+                        .add(genreStorage.findById(rs.getInt(2))),
+                (Object) filmIds);
 
-    private int getFilmLikes(int filmId) {
-        log.info("ХРАНИЛИЩЕ: Получение количества отметок \"лайк\" для фильма с id {}", filmId);
-        String sqlQuery = "SELECT COUNT(FILM_ID) AS AMOUNT FROM LIKES WHERE FILM_ID = ?";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, filmId);
-        if (rs.next()) {
-            return rs.getInt("AMOUNT");
-        } else {
-            return 0;
+        Map<Integer, Set<Director>> directorsByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT FD.FILM_ID, D.DIRECTOR_ID, D.DIRECTOR_NAME FROM FILMS_DIRECTORS AS FD " +
+                        "JOIN DIRECTORS AS D ON FD.DIRECTOR_ID = D.DIRECTOR_ID WHERE FD.FILM_ID = ANY(?)",
+                (RowCallbackHandler) rs -> directorsByFilm
+                        .computeIfAbsent(rs.getInt(1), k -> new HashSet<>())
+                        .add(new Director(rs.getInt(2), rs.getString(3))),
+                (Object) filmIds);
+
+        List<Film> films = new ArrayList<>(rows.size());
+        for (FilmRow row : rows) {
+            Film film = new Film(
+                    row.getId(),
+                    row.getName(),
+                    row.getDescription(),
+                    row.getReleaseDate(),
+                    row.getDuration(),
+                    mpaStorage.findById(row.getMpaId()),
+                    row.getLikes());
+            film.setGenres(genresByFilm.getOrDefault(row.getId(),
+                    new TreeSet<>(Comparator.comparingInt(Genre::getId))));
+            film.setDirectors(directorsByFilm.getOrDefault(row.getId(), new HashSet<>()));
+            films.add(film);
         }
+        return films;
     }
 
-    private Set<Genre> getFilmGenres(int filmId) {
-        Set<Genre> filmGenres = new TreeSet<>(Comparator.comparingInt(Genre::getId));
-        String sqlQuery = "SELECT * FROM GENRES WHERE GENRE_ID IN " +
-                "(SELECT GENRE_ID FROM FILM_GENRES WHERE FILM_ID = ?)";
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, filmId);
-        while (rs.next()) {
-            filmGenres.add(genreRowMap(rs));
-        }
-        log.info("ХРАНИЛИЩЕ: Получение жарнов для фильма с id {}", filmId);
-        return filmGenres;
+    private void index(Film film) {
+        popularityIndex.putFilm(film.getId(),
+                film.getReleaseDate() != null ? film.getReleaseDate().getYear() : null,
+                film.getGenres().stream().map(Genre::getId).collect(Collectors.toList()));
+        searchIndex.putFilm(film.getId(), film.getName(),
+                film.getDirectors().stream().map(Director::getId).collect(Collectors.toList()));
     }
 
-    private SqlRowSet getAllFilms(int filmId) {
-        String sqlQuery = "SELECT * FROM FILMS WHERE FILM_ID = ?";
-        log.info("ХРАНИЛИЩЕ: Получение rowSet фильма с id {}", filmId);
-        return jdbcTemplate.queryForRowSet(sqlQuery, filmId);
+    /* Рейтинг, жанры и режиссёры из запроса вместе с текущими связями и лайками фильма - за одно обращение к БД.
+       Для нового фильма filmId равен null, и его строки в выборку не попадают */
+    private FilmReferences findReferences(Integer filmId, int mpaId, Set<Integer> genreIds, Set<Integer> directorIds) {
+        log.info("ХРАНИЛИЩЕ: Проверка рейтинга, жанров и режиссёров фильма с id {}", filmId);
+        String sqlQuery = "SELECT 'MPA' AS KIND, MPA_ID AS ID, MPA_NAME AS NAME FROM MPA WHERE MPA_ID = ? " +
+                "UNION ALL SELECT 'GENRE', GENRE_ID, GENRE_NAME FROM GENRES WHERE GENRE_ID = ANY(?) " +
+                "UNION ALL SELECT 'DIRECTOR', DIRECTOR_ID, DIRECTOR_NAME FROM DIRECTORS WHERE DIRECTOR_ID = ANY(?) " +
+                "UNION ALL SELECT 'FILM_GENRE', GENRE_ID, NULL FROM FILM_GENRES WHERE FILM_ID = ? " +
+                "UNION ALL SELECT 'FILM_DIRECTOR', DIRECTOR_ID, NULL FROM FILMS_DIRECTORS WHERE FILM_ID = ? " +
+                "UNION ALL SELECT 'LIKES', FILM_LIKES, NULL FROM FILMS WHERE FILM_ID = ?";
+        FilmReferences references = new FilmReferences();
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> references.add(rs.getString(1),
+                        rs.getInt(2), rs.getString(3)),
+                mpaId, genreIds.toArray(new Integer[0]), directorIds.toArray(new Integer[0]),
+                filmId, filmId, filmId);
+        return references;
     }
 
-    private void fillFilmGenres(Film film) {
-        log.info("ХРАНИЛИЩЕ: Производится добавление жанов для фильма {}", film.getName());
-        isGenreRegistered(film);
-        List<Genre> genres = List.copyOf(film.getGenres());
-        String sqlQuery = "INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?)";
+    private void insertLinks(String sqlQuery, int filmId, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Integer> rows = List.copyOf(ids);
         jdbcTemplate.batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                ps.setInt(1, film.getId());
-                ps.setInt(2, genres.get(i).getId());
+                ps.setInt(1, filmId);
+                ps.setInt(2, rows.get(i));
             }
 
             @Override
             public int getBatchSize() {
-                return genres.size();
+                return rows.size();
             }
         });
     }
 
-    private void deleteFilmGenres(int filmId) {
-        log.info("ХРАНИЛИЩЕ: Производится удаление жанров у фильма с id {}", filmId);
-        String sqlQuery = "DELETE FROM FILM_GENRES WHERE FILM_ID = ?";
-        jdbcTemplate.update(sqlQuery, filmId);
+    private void deleteLinks(String sqlQuery, int filmId, Collection<Integer> ids) {
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update(sqlQuery, filmId, ids.toArray(new Integer[0]));
+        }
     }
 
-    private void isGenreRegistered(Film film) {
-        log.info("ХРАНИЛИЩЕ: Проверка жанров фильма с id {} на существование", film.getId());
-        String sqlQuery = "SELECT * FROM GENRES WHERE GENRE_ID = ?";
-        for (Genre genre : film.getGenres()) {
-            if (!jdbcTemplate.queryForRowSet(sqlQuery, genre.getId()).next()) {
-                throw new UnregisteredDataException("Жанр с id " + genre.getId() + " не зарегистрирован в системе");
-            }
+    private static Set<Integer> genreIds(Film film) {
+        Set<Integer> ids = new TreeSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> ids.add(genre.getId()));
         }
+        return ids;
+    }
+
+    private static Set<Integer> directorIds(Film film) {
+        Set<Integer> ids = new TreeSet<>();
+        if (film.getDirectors() != null) {
+            film.getDirectors().forEach(director -> ids.add(director.getId()));
+        }
+        return ids;
+    }
+
+    private static Set<Integer> difference(Set<Integer> from, Set<Integer> exclude) {
+        Set<Integer> result = new TreeSet<>(from);
+        result.removeAll(exclude);
+        return result;
     }
 
     @Override
@@ -315,29 +399,80 @@ public class FilmDbStorage implements FilmStorage {
         log.info("ХРАНИЛИЩЕ: Получение списка общих фильмов пользователя id={} " +
                 " и его друга id={} отсортированных по популярности.", userId, friendId);
 
-        String sqlQuery = "SELECT t.*        \n" +
-                "            FROM (SELECT f.*, \n" +
-                "                         count(f.film_id) likes\n" +
-                "                    FROM Films f\n" +
-                "                   INNER JOIN LIKES l ON l.film_id = f.film_id  \n" +
-                "                   GROUP BY (f.film_id)) t\n" +
-                "           INNER JOIN LIKES l2 ON l2.film_id = t.film_id AND l2.user_id=?\n" +
-                "          INTERSECT\n" +
-                "          SELECT t.*        \n" +
-                "            FROM (SELECT f.*, \n" +
-                "                         count(f.film_id) likes\n" +
-                "                    FROM Films f\n" +
-                "                   INNER JOIN LIKES l ON l.film_id = f.film_id  \n" +
-                "                   GROUP BY (f.film_id)) t\n" +
-                "           INNER JOIN LIKES l2 ON l2.film_id = t.film_id AND l2.user_id=? \n" +
-                "          ORDER BY likes DESC; ";
-
-        List<Film> films = new ArrayList<>();
-        SqlRowSet rs = jdbcTemplate.queryForRowSet(sqlQuery, userId, friendId);
-        while (rs.next()) {
-            films.add(filmRowMap(rs));
+        List<Film> films = findByIds(likeIndex.commonFilms(userId, friendId));
+        films.sort(Comparator.comparingInt(Film::getLikes).reversed().thenComparing(Film::getId));
+        return films;
+    }
+
+    @Getter
+    private static class FilmReferences {
+        private Mpa mpa;
+        private final Map<Integer, Genre> genres = new HashMap<>();
+        private final Map<Integer, Director> directors = new HashMap<>();
+        private final Set<Integer> currentGenreIds = new HashSet<>();
+        private final Set<Integer> currentDirectorIds = new HashSet<>();
+        private int likes;
+
+        void add(String kind, int id, String name) {
+            switch (kind) {
+                case "MPA":
+                    mpa = new Mpa(id, name);
+                    break;
+                case "GENRE":
+                    genres.put(id, new Genre(id, name));
+                    break;
+                case "DIRECTOR":
+                    directors.put(id, new Director(id, name));
+                    break;
+                case "FILM_GENRE":
+                    currentGenreIds.add(id);
+                    break;
+                case "FILM_DIRECTOR":
+                    currentDirectorIds.add(id);
+                    break;
+                case "LIKES":
+                    likes = id;
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестный вид ссылки " + kind);
+            }
         }
 
-        return films;
+        void check(int mpaId, Set<Integer> genreIds, Set<Integer> directorIds) {
+            if (mpa == null) {
+                throw new UnregisteredDataException("MPA с id " + mpaId + " не зарегистрирован в системе");
+            }
+            for (Integer genreId : genreIds) {
+                if (!genres.containsKey(genreId)) {
+                    throw new UnregisteredDataException("Жанр с id " + genreId + " не зарегистрирован в системе");
+                }
+            }
+            for (Integer directorId : directorIds) {
+                if (!directors.containsKey(directorId)) {
+                    throw new UnregisteredDataException("Режиссёр с id " + directorId + " не зарегистрирован в системе");
+                }
+            }
+        }
+
+        Film toFilm(Film film, int likes) {
+            Film saved = new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                    film.getDuration(), mpa, likes);
+            Set<Genre> filmGenres = new TreeSet<>(Comparator.comparingInt(Genre::getId));
+            filmGenres.addAll(genres.values());
+            saved.setGenres(filmGenres);
+            saved.setDirectors(new HashSet<>(directors.values()));
+            return saved;
+        }
+    }
+
+    @Value
+    private static class FilmRow {
+        int id;
+        String name;
+        String description;
+        LocalDate releaseDate;
+        int duration;
+        int mpaId;
+        int likes;
     }
 }
@@ -3,80 +3,112 @@ package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.javafilmorate.model.User;
 import ru.yandex.practicum.javafilmorate.storage.dao.FriendStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendSuggestions;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
-import java.util.List;
+import java.util.*;
 
+/* Списки друзей берутся из графа FriendIndex, из базы одним запросом читаются только сами пользователи
+   вместе с проверкой регистрации */
 @Slf4j
 @AllArgsConstructor
 @Repository
 public class FriendsDbStorage implements FriendStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final FriendIndex friendIndex;
+    private final FriendSuggestions friendSuggestions;
 
     @Override
+    @Transactional
     public void addFriend(int userId, int friendId) {
-        isRegistered(userId);
-        isRegistered(friendId);
-        String sqlQuery = "INSERT INTO FRIENDS (USER_ID, FRIEND_ID) VALUES (?, ?)";
+        findUsers(new int[0], userId, friendId);
+        /* Повторный запрос дружбы не создаёт вторую строку */
+        String sqlQuery = "MERGE INTO FRIENDS (USER_ID, FRIEND_ID) KEY (USER_ID, FRIEND_ID) VALUES (?, ?)";
         jdbcTemplate.update(sqlQuery, userId, friendId);
+        friendIndex.addFriend(userId, friendId);
+        friendSuggestions.evict(userId);
         log.info(" ХРАНИЛИЩЕ: Пользователь с id {} получил запрос дружбы от пользователя с id {}", userId, friendId);
     }
 
     @Override
+    @Transactional
     public void deleteFriend(int userId, int friendId) {
-        isRegistered(userId);
-        isRegistered(friendId);
+        findUsers(new int[0], userId, friendId);
         String sqlQuery = "DELETE FROM FRIENDS WHERE USER_ID = ? AND FRIEND_ID = ?";
-        jdbcTemplate.update(sqlQuery, userId, friendId);
+        if (jdbcTemplate.update(sqlQuery, userId, friendId) > 0) {
+            friendIndex.removeFriend(userId, friendId);
+            friendSuggestions.evict(userId);
+        }
         log.info("ХРАНИЛИЩЕ: Пользователь с id {} удалил из друзей пользователя с id {}", userId, friendId);
     }
 
     @Override
     public List<User> getUserFriends(Integer userId) {
-        isRegistered(userId);
         log.info("ХРАНИЛИЩЕ: Получение друзей пользователя с id {}", userId);
-        String sqlQuery = "SELECT USERS.* FROM FRIENDS" +
-                " JOIN USERS ON FRIENDS.FRIEND_ID = USERS.USER_ID WHERE FRIENDS.USER_ID = ?";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> new User(
-                        rs.getInt("USER_ID"),
-                        rs.getString("USER_EMAIL"),
-                        rs.getString("USER_LOGIN"),
-                        rs.getString("USER_NAME"),
-                        rs.getDate("USER_BIRTHDAY").toLocalDate(),
-                        null),
-                userId
-        );
+        return findUsers(friendIndex.friends(userId), userId);
     }
 
     @Override
     public List<User> getCommonsFriends(int userId, int friendId) {
-        isRegistered(userId);
-        isRegistered(friendId);
         log.info("ХРАНИЛИЩЕ: Получение общих друзей для пользователей с id {} и {}", userId, friendId);
-        String sqlQuery = " SELECT * FROM USERS WHERE USER_ID IN ((SELECT TBL1.FRIEND_ID " +
-                " FROM (SELECT USER_ID, FRIEND_ID FROM FRIENDS WHERE USER_ID = ?) AS TBL1 " +
-                " INNER JOIN (SELECT USER_ID, FRIEND_ID FROM FRIENDS WHERE USER_ID = ?) AS TBL2 " +
-                " ON TBL1.FRIEND_ID = TBL2.FRIEND_ID)) ";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> new User(
-                        rs.getInt("USER_ID"),
-                        rs.getString("USER_EMAIL"),
-                        rs.getString("USER_LOGIN"),
-                        rs.getString("USER_NAME"),
-                        rs.getDate("USER_BIRTHDAY").toLocalDate(),
-                        null),
-                userId, friendId);
+        return findUsers(friendIndex.commonFriends(userId, friendId), userId, friendId);
     }
 
-    private void isRegistered(int userId) {
-        log.info("ХРАНИЛИЩЕ: Проверка регистрации пользователя в системе");
-        String sqlQuery = "SELECT * FROM USERS WHERE USER_ID = ?";
-        SqlRowSet userRow = jdbcTemplate.queryForRowSet(sqlQuery, userId);
-        if (!userRow.next()) {
-            throw new UnregisteredDataException("Пользователь с id " + userId + " не зарегистрирован в системе");
+    @Override
+    public List<User> getFriendSuggestions(int userId, int count) {
+        log.info("ХРАНИЛИЩЕ: Получение {} рекомендаций друзей для пользователя с id {}", count, userId);
+        int[] ranked = friendSuggestions.suggest(userId, count);
+        int[] sorted = ranked.clone();
+        Arrays.sort(sorted);
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : findUsers(sorted, userId)) {
+            usersById.put(user.getId(), user);
+        }
+        /* Сохраняем порядок рейтинга, пользователи, удалённые после его расчёта, пропускаются */
+        List<User> users = new ArrayList<>(ranked.length);
+        for (int suggestedId : ranked) {
+            User user = usersById.get(suggestedId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /* Пользователи с id из отсортированного массива ids по возрастанию id. Тем же запросом проверяется,
+       что зарегистрированы пользователи required: они попадают в выборку, но в результат - только если есть в ids */
+    private List<User> findUsers(int[] ids, int... required) {
+        Integer[] queried = new Integer[ids.length + required.length];
+        for (int i = 0; i < ids.length; i++) {
+            queried[i] = ids[i];
+        }
+        for (int i = 0; i < required.length; i++) {
+            queried[ids.length + i] = required[i];
+        }
+        boolean[] found = new boolean[required.length];
+        List<User> users = new ArrayList<>(ids.length);
+        String sqlQuery = "SELECT " + Rows.USER_COLUMNS + " FROM USERS WHERE USER_ID = ANY(?) ORDER BY USER_ID";
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> {
+            int userId = rs.getInt(1);
+            for (int i = 0; i < required.length; i++) {
+                found[i] |= required[i] == userId;
+            }
+            if (Arrays.binarySearch(ids, userId) >= 0) {
+                users.add(Rows.USER.mapRow(rs, users.size()));
+            }
+        }, (Object) queried);
+        for (int i = 0; i < required.length; i++) {
+            if (!found[i]) {
+                throw new UnregisteredDataException("Пользователь с id " + required[i] +
+                        " не зарегистрирован в системе");
+            }
         }
+        return users;
     }
 }
@@ -5,7 +5,6 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.javafilmorate.model.Film;
 import ru.yandex.practicum.javafilmorate.model.Genre;
@@ -14,7 +13,6 @@ import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -26,30 +24,18 @@ public class GenreDbStorage implements GenreStorage {
     @Override
     public Genre findById(int genreId) {
         log.info("ХРАНИЛИЩЕ: Получение жанра по id {}", genreId);
-        SqlRowSet rs = jdbcTemplate.queryForRowSet("SELECT * FROM GENRES WHERE GENRE_ID = ?", genreId);
-        if (rs.next()) {
-            return new Genre(
-                    rs.getInt("GENRE_ID"),
-                    rs.getString("GENRE_NAME")
-            );
-        } else {
+        List<Genre> genres = jdbcTemplate.query("SELECT " + Rows.GENRE_COLUMNS + " FROM GENRES WHERE GENRE_ID = ?",
+                Rows.GENRE, genreId);
+        if (genres.isEmpty()) {
             throw new UnregisteredDataException("Жанр с id " + genreId + " не зарегистрирован в системе");
         }
+        return genres.get(0);
     }
 
     @Override
     public List<Genre> findAll() {
         log.info("ХРАНИЛИЩЕ: Получение из хранилища списка всех жанров");
-        List<Genre> genres = new ArrayList<>();
-        SqlRowSet rs = jdbcTemplate.queryForRowSet("SELECT * FROM GENRES");
-        while (rs.next()) {
-            Genre genre = new Genre(
-                    rs.getInt("GENRE_ID"),
-                    rs.getString("GENRE_NAME")
-            );
-            genres.add(genre);
-        }
-        return genres;
+        return jdbcTemplate.query("SELECT " + Rows.GENRE_COLUMNS + " FROM GENRES", Rows.GENRE);
     }
 
     @Override
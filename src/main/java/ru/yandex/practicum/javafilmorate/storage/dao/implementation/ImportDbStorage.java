@@ -0,0 +1,232 @@
+package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.javafilmorate.model.*;
+import ru.yandex.practicum.javafilmorate.storage.dao.GenreStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.ImportStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.MpaStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.SearchIndex;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@AllArgsConstructor
+@Repository
+public class ImportDbStorage implements ImportStorage {
+    private static final String LIKE_EXISTS = "Отметка \"like\" уже существует";
+    private static final String FRIENDSHIP_EXISTS = "Запрос дружбы уже существует";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final PopularityIndex popularityIndex;
+    private final SearchIndex searchIndex;
+    private final LikeIndex likeIndex;
+    private final FriendIndex friendIndex;
+
+    @Override
+    @Transactional
+    public void importFilms(List<ImportRow<Film>> rows) {
+        log.info("ХРАНИЛИЩЕ: Импорт порции из {} фильмов", rows.size());
+        Set<Integer> mpaIds = mpaStorage.findAll().stream().map(Mpa::getId).collect(Collectors.toSet());
+        Set<Integer> genreIds = genreStorage.findAll().stream().map(Genre::getId).collect(Collectors.toSet());
+        Set<Integer> directorIds = existing("DIRECTORS", "DIRECTOR_ID", rows.stream()
+                .flatMap(row -> row.getValue().getDirectors().stream().map(Director::getId)));
+        List<ImportRow<Film>> accepted = new ArrayList<>(rows.size());
+        for (ImportRow<Film> row : rows) {
+            Film film = row.getValue();
+            if (film.getMpa() == null || !mpaIds.contains(film.getMpa().getId())) {
+                row.setError("Рейтинг MPA не указан или не зарегистрирован в системе");
+            } else if (!film.getGenres().stream().map(Genre::getId).allMatch(genreIds::contains)) {
+                row.setError("Жанр фильма не зарегистрирован в системе");
+            } else if (!film.getDirectors().stream().map(Director::getId).allMatch(directorIds::contains)) {
+                row.setError("Режиссёр фильма не зарегистрирован в системе");
+            } else {
+                accepted.add(row);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        Inserts.FILM.insertAll(jdbcTemplate, values(accepted));
+        List<int[]> filmGenres = new ArrayList<>();
+        List<int[]> filmDirectors = new ArrayList<>();
+        for (ImportRow<Film> row : accepted) {
+            Film film = row.getValue();
+            film.getGenres().stream().map(Genre::getId).distinct()
+                    .forEach(genreId -> filmGenres.add(new int[]{film.getId(), genreId}));
+            film.getDirectors().stream().map(Director::getId).distinct()
+                    .forEach(directorId -> filmDirectors.add(new int[]{film.getId(), directorId}));
+        }
+        batchPairs("INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?)", filmGenres);
+        batchPairs("INSERT INTO FILMS_DIRECTORS (FILM_ID, DIRECTOR_ID) VALUES (?, ?)", filmDirectors);
+        popularityIndex.invalidate();
+        searchIndex.invalidate();
+    }
+
+    @Override
+    @Transactional
+    public void importUsers(List<ImportRow<User>> rows) {
+        log.info("ХРАНИЛИЩЕ: Импорт порции из {} пользователей", rows.size());
+        for (ImportRow<User> row : rows) {
+            User user = row.getValue();
+            if (user.getName() == null || user.getName().isBlank()) {
+                user.setName(user.getLogin());
+            }
+        }
+        Inserts.USER.insertAll(jdbcTemplate, values(rows));
+    }
+
+    @Override
+    @Transactional
+    public void importLikes(List<ImportRow<Like>> rows) {
+        log.info("ХРАНИЛИЩЕ: Импорт порции из {} отметок \"like\"", rows.size());
+        Set<Integer> filmIds = existing("FILMS", "FILM_ID", rows.stream().map(row -> row.getValue().getFilmId()));
+        Set<Integer> userIds = existing("USERS", "USER_ID", rows.stream().map(row -> row.getValue().getUserId()));
+        Set<Long> pairs = new HashSet<>();
+        List<ImportRow<Like>> accepted = new ArrayList<>(rows.size());
+        List<int[]> likes = new ArrayList<>(rows.size());
+        for (ImportRow<Like> row : rows) {
+            Like like = row.getValue();
+            if (!filmIds.contains(like.getFilmId())) {
+                row.setError("Фильм с id " + like.getFilmId() + " не зарегистрирован в системе");
+            } else if (!userIds.contains(like.getUserId())) {
+                row.setError("Пользователь с id " + like.getUserId() + " не зарегистрирован в системе");
+            } else if (!pairs.add(pair(like.getUserId(), like.getFilmId()))) {
+                row.setError(LIKE_EXISTS);
+            } else {
+                accepted.add(row);
+                likes.add(new int[]{like.getFilmId(), like.getUserId()});
+            }
+        }
+        /* Вся порция пишется одним запросом, FINAL TABLE возвращает только вставленные пары. Уже записанные
+           отметки отсекаются поиском по уникальному ключу - в H2 это в 2-3 раза быстрее MERGE той же порции */
+        Set<Long> inserted = insertedPairs("SELECT FILM_ID, USER_ID FROM FINAL TABLE (INSERT INTO LIKES " +
+                "(FILM_ID, USER_ID) SELECT N.FILM_ID, N.USER_ID FROM TABLE(FILM_ID INT = ?, USER_ID INT = ?) AS N " +
+                "WHERE NOT EXISTS (SELECT 1 FROM LIKES AS L WHERE L.FILM_ID = N.FILM_ID AND L.USER_ID = N.USER_ID))",
+                likes);
+        Map<Integer, Integer> addedByFilm = new HashMap<>();
+        for (int i = 0; i < likes.size(); i++) {
+            int[] like = likes.get(i);
+            if (inserted.contains(pair(like[0], like[1]))) {
+                addedByFilm.merge(like[0], 1, Integer::sum);
+            } else {
+                accepted.get(i).setError(LIKE_EXISTS);
+            }
+        }
+        if (addedByFilm.isEmpty()) {
+            return;
+        }
+        /* Счётчики лайков всей порции обновляются одним запросом, новые значения сразу уходят в рейтинги.
+           Индекс лайков сбрасывается один раз на весь импорт - в likesImported */
+        jdbcTemplate.query("SELECT FILM_ID, FILM_LIKES FROM FINAL TABLE (MERGE INTO FILMS AS F " +
+                        "USING TABLE(FILM_ID INT = ?, ADDED INT = ?) AS A ON F.FILM_ID = A.FILM_ID " +
+                        "WHEN MATCHED THEN UPDATE SET FILM_LIKES = F.FILM_LIKES + A.ADDED)",
+                (RowCallbackHandler) rs -> popularityIndex.refreshLikes(rs.getInt(1), rs.getInt(2)),
+                addedByFilm.keySet().toArray(new Integer[0]), addedByFilm.values().toArray(new Integer[0]));
+    }
+
+    @Override
+    @Transactional
+    public void likesImported() {
+        likeIndex.invalidate();
+    }
+
+    @Override
+    @Transactional
+    public void importFriendships(List<ImportRow<Friendship>> rows) {
+        log.info("ХРАНИЛИЩЕ: Импорт порции из {} запросов дружбы", rows.size());
+        Set<Integer> userIds = existing("USERS", "USER_ID", rows.stream()
+                .flatMap(row -> Stream.of(row.getValue().getUserId(), row.getValue().getFriendId())));
+        Set<Long> pairs = new HashSet<>();
+        List<ImportRow<Friendship>> accepted = new ArrayList<>(rows.size());
+        List<int[]> friendships = new ArrayList<>(rows.size());
+        for (ImportRow<Friendship> row : rows) {
+            Friendship friendship = row.getValue();
+            if (!userIds.contains(friendship.getUserId())) {
+                row.setError("Пользователь с id " + friendship.getUserId() + " не зарегистрирован в системе");
+            } else if (!userIds.contains(friendship.getFriendId())) {
+                row.setError("Пользователь с id " + friendship.getFriendId() + " не зарегистрирован в системе");
+            } else if (friendship.getUserId().equals(friendship.getFriendId())) {
+                row.setError("Пользователь не может добавить в друзья самого себя");
+            } else if (!pairs.add(pair(friendship.getUserId(), friendship.getFriendId()))) {
+                row.setError(FRIENDSHIP_EXISTS);
+            } else {
+                accepted.add(row);
+                friendships.add(new int[]{friendship.getUserId(), friendship.getFriendId()});
+            }
+        }
+        Set<Long> inserted = insertedPairs("SELECT USER_ID, FRIEND_ID FROM FINAL TABLE (INSERT INTO FRIENDS " +
+                "(USER_ID, FRIEND_ID) SELECT N.USER_ID, N.FRIEND_ID " +
+                "FROM TABLE(USER_ID INT = ?, FRIEND_ID INT = ?) AS N WHERE NOT EXISTS " +
+                "(SELECT 1 FROM FRIENDS AS F WHERE F.USER_ID = N.USER_ID AND F.FRIEND_ID = N.FRIEND_ID))", friendships);
+        for (int i = 0; i < friendships.size(); i++) {
+            int[] friendship = friendships.get(i);
+            if (!inserted.contains(pair(friendship[0], friendship[1]))) {
+                accepted.get(i).setError(FRIENDSHIP_EXISTS);
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public void friendshipsImported() {
+        friendIndex.invalidate();
+    }
+
+    /* Проверка ссылок сразу для всей порции: один запрос вместо запроса на каждую строку */
+    private Set<Integer> existing(String table, String idColumn, Stream<Integer> ids) {
+        Integer[] distinct = ids.filter(Objects::nonNull).distinct().toArray(Integer[]::new);
+        Set<Integer> found = new HashSet<>();
+        if (distinct.length > 0) {
+            jdbcTemplate.query("SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " = ANY(?)",
+                    (RowCallbackHandler) rs -> found.add(rs.getInt(1)), (Object) distinct);
+        }
+        return found;
+    }
+
+    private static long pair(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private void batchPairs(String sqlQuery, List<int[]> pairs) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sqlQuery, pairs, pairs.size(), (ps, pair) -> {
+            ps.setInt(1, pair[0]);
+            ps.setInt(2, pair[1]);
+        });
+    }
+
+    /* Пары передаются двумя массивами в один запрос, который возвращает действительно записанные пары */
+    private Set<Long> insertedPairs(String sqlQuery, List<int[]> pairs) {
+        Set<Long> inserted = new HashSet<>();
+        if (pairs.isEmpty()) {
+            return inserted;
+        }
+        Integer[] first = new Integer[pairs.size()];
+        Integer[] second = new Integer[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            first[i] = pairs.get(i)[0];
+            second[i] = pairs.get(i)[1];
+        }
+        jdbcTemplate.query(sqlQuery, (RowCallbackHandler) rs -> inserted.add(pair(rs.getInt(1), rs.getInt(2))),
+                first, second);
+        return inserted;
+    }
+
+    private static <T> List<T> values(List<ImportRow<T>> rows) {
+        return rows.stream().map(ImportRow::getValue).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
+
+import ru.yandex.practicum.javafilmorate.model.Event;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Review;
+import ru.yandex.practicum.javafilmorate.model.User;
+
+import java.sql.Types;
+
+/* Вставки сущностей, общие для хранилищ и импорта */
+final class Inserts {
+    static final KeyedInsert<Film> FILM = new KeyedInsert<>("INSERT INTO FILMS (FILM_NAME, FILM_DESCRIPTION, " +
+            "FILM_RELEASE_DATE, FILM_DURATION, MPA_ID) VALUES (?, ?, ?, ?, ?)", "FILM_ID", (ps, film) -> {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setObject(3, film.getReleaseDate(), Types.DATE);
+        ps.setObject(4, film.getDuration(), Types.INTEGER);
+        ps.setInt(5, film.getMpa().getId());
+    }, Film::setId);
+
+    static final KeyedInsert<User> USER = new KeyedInsert<>("INSERT INTO USERS (USER_EMAIL, USER_LOGIN, " +
+            "USER_NAME, USER_BIRTHDAY) VALUES (?, ?, ?, ?)", "USER_ID", (ps, user) -> {
+        ps.setString(1, user.getEmail());
+        ps.setString(2, user.getLogin());
+        ps.setString(3, user.getName());
+        ps.setObject(4, user.getBirthday(), Types.DATE);
+    }, User::setId);
+
+    static final KeyedInsert<Review> REVIEW = new KeyedInsert<>("INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, " +
+            "USER_ID, FILM_ID, USEFUL) VALUES (?, ?, ?, ?, 0)", "ID", (ps, review) -> {
+        ps.setString(1, review.getContent());
+        ps.setBoolean(2, review.getIsPositive());
+        ps.setInt(3, review.getUserId());
+        ps.setInt(4, review.getFilmId());
+    }, Review::setReviewId);
+
+    static final KeyedInsert<Event> EVENT = new KeyedInsert<>("INSERT INTO EVENTS (EVENT_TYPE, OPERATION_TYPE, " +
+            "ENTITY_ID, USER_ID, EVENT_TIME) VALUES (?, ?, ?, ?, ?)", "EVENT_ID", (ps, event) -> {
+        ps.setString(1, event.getEventType().toString());
+        ps.setString(2, event.getOperation().toString());
+        ps.setInt(3, event.getEntityId());
+        ps.setInt(4, event.getUserId());
+        ps.setLong(5, event.getTimestamp());
+    }, Event::setEventId);
+
+    private Inserts() {
+    }
+}
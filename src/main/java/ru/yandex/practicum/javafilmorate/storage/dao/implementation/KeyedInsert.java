@@ -0,0 +1,71 @@
+package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/* Вставка строк одной таблицы с получением сгенерированных id. Текст запроса и столбцы задаются один раз,
+   поэтому метаданные таблицы не читаются, а H2 берёт уже разобранный запрос из кэша сессии.
+   Пачка строк уходит одним batch-запросом, id возвращаются в порядке строк */
+class KeyedInsert<T> {
+    private final String sqlQuery;
+    private final String[] keyColumns;
+    private final Binder<T> binder;
+    private final IdSetter<T> idSetter;
+
+    KeyedInsert(String sqlQuery, String keyColumn, Binder<T> binder, IdSetter<T> idSetter) {
+        this.sqlQuery = sqlQuery;
+        this.keyColumns = new String[]{keyColumn};
+        this.binder = binder;
+        this.idSetter = idSetter;
+    }
+
+    T insert(JdbcTemplate jdbcTemplate, T value) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sqlQuery, keyColumns)) {
+                binder.bind(ps, value);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("Не получен сгенерированный ключ: " + sqlQuery);
+                    }
+                    idSetter.set(value, keys.getInt(1));
+                }
+            }
+            return value;
+        });
+    }
+
+    void insertAll(JdbcTemplate jdbcTemplate, List<T> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sqlQuery, keyColumns)) {
+                for (T value : values) {
+                    binder.bind(ps, value);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < values.size() && keys.next(); i++) {
+                        idSetter.set(values.get(i), keys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T value) throws SQLException;
+    }
+
+    interface IdSetter<T> {
+        void set(T value, int id);
+    }
+}
@@ -3,9 +3,11 @@ package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.javafilmorate.storage.dao.LikeStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.util.List;
@@ -15,47 +17,78 @@ import java.util.List;
 @Repository
 public class LikesDbStorage implements LikeStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final PopularityIndex popularityIndex;
+    private final LikeIndex likeIndex;
 
     @Override
+    @Transactional
     public void addLike(Integer filmId, Integer userId) {
         isFilmRegistered(filmId);
         isUserRegistered(userId);
         log.info("ХРАНИЛИЩЕ: Сохранение отметки\"like\" фильму с id {} от пользователя с id {}", filmId, userId);
-        String sqlQuery = "INSERT INTO LIKES (FILM_ID, USER_ID) VALUES (?, ?)";
-        jdbcTemplate.update(sqlQuery, filmId, userId);
+        /* Повторная отметка не создаёт вторую строку и не увеличивает счётчик. MERGE ... KEY в H2 сообщает
+           об одной строке и при вставке, и при совпадении, поэтому вставка только через WHEN NOT MATCHED */
+        String sqlQuery = "MERGE INTO LIKES AS L USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) " +
+                "AS N (FILM_ID, USER_ID) ON L.FILM_ID = N.FILM_ID AND L.USER_ID = N.USER_ID " +
+                "WHEN NOT MATCHED THEN INSERT (FILM_ID, USER_ID) VALUES (N.FILM_ID, N.USER_ID)";
+        if (jdbcTemplate.update(sqlQuery, filmId, userId) == 0) {
+            return;
+        }
+        Integer likes = jdbcTemplate.queryForObject("SELECT FILM_LIKES FROM FINAL TABLE " +
+                "(UPDATE FILMS SET FILM_LIKES = FILM_LIKES + 1 WHERE FILM_ID = ?)", Integer.class, filmId);
+        popularityIndex.refreshLikes(filmId, likes);
+        likeIndex.addLike(filmId, userId);
     }
 
     @Override
+    @Transactional
     public void deleteLike(int filmId, int userId) {
         isFilmRegistered(filmId);
         isUserRegistered(userId);
         log.info("ХРАНИЛИЩЕ: Удаление отметки\"like\" у фильма с id {} от пользователя с id {}", filmId, userId);
         String sqlQuery = "DELETE FROM LIKES WHERE FILM_ID = ? AND USER_ID = ?";
-        jdbcTemplate.update(sqlQuery, filmId, userId);
+        int deleted = jdbcTemplate.update(sqlQuery, filmId, userId);
+        if (deleted > 0) {
+            Integer likes = jdbcTemplate.queryForObject("SELECT FILM_LIKES FROM FINAL TABLE " +
+                    "(UPDATE FILMS SET FILM_LIKES = FILM_LIKES - ? WHERE FILM_ID = ?)", Integer.class, deleted, filmId);
+            popularityIndex.refreshLikes(filmId, likes);
+            likeIndex.removeLike(filmId, userId);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int rebuildLikeCounters() {
+        log.info("ХРАНИЛИЩЕ: Пересчёт счётчиков отметок \"like\" по таблице LIKES");
+        String sqlQuery = "UPDATE FILMS AS F SET FILM_LIKES = " +
+                "(SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID) " +
+                "WHERE FILM_LIKES <> (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID)";
+        int updated = jdbcTemplate.update(sqlQuery);
+        if (updated > 0) {
+            popularityIndex.invalidate();
+        }
+        return updated;
     }
 
     @Override
     public List<Integer> getLikes(int filmId) {
         isFilmRegistered(filmId);
         log.info("ХРАНИЛИЩЕ: Получение отметок \"like\" для фильма с id {}", filmId);
-        String sqlQuery = "SELECT USER_ID FROM LIKES WHERE FILM_ID = ?";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> rs.getInt("USER_ID"), filmId);
+        return likeIndex.usersWhoLiked(filmId);
     }
 
     private void isFilmRegistered(int filmId) {
         log.info("ХРАНИЛИЩЕ: Проверка регистрации фильма с {} в системе", filmId);
-        String sqlQuery = "SELECT * FROM FILMS WHERE FILM_ID = ?";
-        SqlRowSet filmRow = jdbcTemplate.queryForRowSet(sqlQuery, filmId);
-        if (!filmRow.next()) {
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM FILMS WHERE FILM_ID = ?)";
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, filmId))) {
             throw new UnregisteredDataException("Фильм с id " + filmId + " не зарегистрирован в системе");
         }
     }
 
     private void isUserRegistered(int userId) {
         log.info("ХРАНИЛИЩЕ: Проверка регистрации пользователя с id {} в системе", userId);
-        String sqlQuery = "SELECT * FROM USERS WHERE USER_ID = ?";
-        SqlRowSet userRow = jdbcTemplate.queryForRowSet(sqlQuery, userId);
-        if (!userRow.next()) {
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM USERS WHERE USER_ID = ?)";
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, userId))) {
             throw new UnregisteredDataException("Пользователь с id " + userId + " не зарегистрирован в системе");
         }
     }
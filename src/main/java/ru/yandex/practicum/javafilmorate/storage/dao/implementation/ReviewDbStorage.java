@@ -3,41 +3,34 @@ package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.javafilmorate.model.Review;
 import ru.yandex.practicum.javafilmorate.storage.dao.ReviewStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.TopReviewsIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 public class ReviewDbStorage implements ReviewStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final TopReviewsIndex topReviews;
 
-    public ReviewDbStorage(JdbcTemplate jdbcTemplate) {
+    public ReviewDbStorage(JdbcTemplate jdbcTemplate, TopReviewsIndex topReviews) {
         this.jdbcTemplate = jdbcTemplate;
+        this.topReviews = topReviews;
     }
 
     @Override
     public Review add(Review review) {
         log.info("ХРАНИЛИЩЕ: Добавление отзыва в хранилище от пользователя с id {} на фильм с id {}",
                 review.getUserId(), review.getFilmId());
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(Objects.requireNonNull(jdbcTemplate.getDataSource()))
-                .withTableName("reviews")
-                .usingGeneratedKeyColumns("ID");
-        Map<String, Object> params = Map.of("CONTENT", review.getContent(), "IS_POSITIVE", review.getIsPositive(),
-                "USER_ID", review.getUserId(), "FILM_ID", review.getFilmId());
         try {
-            review.setReviewId(simpleJdbcInsert.executeAndReturnKey(params).intValue());
+            Inserts.REVIEW.insert(jdbcTemplate, review);
+            topReviews.refresh(review.getFilmId(), review.getReviewId());
             return review;
         } catch (DataIntegrityViolationException e) {
             throw new UnregisteredDataException("Определен несуществующий пользователь или фильм");
@@ -52,70 +45,91 @@ public class ReviewDbStorage implements ReviewStorage {
             return null;
         jdbcTemplate.update("UPDATE reviews SET CONTENT = ?,  IS_POSITIVE = ? WHERE ID = ?",
                 review.getContent(), review.getIsPositive(), review.getReviewId());
+        topReviews.refresh(updateReview.getFilmId(), review.getReviewId());
         return findReviewByID(review.getReviewId());
     }
 
+    /* Голос пользователя хранится в REVIEW_VOTES, полезность меняется на разницу между новым и прежним голосом.
+       Строка отзыва блокируется первой, поэтому голоса за один отзыв применяются по очереди */
     @Override
-    public void updateUseful(Review review) {
-        log.info("ХРАНИЛИЩЕ: Обновление данных о полезности отзыва с id {}", review.getReviewId());
-        findReviewByID(review.getReviewId());
-        jdbcTemplate.update("UPDATE reviews SET USEFUL = ?  WHERE ID = ?",
-                review.getUseful(), review.getReviewId());
+    @Transactional
+    public void setVote(int reviewID, int userID, int vote) {
+        log.info("ХРАНИЛИЩЕ: Сохранение голоса {} пользователя с id {} за отзыв с id {}", vote, userID, reviewID);
+        List<Integer> films = jdbcTemplate.queryForList("SELECT FILM_ID FROM FINAL TABLE " +
+                        "(UPDATE reviews SET USEFUL = USEFUL + ? - COALESCE(" +
+                        "(SELECT VOTE FROM REVIEW_VOTES WHERE REVIEW_ID = ? AND USER_ID = ?), 0) WHERE ID = ?)",
+                Integer.class, vote, reviewID, userID, reviewID);
+        if (films.isEmpty()) {
+            throw new UnregisteredDataException("Нет отзыва с ID: " + reviewID);
+        }
+        try {
+            jdbcTemplate.update("MERGE INTO REVIEW_VOTES (REVIEW_ID, USER_ID, VOTE) KEY (REVIEW_ID, USER_ID) " +
+                    "VALUES (?, ?, ?)", reviewID, userID, vote);
+        } catch (DataIntegrityViolationException e) {
+            throw new UnregisteredDataException("Пользователь с id " + userID + " не зарегистрирован в системе");
+        }
+        topReviews.refresh(films.get(0), reviewID);
+    }
+
+    @Override
+    @Transactional
+    public void removeVote(int reviewID, int userID, int vote) {
+        log.info("ХРАНИЛИЩЕ: Удаление голоса {} пользователя с id {} за отзыв с id {}", vote, userID, reviewID);
+        List<Integer> films = jdbcTemplate.queryForList("SELECT FILM_ID FROM FINAL TABLE " +
+                        "(UPDATE reviews SET USEFUL = USEFUL - ? WHERE ID = ? AND EXISTS " +
+                        "(SELECT 1 FROM REVIEW_VOTES WHERE REVIEW_ID = ? AND USER_ID = ? AND VOTE = ?))",
+                Integer.class, vote, reviewID, reviewID, userID, vote);
+        if (!films.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM REVIEW_VOTES WHERE REVIEW_ID = ? AND USER_ID = ?", reviewID, userID);
+            topReviews.refresh(films.get(0), reviewID);
+        } else if (findReviewByID(reviewID) == null) {
+            throw new UnregisteredDataException("Нет отзыва с ID: " + reviewID);
+        }
     }
 
     @Override
-    public List<Review> findAllReviews(int count) {
+    public List<Review> findAllReviews(Cursor after, int count) {
         log.info("ХРАНИЛИЩЕ: Получение списка {} самых полезных отзывов", count);
-        return jdbcTemplate.query("SELECT * FROM reviews", (rs, rowNum) -> makeReviewForList(rs))
-                .stream()
-                .sorted(Comparator.comparingInt(Review::getUseful).reversed())
-                .limit(count)
-                .collect(Collectors.toList());
+        if (after == null) {
+            return jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews " +
+                    "ORDER BY USEFUL DESC, ID LIMIT ?", Rows.REVIEW, count);
+        }
+        /* Условие USEFUL <= ? задаёт диапазон по индексу, уточнение внутри него отсекает уже отданные отзывы */
+        return jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews " +
+                        "WHERE USEFUL <= ? AND (USEFUL < ? OR ID > ?) ORDER BY USEFUL DESC, ID LIMIT ?", Rows.REVIEW,
+                after.getKey(), after.getKey(), after.getId(), count);
     }
 
     @Override
-    public List<Review> findReviewsByFilmID(int filmID, int count) {
+    public List<Review> findReviewsByFilmID(int filmID, Cursor after, int count) {
         log.info("ХРАНИЛИЩЕ: Получение списка {} самых полезных отзывов на фильм с id {}", count, filmID);
-        return jdbcTemplate.query("SELECT * FROM reviews WHERE FILM_ID = ?", (rs, rowNum) -> makeReviewForList(rs), filmID)
-                .stream()
-                .sorted(Comparator.comparingInt(Review::getUseful).reversed())
-                .limit(count)
-                .collect(Collectors.toList());
+        List<Review> top = topReviews.page(filmID, after, count);
+        if (top != null) {
+            return top;
+        }
+        if (after == null) {
+            return jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews WHERE FILM_ID = ? " +
+                    "ORDER BY USEFUL DESC, ID LIMIT ?", Rows.REVIEW, filmID, count);
+        }
+        return jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews " +
+                        "WHERE FILM_ID = ? AND USEFUL <= ? AND (USEFUL < ? OR ID > ?) ORDER BY USEFUL DESC, ID LIMIT ?",
+                Rows.REVIEW,
+                filmID, after.getKey(), after.getKey(), after.getId(), count);
     }
 
     @Override
     public Review findReviewByID(int reviewID) {
         log.info("ХРАНИЛИЩЕ: Получение отзыва по id {}", reviewID);
-        return makeReview(jdbcTemplate.queryForRowSet("SELECT * FROM reviews WHERE ID = ? LIMIT 1", reviewID));
+        List<Review> reviews = jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews WHERE ID = ?",
+                Rows.REVIEW, reviewID);
+        return reviews.isEmpty() ? null : reviews.get(0);
     }
 
     @Override
     public void removeReview(int reviewID) {
         log.info("ХРАНИЛИЩЕ: Удаление из хранилища отзыва с id {}", reviewID);
-        jdbcTemplate.update("DELETE FROM reviews WHERE ID = ?", reviewID);
-    }
-
-    private Review makeReviewForList(ResultSet rs) throws SQLException {
-        return new Review(
-                rs.getInt("ID"),
-                rs.getString("CONTENT"),
-                rs.getBoolean("IS_POSITIVE"),
-                rs.getInt("USER_ID"),
-                rs.getInt("FILM_ID"),
-                rs.getInt("USEFUL"));
-    }
-
-    private Review makeReview(SqlRowSet reviewRows) {
-        Review review = null;
-        if (reviewRows.next()) {
-            review = new Review(
-                    reviewRows.getInt("ID"),
-                    reviewRows.getString("CONTENT"),
-                    reviewRows.getBoolean("IS_POSITIVE"),
-                    reviewRows.getInt("USER_ID"),
-                    reviewRows.getInt("FILM_ID"),
-                    reviewRows.getInt("USEFUL"));
-        }
-        return review;
+        List<Integer> films = jdbcTemplate.queryForList("SELECT FILM_ID FROM OLD TABLE (DELETE FROM reviews WHERE ID = ?)",
+                Integer.class, reviewID);
+        films.forEach(filmId -> topReviews.refresh(filmId, reviewID));
     }
 }
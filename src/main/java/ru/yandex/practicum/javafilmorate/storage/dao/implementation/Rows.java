@@ -0,0 +1,56 @@
+package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.javafilmorate.model.*;
+
+import java.time.LocalDate;
+
+/* Отображение строк сущностей по номерам столбцов. Список столбцов задаётся рядом с отображением,
+   поэтому номера известны заранее и не ищутся по имени в каждой строке, а строки читаются прямо
+   из курсора JDBC без промежуточной копии */
+public final class Rows {
+    static final String MPA_COLUMNS = "MPA_ID, MPA_NAME";
+    static final RowMapper<Mpa> MPA = (rs, rowNum) -> new Mpa(rs.getInt(1), rs.getString(2));
+
+    static final String GENRE_COLUMNS = "GENRE_ID, GENRE_NAME";
+    static final RowMapper<Genre> GENRE = (rs, rowNum) -> new Genre(rs.getInt(1), rs.getString(2));
+
+    static final String DIRECTOR_COLUMNS = "DIRECTOR_ID, DIRECTOR_NAME";
+    static final RowMapper<Director> DIRECTOR = (rs, rowNum) -> new Director(rs.getInt(1), rs.getString(2));
+
+    static final String USER_COLUMNS = "USER_ID, USER_EMAIL, USER_LOGIN, USER_NAME, USER_BIRTHDAY";
+    static final RowMapper<User> USER = (rs, rowNum) -> new User(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getObject(5, LocalDate.class),
+            null);
+
+    public static final String REVIEW_COLUMNS = "ID, CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL";
+    public static final RowMapper<Review> REVIEW = (rs, rowNum) -> new Review(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getBoolean(3),
+            rs.getInt(4),
+            rs.getInt(5),
+            rs.getInt(6));
+
+    static final String EVENT_COLUMNS = "EVENT_ID, EVENT_TYPE, OPERATION_TYPE, ENTITY_ID, USER_ID, EVENT_TIME";
+    static final RowMapper<Event> EVENT = (rs, rowNum) -> Event.builder()
+            .eventId(rs.getInt(1))
+            .eventType(EventType.valueOf(rs.getString(2)))
+            .operation(OperationType.valueOf(rs.getString(3)))
+            .entityId(rs.getInt(4))
+            .userId(rs.getInt(5))
+            .timestamp(rs.getLong(6))
+            .build();
+
+    /* Список столбцов с псевдонимом таблицы для запросов с соединением */
+    static String columns(String alias, String columns) {
+        return alias + "." + columns.replace(", ", ", " + alias + ".");
+    }
+
+    private Rows() {
+    }
+}
@@ -3,20 +3,33 @@ package ru.yandex.practicum.javafilmorate.storage.dao.implementation;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.javafilmorate.model.User;
 import ru.yandex.practicum.javafilmorate.storage.dao.UserStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.TopReviewsIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
+import java.sql.PreparedStatement;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
 @AllArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final PopularityIndex popularityIndex;
+    private final LikeIndex likeIndex;
+    private final TopReviewsIndex topReviews;
+    private final FriendIndex friendIndex;
 
     @Override
     public User addUser(User user) {
@@ -27,11 +40,7 @@ public class UserDbStorage implements UserStorage {
             user.setName(user.getLogin());
         }
         log.info("ХРАНИЛИЩЕ: Cоздание пользователя с id {}", user.getId());
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("USERS")
-                .usingGeneratedKeyColumns("USER_ID");
-        user.setId(simpleJdbcInsert.executeAndReturnKey(user.userRowMap()).intValue());
-        return user;
+        return Inserts.USER.insert(jdbcTemplate, user);
     }
 
     @Override
@@ -56,10 +65,27 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public boolean deleteUser(int userId) {
         log.info("ХРАНИЛИЩЕ: Удаление пользователя с id {}", userId);
+        /* Лайки пользователя удалятся каскадно, поэтому заранее уменьшаем счётчики у фильмов
+           и передаём новые значения в рейтинги популярности */
+        jdbcTemplate.query("SELECT FILM_ID, FILM_LIKES FROM FINAL TABLE (UPDATE FILMS AS F SET FILM_LIKES = " +
+                "FILM_LIKES - (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID AND L.USER_ID = ?) " +
+                "WHERE F.FILM_ID IN (SELECT FILM_ID FROM LIKES WHERE USER_ID = ?))",
+                (RowCallbackHandler) rs -> popularityIndex.refreshLikes(rs.getInt(1), rs.getInt(2)), userId, userId);
+        /* То же для полезности отзывов, за которые голосовал пользователь */
+        jdbcTemplate.update("UPDATE REVIEWS AS R SET USEFUL = USEFUL - " +
+                "(SELECT V.VOTE FROM REVIEW_VOTES AS V WHERE V.REVIEW_ID = R.ID AND V.USER_ID = ?) " +
+                "WHERE R.ID IN (SELECT REVIEW_ID FROM REVIEW_VOTES WHERE USER_ID = ?)", userId, userId);
         String sqlQuery = "DELETE FROM USERS WHERE USER_ID = ?";
-        return jdbcTemplate.update(sqlQuery, userId) > 0;
+        boolean deleted = jdbcTemplate.update(sqlQuery, userId) > 0;
+        if (deleted) {
+            likeIndex.removeUser(userId);
+            friendIndex.removeUser(userId);
+            topReviews.invalidate();
+        }
+        return deleted;
     }
 
     @Override
@@ -68,44 +94,35 @@ public class UserDbStorage implements UserStorage {
         if (userId == null) {
             throw new UnregisteredDataException("При поиске пользователя был передан id равный null");
         }
-        User user;
-        SqlRowSet rs = jdbcTemplate.queryForRowSet("SELECT * FROM USERS WHERE USER_ID = ?", userId);
-        if (rs.first()) {
-            user = new User(
-                    rs.getInt("USER_ID"),
-                    rs.getString("USER_EMAIL"),
-                    rs.getString("USER_LOGIN"),
-                    rs.getString("USER_NAME"),
-                    rs.getDate("USER_BIRTHDAY").toLocalDate(),
-                    null
-            );
-        } else {
+        List<User> users = jdbcTemplate.query("SELECT " + Rows.USER_COLUMNS + " FROM USERS WHERE USER_ID = ?",
+                Rows.USER, userId);
+        if (users.isEmpty()) {
             throw new UnregisteredDataException("Пользователь с id " + userId + " не зарегистрирован в системе");
         }
-        return user;
+        return users.get(0);
     }
 
     @Override
     public List<User> findAll() {
         log.info("ХРАНИЛИЩЕ: Получение списка всех пользователей");
-        String sqlQuery = "SELECT * FROM USERS";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> new User(
-                rs.getInt("USER_ID"),
-                rs.getString("USER_EMAIL"),
-                rs.getString("USER_LOGIN"),
-                rs.getString("USER_NAME"),
-                rs.getDate("USER_BIRTHDAY").toLocalDate(),
-                null)
-        );
+        String sqlQuery = "SELECT " + Rows.USER_COLUMNS + " FROM USERS";
+        return jdbcTemplate.query(sqlQuery, Rows.USER);
+    }
+
+    @Override
+    public List<User> findAll(Cursor after, int limit) {
+        log.info("ХРАНИЛИЩЕ: Получение страницы из {} пользователей", limit);
+        String sqlQuery = "SELECT " + Rows.USER_COLUMNS + " FROM USERS WHERE USER_ID > ? ORDER BY USER_ID LIMIT ?";
+        return jdbcTemplate.query(sqlQuery, Rows.USER, after != null ? after.getId() : 0, limit);
     }
 
     @Override
-    public Map<Integer, Set<Integer>> getAllLikes() {
-        log.info("ХРАНИЛИЩЕ: Получение карты всех лайков");
-        List<Map<String, Object>> likesDatabaseResult = jdbcTemplate.queryForList("SELECT * from likes");
-        Map<Integer, Set<Integer>> likes = new HashMap<>();
-        for (Map<String, Object> map : likesDatabaseResult)
-            likes.computeIfAbsent((Integer) map.get("film_id"), k -> new HashSet<>()).add((Integer) map.get("user_id"));
-        return likes;
+    public void streamAll(Consumer<User> action) {
+        log.info("ХРАНИЛИЩЕ: Потоковая выгрузка всех пользователей");
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT " + Rows.USER_COLUMNS + " FROM USERS ORDER BY USER_ID");
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(Rows.USER.mapRow(rs, 0)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,452 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/* Граф дружбы в памяти: для каждого пользователя отсортированный массив id друзей без упаковки чисел.
+   Опубликованный массив не меняется, изменение создаёт новую копию. Поэтому читатель берёт ссылку на массив
+   оптимистично, без блокировки, а пересечение списков считает уже вне её. Каждое изменение списка увеличивает
+   версию пользователя, а сброс графа - поколение, по ним рекомендации проверяют свою актуальность */
+@Slf4j
+@Component
+public class FriendIndex implements SnapshotSection {
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexJournal journal;
+    private final StampedLock lock = new StampedLock();
+    private int[][] friendsByUser = new int[0][];
+    private long[] versions = new long[0];
+    private long generation;
+    private volatile boolean loaded;
+
+    public FriendIndex(JdbcTemplate jdbcTemplate, IndexJournal journal) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.journal = journal;
+    }
+
+    /* Друзья пользователя по возрастанию id. Массив общий, менять его нельзя */
+    public int[] friends(int userId) {
+        ensureLoaded();
+        long stamp = lock.tryOptimisticRead();
+        int[] friends = get(userId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                friends = get(userId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return friends;
+    }
+
+    /* Общие друзья двух пользователей по возрастанию id - слияние двух отсортированных массивов */
+    public int[] commonFriends(int userId, int otherUserId) {
+        int[] first = friends(userId);
+        int[] second = friends(otherUserId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == common.length ? common : Arrays.copyOf(common, size);
+    }
+
+    /* Друзья друзей, которых ещё нет среди друзей пользователя, по убыванию числа общих друзей, при равенстве -
+       по id. Обход ограничен: у пользователя берутся первые maxFanOut друзей по id, друзья с большим числом
+       друзей пропускаются - список знаменитости дал бы всем одинаковую прибавку и съел бы всё время запроса, -
+       а всего просматривается не больше maxEdges записей дружбы. Под блокировкой кандидаты только собираются
+       в массив, подсчёт сортировкой идёт уже вне её */
+    Ranking suggest(int userId, int limit, int maxFanOut, int maxEdges) {
+        ensureLoaded();
+        int[] candidates = new int[16];
+        int size = 0;
+        int fanOut;
+        long graphGeneration;
+        long userVersion;
+        long friendsVersion;
+        long stamp = lock.readLock();
+        try {
+            int[] friends = get(userId);
+            fanOut = Math.min(friends.length, maxFanOut);
+            int edges = 0;
+            for (int i = 0; i < fanOut; i++) {
+                int[] friendsOfFriend = get(friends[i]);
+                if (friendsOfFriend.length > maxFanOut) {
+                    continue;
+                }
+                if (friendsOfFriend.length > maxEdges - edges) {
+                    break;
+                }
+                edges += friendsOfFriend.length;
+                if (size + friendsOfFriend.length > candidates.length) {
+                    candidates = Arrays.copyOf(candidates, Math.max(size + friendsOfFriend.length, size * 2));
+                }
+                for (int candidateId : friendsOfFriend) {
+                    if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                        candidates[size++] = candidateId;
+                    }
+                }
+            }
+            graphGeneration = generation;
+            userVersion = version(userId);
+            friendsVersion = friendsVersion(friends, fanOut);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return new Ranking(userId, rank(candidates, size, limit), graphGeneration, userVersion, fanOut,
+                friendsVersion);
+    }
+
+    /* Число повторов каждого id и сам id упаковываются в long так, что больший ключ - больше общих друзей,
+       а при равенстве - меньший id. Лучшие limit ключей - в конце отсортированного массива */
+    private static int[] rank(int[] candidates, int size, int limit) {
+        Arrays.sort(candidates, 0, size);
+        long[] keys = new long[size];
+        int distinct = 0;
+        for (int i = 0; i < size; ) {
+            int j = i + 1;
+            while (j < size && candidates[j] == candidates[i]) {
+                j++;
+            }
+            keys[distinct++] = (long) (j - i) << 32 | (Integer.MAX_VALUE - candidates[i]);
+            i = j;
+        }
+        Arrays.sort(keys, 0, distinct);
+        int[] userIds = new int[Math.min(limit, distinct)];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = Integer.MAX_VALUE - (int) keys[distinct - 1 - i];
+        }
+        return userIds;
+    }
+
+    /* Рейтинг актуален, пока в том же поколении графа не менялись ни друзья пользователя, ни списки обойдённых
+       друзей. Версии только растут, поэтому сумма версий тех же друзей совпадает, лишь если ни одна не изменилась */
+    boolean isCurrent(Ranking ranking) {
+        ensureLoaded();
+        long stamp = lock.readLock();
+        try {
+            return ranking.generation == generation && ranking.userVersion == version(ranking.userId)
+                    && ranking.friendsVersion == friendsVersion(get(ranking.userId), ranking.fanOut);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void addFriend(int userId, int friendId) {
+        journal.record(IndexJournal.Kind.FRIEND_ADDED, userId, friendId, () -> write(() -> add(userId, friendId)));
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        journal.record(IndexJournal.Kind.FRIEND_REMOVED, userId, friendId,
+                () -> write(() -> remove(userId, friendId)));
+    }
+
+    /* Дружба удалённого пользователя удаляется каскадно в обе стороны */
+    public void removeUser(int userId) {
+        journal.record(IndexJournal.Kind.USER_REMOVED, userId, 0, () -> write(() -> removeUser(userId, true)));
+    }
+
+    public void invalidate() {
+        journal.record(IndexJournal.Kind.FRIENDS_RESET, 0, 0, () -> {
+            long stamp = lock.writeLock();
+            try {
+                log.info("ИНДЕКС: Сброс графа дружбы");
+                reset();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    @Override
+    public String snapshotName() {
+        return "friends";
+    }
+
+    @Override
+    public void load() {
+        ensureLoaded();
+    }
+
+    /* Размер массива, затем для каждого пользователя с друзьями: id, число друзей и их id по возрастанию */
+    @Override
+    public long writeSnapshot(DataOutput out) throws IOException {
+        ensureLoaded();
+        long stamp = lock.readLock();
+        try {
+            long appliedUpTo = journal.appliedUpTo();
+            if (appliedUpTo < 0 || !loaded) {
+                return -1;
+            }
+            out.writeLong(appliedUpTo);
+            out.writeInt(friendsByUser.length);
+            int users = 0;
+            for (int[] friends : friendsByUser) {
+                if (friends != null) {
+                    users++;
+                }
+            }
+            out.writeInt(users);
+            for (int userId = 0; userId < friendsByUser.length; userId++) {
+                int[] friends = friendsByUser[userId];
+                if (friends != null) {
+                    out.writeInt(userId);
+                    out.writeInt(friends.length);
+                    for (int friendId : friends) {
+                        out.writeInt(friendId);
+                    }
+                }
+            }
+            return appliedUpTo;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean restore(ByteBuffer snapshot) {
+        long stamp = lock.writeLock();
+        try {
+            reset();
+            long appliedUpTo = snapshot.getLong();
+            friendsByUser = new int[snapshot.getInt()][];
+            versions = new long[friendsByUser.length];
+            int users = snapshot.getInt();
+            for (int i = 0; i < users; i++) {
+                int userId = snapshot.getInt();
+                int[] friends = new int[snapshot.getInt()];
+                snapshot.asIntBuffer().get(friends);
+                snapshot.position(snapshot.position() + friends.length * Integer.BYTES);
+                friendsByUser[userId] = friends;
+            }
+            List<IndexJournal.Change> changes = journal.changesAfter(appliedUpTo);
+            for (IndexJournal.Change change : changes) {
+                if (!apply(change)) {
+                    log.info("ИНДЕКС: После снимка граф дружбы сбрасывался, он будет загружен из хранилища");
+                    reset();
+                    return false;
+                }
+            }
+            long friendships = 0;
+            for (int[] friends : friendsByUser) {
+                friendships += friends != null ? friends.length : 0;
+            }
+            Long stored = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FRIENDS", Long.class);
+            if (stored == null || stored != friendships) {
+                log.warn("ИНДЕКС: В снимке с журналом {} записей дружбы, в хранилище {}, граф будет загружен " +
+                        "из хранилища", friendships, stored);
+                reset();
+                return false;
+            }
+            loaded = true;
+            log.info("ИНДЕКС: Граф дружбы восстановлен из снимка и {} изменений журнала: {} записей дружбы",
+                    changes.size(), friendships);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /* Повтор изменения из журнала, как в LikeIndex: добавление и удаление идемпотентны и идут по порядку */
+    private boolean apply(IndexJournal.Change change) {
+        switch (change.getKind()) {
+            case FRIEND_ADDED:
+                add(change.getFirstId(), change.getSecondId());
+                return true;
+            case FRIEND_REMOVED:
+                remove(change.getFirstId(), change.getSecondId());
+                return true;
+            case USER_REMOVED:
+                removeUser(change.getFirstId(), false);
+                return true;
+            case FRIENDS_RESET:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private int[] get(int userId) {
+        int[][] users = friendsByUser;
+        int[] friends = userId >= 0 && userId < users.length ? users[userId] : null;
+        return friends != null ? friends : EMPTY;
+    }
+
+    private long version(int userId) {
+        return userId >= 0 && userId < versions.length ? versions[userId] : 0;
+    }
+
+    private long friendsVersion(int[] friends, int fanOut) {
+        long sum = 0;
+        for (int i = 0; i < fanOut; i++) {
+            sum += version(friends[i]);
+        }
+        return sum;
+    }
+
+    /* Публикация нового списка друзей пользователя, массивы графа растут в полтора раза */
+    private void set(int userId, int[] friends) {
+        if (userId >= friendsByUser.length) {
+            int size = Math.max(userId + 1, friendsByUser.length + (friendsByUser.length >> 1));
+            friendsByUser = Arrays.copyOf(friendsByUser, size);
+            versions = Arrays.copyOf(versions, size);
+        }
+        friendsByUser[userId] = friends;
+        versions[userId]++;
+    }
+
+    private void add(int userId, int friendId) {
+        int[] friends = get(userId);
+        int position = Arrays.binarySearch(friends, friendId);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        int[] copy = new int[friends.length + 1];
+        System.arraycopy(friends, 0, copy, 0, position);
+        copy[position] = friendId;
+        System.arraycopy(friends, position, copy, position + 1, friends.length - position);
+        set(userId, copy);
+    }
+
+    private void remove(int userId, int friendId) {
+        int[] friends = get(userId);
+        int position = Arrays.binarySearch(friends, friendId);
+        if (position < 0) {
+            return;
+        }
+        if (friends.length == 1) {
+            set(userId, null);
+            return;
+        }
+        int[] copy = new int[friends.length - 1];
+        System.arraycopy(friends, 0, copy, 0, position);
+        System.arraycopy(friends, position + 1, copy, position, friends.length - position - 1);
+        set(userId, copy);
+    }
+
+    /* Пользователя ищем во всех списках: обратных списков граф не хранит, а удаление пользователя редкое */
+    private void removeUser(int userId, boolean logged) {
+        if (userId >= 0 && userId < friendsByUser.length) {
+            set(userId, null);
+        }
+        int removed = 0;
+        for (int otherId = 0; otherId < friendsByUser.length; otherId++) {
+            if (friendsByUser[otherId] != null && Arrays.binarySearch(friendsByUser[otherId], userId) >= 0) {
+                remove(otherId, userId);
+                removed++;
+            }
+        }
+        if (logged) {
+            log.info("ИНДЕКС: Пользователь с id {} удалён из графа дружбы и из {} списков друзей", userId, removed);
+        }
+    }
+
+    private void reset() {
+        friendsByUser = new int[0][];
+        versions = new long[0];
+        generation++;
+        loaded = false;
+    }
+
+    private void write(Runnable change) {
+        IndexWrites.ifLoaded(lock.asWriteLock(), () -> loaded, change);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (!loaded) {
+                loadFromStorage();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /* Строки идут по индексу (USER_ID, FRIEND_ID), поэтому список каждого пользователя собирается подряд
+       и уже отсортирован. Повторные записи дружбы схлопываются */
+    private void loadFromStorage() {
+        log.info("ИНДЕКС: Загрузка графа дружбы из хранилища");
+        reset();
+        int[] current = {-1};
+        int[][] buffer = {new int[16]};
+        int[] size = new int[1];
+        long[] rows = new long[1];
+        jdbcTemplate.query("SELECT USER_ID, FRIEND_ID FROM FRIENDS ORDER BY USER_ID, FRIEND_ID",
+                (RowCallbackHandler) rs -> {
+                    int userId = rs.getInt(1);
+                    int friendId = rs.getInt(2);
+                    rows[0]++;
+                    if (userId != current[0]) {
+                        flush(current[0], buffer[0], size[0]);
+                        current[0] = userId;
+                        size[0] = 0;
+                    } else if (buffer[0][size[0] - 1] == friendId) {
+                        return;
+                    }
+                    if (size[0] == buffer[0].length) {
+                        buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+                    }
+                    buffer[0][size[0]++] = friendId;
+                });
+        flush(current[0], buffer[0], size[0]);
+        loaded = true;
+        log.info("ИНДЕКС: Загружено {} записей дружбы", rows[0]);
+    }
+
+    private void flush(int userId, int[] buffer, int size) {
+        if (userId < 0 || size == 0) {
+            return;
+        }
+        set(userId, Arrays.copyOf(buffer, size));
+    }
+
+    /* Рекомендованные пользователи и версии графа, по которым они посчитаны: поколение, версия списка друзей
+       пользователя и сумма версий первых fanOut его друзей. Сами списки рейтинг не держит */
+    static class Ranking {
+        private final int userId;
+        private final int[] userIds;
+        private final long generation;
+        private final long userVersion;
+        private final int fanOut;
+        private final long friendsVersion;
+
+        private Ranking(int userId, int[] userIds, long generation, long userVersion, int fanOut,
+                        long friendsVersion) {
+            this.userId = userId;
+            this.userIds = userIds;
+            this.generation = generation;
+            this.userVersion = userVersion;
+            this.fanOut = fanOut;
+            this.friendsVersion = friendsVersion;
+        }
+
+        int[] userIds() {
+            return userIds;
+        }
+    }
+}
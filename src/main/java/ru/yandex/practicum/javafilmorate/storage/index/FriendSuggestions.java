@@ -0,0 +1,80 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Рекомендации друзей для недавно спрашивавших пользователей. Рейтинг пользователя считается по графу FriendIndex
+   один раз на suggestionsPerUser мест и отдаётся из памяти, пока не изменились его друзья или их списки друзей */
+@Slf4j
+@Component
+public class FriendSuggestions {
+    private final FriendIndex friendIndex;
+    private final int suggestionsPerUser;
+    private final int maxFanOut;
+    private final int maxEdges;
+    private final Map<Integer, FriendIndex.Ranking> rankings;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public FriendSuggestions(FriendIndex friendIndex,
+                             @Value("${filmorate.friends.suggestions-cache-size:100}") int suggestionsPerUser,
+                             @Value("${filmorate.friends.suggestions-cache-users:10000}") int maxUsers,
+                             @Value("${filmorate.friends.suggestions-max-fan-out:1000}") int maxFanOut,
+                             @Value("${filmorate.friends.suggestions-max-edges:100000}") int maxEdges) {
+        this.friendIndex = friendIndex;
+        this.suggestionsPerUser = suggestionsPerUser;
+        this.maxFanOut = maxFanOut;
+        this.maxEdges = maxEdges;
+        this.rankings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FriendIndex.Ranking> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /* До count id рекомендованных пользователей по убыванию числа общих друзей */
+    public int[] suggest(int userId, int count) {
+        if (count > suggestionsPerUser) {
+            misses.increment();
+            return friendIndex.suggest(userId, count, maxFanOut, maxEdges).userIds();
+        }
+        FriendIndex.Ranking ranking;
+        synchronized (rankings) {
+            ranking = rankings.get(userId);
+        }
+        if (ranking != null && friendIndex.isCurrent(ranking)) {
+            hits.increment();
+        } else {
+            misses.increment();
+            log.info("ИНДЕКС: Расчёт рекомендаций друзей для пользователя с id {}", userId);
+            ranking = friendIndex.suggest(userId, suggestionsPerUser, maxFanOut, maxEdges);
+            synchronized (rankings) {
+                rankings.put(userId, ranking);
+            }
+        }
+        int[] userIds = ranking.userIds();
+        return userIds.length > count ? Arrays.copyOf(userIds, count) : userIds;
+    }
+
+    /* Список друзей пользователя изменился. Рейтинги тех, у кого он в друзьях, отбросит проверка isCurrent */
+    public void evict(int userId) {
+        synchronized (rankings) {
+            rankings.remove(userId);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
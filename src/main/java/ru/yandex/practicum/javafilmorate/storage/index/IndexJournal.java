@@ -0,0 +1,129 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/* Журнал изменений, из которых построены индексы в памяти. Строка журнала пишется в той же транзакции,
+   что и само изменение, поэтому индекс, восстановленный из снимка, дочитывает только строки новее снимка.
+   Пока снимки выключены, журнал не ведётся и изменения сразу уходят в индекс */
+@Component
+public class IndexJournal {
+    public enum Kind {
+        LIKE_ADDED, LIKE_REMOVED, FILM_REMOVED, USER_REMOVED, LIKES_RESET, FRIEND_ADDED, FRIEND_REMOVED,
+        FRIENDS_RESET, SNAPSHOT
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    /* Номера строк, транзакции которых ещё не завершились, и число строк, номер которых ещё не известен */
+    private final NavigableSet<Long> pending = new TreeSet<>();
+    private int recording;
+    private long lastSeq;
+
+    public IndexJournal(JdbcTemplate jdbcTemplate,
+                        @Value("${filmorate.snapshots.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /* Записывает изменение и применяет change к индексу после фиксации. Строка считается учтённой в индексе
+       только после применения, до этого снимок её не покрывает */
+    void record(Kind kind, int firstId, int secondId, Runnable change) {
+        if (!enabled) {
+            TransactionHooks.afterCommit(change);
+            return;
+        }
+        long seq = insert(kind, firstId, secondId);
+        TransactionHooks.afterCommit(change);
+        TransactionHooks.afterCompletion(() -> {
+            synchronized (this) {
+                pending.remove(seq);
+            }
+        });
+    }
+
+    /* Номер, до которого включительно все изменения уже применены к индексам, или -1, если прямо сейчас
+       пишется строка с ещё неизвестным номером. Вызывается под блокировкой индекса, исключающей запись в него */
+    synchronized long appliedUpTo() {
+        if (recording > 0) {
+            return -1;
+        }
+        return pending.isEmpty() ? lastSeq : pending.first() - 1;
+    }
+
+    /* Изменения с номером больше after в порядке записи */
+    List<Change> changesAfter(long after) {
+        return jdbcTemplate.query("SELECT SEQ, KIND, FIRST_ID, SECOND_ID FROM INDEX_CHANGES " +
+                        "WHERE SEQ > ? ORDER BY SEQ",
+                (rs, rowNum) -> new Change(rs.getLong(1), Kind.valueOf(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
+                after);
+    }
+
+    /* Последний номер журнала на момент запуска: всё, что записано до него, индексы прочитают из базы или снимка */
+    synchronized void start() {
+        Long last = jdbcTemplate.queryForObject("SELECT MAX(SEQ) FROM INDEX_CHANGES", Long.class);
+        lastSeq = last != null ? last : 0;
+    }
+
+    /* Отметка о снимке: снимок действителен, только пока его отметка есть в журнале этой базы */
+    long markSnapshot(int token) {
+        return jdbcTemplate.queryForObject("SELECT SEQ FROM FINAL TABLE (INSERT INTO INDEX_CHANGES " +
+                "(KIND, FIRST_ID, SECOND_ID) VALUES (?, ?, 0))", Long.class, Kind.SNAPSHOT.name(), token);
+    }
+
+    boolean hasSnapshot(long seq, int token) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM INDEX_CHANGES " +
+                "WHERE SEQ = ? AND KIND = ? AND FIRST_ID = ?)", Boolean.class, seq, Kind.SNAPSHOT.name(), token));
+    }
+
+    /* Строки, покрытые снимком, больше не нужны. Отметку самого снимка оставляем */
+    int prune(long upTo, long snapshotSeq) {
+        return jdbcTemplate.update("DELETE FROM INDEX_CHANGES WHERE SEQ <= ? AND SEQ <> ?", upTo, snapshotSeq);
+    }
+
+    /* Без снимков журнал не ведётся, поэтому старые строки и отметки удаляются: снимок, снятый до этого,
+       не сможет пропустить изменения, сделанные без журнала */
+    int clear() {
+        return jdbcTemplate.update("DELETE FROM INDEX_CHANGES");
+    }
+
+    private long insert(Kind kind, int firstId, int secondId) {
+        synchronized (this) {
+            recording++;
+        }
+        Long seq = null;
+        try {
+            seq = jdbcTemplate.queryForObject("SELECT SEQ FROM FINAL TABLE (INSERT INTO INDEX_CHANGES " +
+                    "(KIND, FIRST_ID, SECOND_ID) VALUES (?, ?, ?))", Long.class, kind.name(), firstId, secondId);
+            return seq;
+        } finally {
+            synchronized (this) {
+                recording--;
+                if (seq != null) {
+                    pending.add(seq);
+                    lastSeq = Math.max(lastSeq, seq);
+                }
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Change {
+        private final long seq;
+        private final Kind kind;
+        private final int firstId;
+        private final int secondId;
+    }
+}
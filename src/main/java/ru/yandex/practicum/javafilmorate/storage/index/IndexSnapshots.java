@@ -0,0 +1,219 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Снимки индексов в памяти для быстрого перезапуска. Снимок периодически и при остановке пишется во временный
+   файл, который затем атомарно заменяет прежний. При запуске файл отображается в память, каждый индекс читает
+   свою секцию и дочитывает из журнала IndexJournal только изменения новее снимка. Снимок другой базы,
+   чужой версии или повреждённый игнорируется, и индекс загружается из базы как обычно.
+
+   Формат: MAGIC, VERSION, номер и метка отметки о снимке в журнале, число секций, затем для каждой секции
+   имя, длина и содержимое, в конце снова MAGIC */
+@Slf4j
+@Component
+public class IndexSnapshots {
+    private static final int MAGIC = 0x464D5253;
+    private static final int VERSION = 1;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final IndexJournal journal;
+    private final List<SnapshotSection> sections;
+    private final Path path;
+    private final long intervalMs;
+    private ScheduledExecutorService scheduler;
+
+    IndexSnapshots(IndexJournal journal, List<SnapshotSection> sections,
+                   @Value("${filmorate.snapshots.path:./db/indexes.snapshot}") Path path,
+                   @Value("${filmorate.snapshots.interval-ms:300000}") long intervalMs) {
+        this.journal = journal;
+        this.sections = sections;
+        this.path = path;
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!journal.isEnabled()) {
+            int cleared = journal.clear();
+            if (cleared > 0) {
+                log.info("ИНДЕКС: Снимки выключены, удалено {} строк журнала индексов", cleared);
+            }
+            return;
+        }
+        journal.start();
+        restore();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("ИНДЕКС: Снимки индексов пишутся в {} каждые {} мс", path, intervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeQuietly();
+    }
+
+    /* Снимает снимок всех индексов. false - какой-то индекс сейчас снять нельзя, прежний снимок остаётся */
+    public synchronized boolean write() throws IOException {
+        int token = ThreadLocalRandom.current().nextInt();
+        long snapshotSeq = journal.markSnapshot(token);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long appliedUpTo = Long.MAX_VALUE;
+        boolean written = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(snapshotSeq);
+                out.writeInt(token);
+                out.writeInt(sections.size());
+                for (SnapshotSection section : sections) {
+                    out.writeUTF(section.snapshotName());
+                    out.flush();
+                    long lengthPosition = channel.position();
+                    out.writeLong(0);
+                    long sectionUpTo = section.writeSnapshot(out);
+                    if (sectionUpTo < 0) {
+                        log.info("ИНДЕКС: Индекс {} сейчас нельзя сохранить, снимок отложен",
+                                section.snapshotName());
+                        return false;
+                    }
+                    appliedUpTo = Math.min(appliedUpTo, sectionUpTo);
+                    out.flush();
+                    long length = channel.position() - lengthPosition - Long.BYTES;
+                    channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, length), lengthPosition);
+                }
+                out.writeInt(MAGIC);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        int pruned = appliedUpTo == Long.MAX_VALUE ? 0 : journal.prune(appliedUpTo, snapshotSeq);
+        log.info("ИНДЕКС: Снимок индексов записан в {} ({} КБ), из журнала удалено {} строк",
+                path, Files.size(path) / 1024, pruned);
+        return true;
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            log.warn("ИНДЕКС: Не удалось записать снимок индексов в {}", path, e);
+        }
+    }
+
+    /* Число индексов, восстановленных из снимка, остальные загружаются из базы */
+    int restore() {
+        long started = System.nanoTime();
+        boolean[] restored = new boolean[sections.size()];
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                restoreSections(snapshot, restored);
+            } catch (IOException | RuntimeException e) {
+                log.warn("ИНДЕКС: Не удалось прочитать снимок индексов {}", path, e);
+            }
+        } else {
+            log.info("ИНДЕКС: Снимка индексов {} нет, индексы будут загружены из хранилища", path);
+        }
+        int count = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            if (restored[i]) {
+                count++;
+            } else {
+                sections.get(i).load();
+            }
+        }
+        log.info("ИНДЕКС: Индексы готовы за {} мс, из снимка восстановлено {} из {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), count, sections.size());
+        return count;
+    }
+
+    private void restoreSections(ByteBuffer snapshot, boolean[] restored) {
+        if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+            log.info("ИНДЕКС: Снимок индексов {} другого формата, он будет перезаписан", path);
+            return;
+        }
+        long snapshotSeq = snapshot.getLong();
+        int token = snapshot.getInt();
+        if (snapshot.getInt(snapshot.limit() - Integer.BYTES) != MAGIC) {
+            log.warn("ИНДЕКС: Снимок индексов {} записан не полностью", path);
+            return;
+        }
+        if (!journal.hasSnapshot(snapshotSeq, token)) {
+            log.info("ИНДЕКС: Снимок индексов {} снят с другой базы или до отключения снимков", path);
+            return;
+        }
+        int count = snapshot.getInt();
+        for (int i = 0; i < count; i++) {
+            String name = readName(snapshot);
+            long length = snapshot.getLong();
+            int end = Math.toIntExact(snapshot.position() + length);
+            for (int j = 0; j < sections.size(); j++) {
+                if (sections.get(j).snapshotName().equals(name)) {
+                    ByteBuffer section = snapshot.slice().limit((int) length);
+                    try {
+                        restored[j] = sections.get(j).restore(section);
+                    } catch (BufferUnderflowException e) {
+                        log.warn("ИНДЕКС: Секция {} снимка индексов повреждена", name, e);
+                    }
+                }
+            }
+            snapshot.position(end);
+        }
+    }
+
+    /* Имя секции в формате DataOutput.writeUTF: длина и байты, имена состоят из латиницы */
+    private static String readName(ByteBuffer snapshot) {
+        byte[] name = new byte[Short.toUnsignedInt(snapshot.getShort())];
+        snapshot.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import java.util.concurrent.locks.Lock;
+import java.util.function.BooleanSupplier;
+
+/* Изменение индекса в памяти после фиксации транзакции. Признак загрузки проверяется только под блокировкой
+   записи: загрузка держит её до конца, поэтому изменение, зафиксированное во время загрузки, дождётся её
+   и применится поверх прочитанного. Пока индекс не загружен и не загружается, изменение пропускается -
+   его прочитает из базы следующая загрузка */
+final class IndexWrites {
+    private IndexWrites() {
+    }
+
+    static void ifLoaded(Lock writeLock, BooleanSupplier loaded, Runnable change) {
+        writeLock.lock();
+        try {
+            if (loaded.getAsBoolean()) {
+                change.run();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
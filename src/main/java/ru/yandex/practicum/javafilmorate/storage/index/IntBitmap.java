@@ -0,0 +1,294 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/* Сжатое множество неотрицательных int в духе Roaring: значения делятся на блоки по старшим 16 битам.
+   Блок, в котором не больше 4096 значений, хранит отсортированный массив младших половин (2 байта на значение),
+   более плотный - битовую карту из 1024 long (8 КБ на 65536 значений). Блоки лежат по возрастанию старшей
+   половины, поэтому обход и пересечение идут по порядку без хеширования и упаковки чисел */
+final class IntBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[1];
+    private Object[] blocks = new Object[1];
+    private int[] sizes = new int[1];
+    private int blockCount;
+    private int cardinality;
+
+    boolean add(int value) {
+        char key = high(value);
+        int index = find(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertBlock(index, key);
+        }
+        char low = (char) value;
+        Object block = blocks[index];
+        if (block instanceof long[]) {
+            long[] words = (long[]) block;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            words[low >>> 6] |= bit;
+        } else {
+            char[] values = (char[]) block;
+            int size = sizes[index];
+            int position = Arrays.binarySearch(values, 0, size, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (size == ARRAY_LIMIT) {
+                long[] words = toWords(values, size);
+                words[low >>> 6] |= 1L << low;
+                blocks[index] = words;
+            } else {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, size + (size >> 1))));
+                    blocks[index] = values;
+                }
+                System.arraycopy(values, position, values, position + 1, size - position);
+                values[position] = low;
+            }
+        }
+        sizes[index]++;
+        cardinality++;
+        return true;
+    }
+
+    boolean remove(int value) {
+        int index = find(high(value));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object block = blocks[index];
+        int size = sizes[index];
+        if (block instanceof long[]) {
+            long[] words = (long[]) block;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            words[low >>> 6] &= ~bit;
+            if (size - 1 == ARRAY_LIMIT) {
+                blocks[index] = toValues(words);
+            }
+        } else {
+            char[] values = (char[]) block;
+            int position = Arrays.binarySearch(values, 0, size, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, size - position - 1);
+        }
+        cardinality--;
+        if (--sizes[index] == 0) {
+            removeBlock(index);
+        }
+        return true;
+    }
+
+    boolean contains(int value) {
+        int index = find(high(value));
+        if (index < 0) {
+            return false;
+        }
+        return contains(blocks[index], sizes[index], (char) value);
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    /* Значения по возрастанию */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < blockCount; i++) {
+            int base = keys[i] << 16;
+            Object block = blocks[i];
+            if (block instanceof long[]) {
+                long[] words = (long[]) block;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) block;
+                for (int j = 0; j < sizes[i]; j++) {
+                    action.accept(base | values[j]);
+                }
+            }
+        }
+    }
+
+    int[] toArray() {
+        int[] values = new int[cardinality];
+        int[] size = new int[1];
+        forEach(value -> values[size[0]++] = value);
+        return values;
+    }
+
+    /* Значения, которых нет в other, по возрастанию */
+    void forEachAndNot(IntBitmap other, IntConsumer action) {
+        forEach(value -> {
+            if (!other.contains(value)) {
+                action.accept(value);
+            }
+        });
+    }
+
+    /* Значения, которые есть и в other, по возрастанию */
+    void forEachAnd(IntBitmap other, IntConsumer action) {
+        IntBitmap smaller = cardinality <= other.cardinality ? this : other;
+        IntBitmap larger = smaller == this ? other : this;
+        smaller.forEach(value -> {
+            if (larger.contains(value)) {
+                action.accept(value);
+            }
+        });
+    }
+
+    /* Размер пересечения без построения самого пересечения */
+    int andCardinality(IntBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < blockCount && j < other.blockCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += andCardinality(blocks[i], sizes[i], other.blocks[j], other.sizes[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /* Приблизительный объём занятой памяти в байтах, без заголовка самого объекта */
+    long sizeInBytes() {
+        long bytes = keys.length * 2L + blocks.length * 4L + sizes.length * 4L;
+        for (int i = 0; i < blockCount; i++) {
+            bytes += 16 + (blocks[i] instanceof long[] ? BITMAP_WORDS * 8L : ((char[]) blocks[i]).length * 2L);
+        }
+        return bytes;
+    }
+
+    private static int andCardinality(Object left, int leftSize, Object right, int rightSize) {
+        if (left instanceof long[] && right instanceof long[]) {
+            long[] leftWords = (long[]) left;
+            long[] rightWords = (long[]) right;
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(leftWords[w] & rightWords[w]);
+            }
+            return count;
+        }
+        if (left instanceof long[]) {
+            return andCardinality(right, rightSize, left, leftSize);
+        }
+        char[] values = (char[]) left;
+        if (right instanceof long[]) {
+            long[] words = (long[]) right;
+            int count = 0;
+            for (int k = 0; k < leftSize; k++) {
+                char low = values[k];
+                if ((words[low >>> 6] & (1L << low)) != 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        char[] others = (char[]) right;
+        int count = 0;
+        int a = 0;
+        int b = 0;
+        while (a < leftSize && b < rightSize) {
+            if (values[a] < others[b]) {
+                a++;
+            } else if (values[a] > others[b]) {
+                b++;
+            } else {
+                count++;
+                a++;
+                b++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(Object block, int size, char low) {
+        if (block instanceof long[]) {
+            return (((long[]) block)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) block, 0, size, low) >= 0;
+    }
+
+    private static long[] toWords(char[] values, int size) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int k = 0; k < size; k++) {
+            words[values[k] >>> 6] |= 1L << values[k];
+        }
+        return words;
+    }
+
+    private static char[] toValues(long[] words) {
+        char[] values = new char[ARRAY_LIMIT];
+        int size = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[size++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    private static char high(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Отрицательное значение " + value);
+        }
+        return (char) (value >>> 16);
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, blockCount, key);
+    }
+
+    private void insertBlock(int index, char key) {
+        if (blockCount == keys.length) {
+            int capacity = blockCount * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            blocks = Arrays.copyOf(blocks, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, blockCount - index);
+        System.arraycopy(blocks, index, blocks, index + 1, blockCount - index);
+        System.arraycopy(sizes, index, sizes, index + 1, blockCount - index);
+        keys[index] = key;
+        blocks[index] = new char[1];
+        sizes[index] = 0;
+        blockCount++;
+    }
+
+    private void removeBlock(int index) {
+        System.arraycopy(keys, index + 1, keys, index, blockCount - index - 1);
+        System.arraycopy(blocks, index + 1, blocks, index, blockCount - index - 1);
+        System.arraycopy(sizes, index + 1, sizes, index, blockCount - index - 1);
+        blockCount--;
+        blocks[blockCount] = null;
+    }
+}
@@ -0,0 +1,354 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Лайки в виде сжатых битовых множеств IntBitmap: пользователь -> фильмы и фильм -> пользователи.
+   Множества лежат в массивах по id без упаковки чисел, пересечения считаются поблочно, кандидаты в похожие
+   берутся только среди пользователей, лайкнувших те же фильмы */
+@Slf4j
+@Component
+public class LikeIndex implements SnapshotSection {
+    private static final IntBitmap EMPTY = new IntBitmap();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexJournal journal;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private IntBitmap[] filmsByUser = new IntBitmap[0];
+    private IntBitmap[] usersByFilm = new IntBitmap[0];
+    private volatile boolean loaded;
+
+    public LikeIndex(JdbcTemplate jdbcTemplate, IndexJournal journal) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.journal = journal;
+    }
+
+    /* Пользователи с наибольшим числом общих лайков, по убыванию пересечения, при равенстве - по id */
+    public List<Similarity> findSimilarUsers(int userId, int limit) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            IntBitmap userFilms = get(filmsByUser, userId);
+            if (userFilms.isEmpty() || limit <= 0) {
+                return new ArrayList<>();
+            }
+            IntBitmap candidates = new IntBitmap();
+            userFilms.forEach(filmId -> get(usersByFilm, filmId).forEach(candidates::add));
+            candidates.remove(userId);
+            PriorityQueue<Similarity> top = new PriorityQueue<>(Comparator.comparingInt(Similarity::getCommonLikes)
+                    .thenComparing(Similarity::getUserId, Comparator.reverseOrder()));
+            candidates.forEach(candidateId -> {
+                top.add(new Similarity(candidateId, userFilms.andCardinality(get(filmsByUser, candidateId))));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+            List<Similarity> result = new ArrayList<>(top);
+            result.sort(Comparator.comparingInt(Similarity::getCommonLikes).reversed()
+                    .thenComparingInt(Similarity::getUserId));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Фильмы, которые лайкнули похожие пользователи, но не лайкнул сам пользователь.
+       Вес фильма - сумма пересечений лайкнувших его похожих пользователей */
+    public List<Integer> recommend(int userId, List<Similarity> similarUsers) {
+        lock.readLock().lock();
+        try {
+            IntBitmap userFilms = get(filmsByUser, userId);
+            Map<Integer, Integer> weights = new HashMap<>();
+            for (Similarity similar : similarUsers) {
+                get(filmsByUser, similar.getUserId()).forEachAndNot(userFilms,
+                        filmId -> weights.merge(filmId, similar.getCommonLikes(), Integer::sum));
+            }
+            List<Integer> filmIds = new ArrayList<>(weights.keySet());
+            filmIds.sort(Comparator.comparing((Integer filmId) -> weights.get(filmId)).reversed()
+                    .thenComparing(filmId -> filmId));
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Фильмы, которые лайкнули оба пользователя, по возрастанию id */
+    public List<Integer> commonFilms(int userId, int otherUserId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            List<Integer> filmIds = new ArrayList<>();
+            get(filmsByUser, userId).forEachAnd(get(filmsByUser, otherUserId), filmIds::add);
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Пользователи, лайкнувшие фильм, по возрастанию id */
+    public List<Integer> usersWhoLiked(int filmId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            IntBitmap users = get(usersByFilm, filmId);
+            List<Integer> userIds = new ArrayList<>(users.cardinality());
+            users.forEach(userIds::add);
+            return userIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Приблизительный объём индекса в памяти */
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return sizeInBytes(filmsByUser) + sizeInBytes(usersByFilm);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addLike(int filmId, int userId) {
+        journal.record(IndexJournal.Kind.LIKE_ADDED, filmId, userId, () -> write(() -> put(filmId, userId)));
+    }
+
+    public void removeLike(int filmId, int userId) {
+        journal.record(IndexJournal.Kind.LIKE_REMOVED, filmId, userId, () -> write(() -> {
+            remove(filmsByUser, userId, filmId);
+            remove(usersByFilm, filmId, userId);
+        }));
+    }
+
+    public void removeFilm(int filmId) {
+        journal.record(IndexJournal.Kind.FILM_REMOVED, filmId, 0,
+                () -> write(() -> removeColumn(usersByFilm, filmsByUser, filmId)));
+    }
+
+    public void removeUser(int userId) {
+        journal.record(IndexJournal.Kind.USER_REMOVED, userId, 0,
+                () -> write(() -> removeColumn(filmsByUser, usersByFilm, userId)));
+    }
+
+    public void invalidate() {
+        journal.record(IndexJournal.Kind.LIKES_RESET, 0, 0, () -> {
+            lock.writeLock().lock();
+            try {
+                log.info("ИНДЕКС: Сброс индекса лайков");
+                reset();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public String snapshotName() {
+        return "likes";
+    }
+
+    @Override
+    public void load() {
+        ensureLoaded();
+    }
+
+    /* Размеры обоих массивов, затем для каждого пользователя с лайками: id, число фильмов и их id
+       по возрастанию. Обратное отображение фильм -> пользователи строится при чтении */
+    @Override
+    public long writeSnapshot(DataOutput out) throws IOException {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            long appliedUpTo = journal.appliedUpTo();
+            if (appliedUpTo < 0 || !loaded) {
+                return -1;
+            }
+            out.writeLong(appliedUpTo);
+            out.writeInt(filmsByUser.length);
+            out.writeInt(usersByFilm.length);
+            int users = 0;
+            for (IntBitmap films : filmsByUser) {
+                if (films != null) {
+                    users++;
+                }
+            }
+            out.writeInt(users);
+            for (int userId = 0; userId < filmsByUser.length; userId++) {
+                if (filmsByUser[userId] != null) {
+                    int[] filmIds = filmsByUser[userId].toArray();
+                    out.writeInt(userId);
+                    out.writeInt(filmIds.length);
+                    for (int filmId : filmIds) {
+                        out.writeInt(filmId);
+                    }
+                }
+            }
+            return appliedUpTo;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean restore(ByteBuffer snapshot) {
+        lock.writeLock().lock();
+        try {
+            reset();
+            long appliedUpTo = snapshot.getLong();
+            filmsByUser = new IntBitmap[snapshot.getInt()];
+            usersByFilm = new IntBitmap[snapshot.getInt()];
+            int users = snapshot.getInt();
+            for (int i = 0; i < users; i++) {
+                int userId = snapshot.getInt();
+                int films = snapshot.getInt();
+                for (int j = 0; j < films; j++) {
+                    put(snapshot.getInt(), userId);
+                }
+            }
+            List<IndexJournal.Change> changes = journal.changesAfter(appliedUpTo);
+            for (IndexJournal.Change change : changes) {
+                if (!apply(change)) {
+                    log.info("ИНДЕКС: После снимка индекс лайков сбрасывался, он будет загружен из хранилища");
+                    reset();
+                    return false;
+                }
+            }
+            long likes = 0;
+            for (IntBitmap films : filmsByUser) {
+                likes += films != null ? films.cardinality() : 0;
+            }
+            Long stored = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM LIKES", Long.class);
+            if (stored == null || stored != likes) {
+                log.warn("ИНДЕКС: В снимке с журналом {} лайков, в хранилище {}, индекс будет загружен из хранилища",
+                        likes, stored);
+                reset();
+                return false;
+            }
+            loaded = true;
+            log.info("ИНДЕКС: Индекс лайков восстановлен из снимка и {} изменений журнала: {} лайков, около {} КБ",
+                    changes.size(), likes, sizeInBytes() / 1024);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Повтор изменения из журнала. Журнал читается с запасом, поэтому повтор уже учтённого изменения
+       ничего не портит: добавление и удаление идут в порядке записи, и для каждой пары побеждает последнее */
+    private boolean apply(IndexJournal.Change change) {
+        switch (change.getKind()) {
+            case LIKE_ADDED:
+                put(change.getFirstId(), change.getSecondId());
+                return true;
+            case LIKE_REMOVED:
+                remove(filmsByUser, change.getSecondId(), change.getFirstId());
+                remove(usersByFilm, change.getFirstId(), change.getSecondId());
+                return true;
+            case FILM_REMOVED:
+                removeColumn(usersByFilm, filmsByUser, change.getFirstId());
+                return true;
+            case USER_REMOVED:
+                removeColumn(filmsByUser, usersByFilm, change.getFirstId());
+                return true;
+            case LIKES_RESET:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void reset() {
+        filmsByUser = new IntBitmap[0];
+        usersByFilm = new IntBitmap[0];
+        loaded = false;
+    }
+
+    private void put(int filmId, int userId) {
+        filmsByUser = withSlot(filmsByUser, userId);
+        usersByFilm = withSlot(usersByFilm, filmId);
+        filmsByUser[userId].add(filmId);
+        usersByFilm[filmId].add(userId);
+    }
+
+    private static IntBitmap get(IntBitmap[] sets, int key) {
+        IntBitmap set = key >= 0 && key < sets.length ? sets[key] : null;
+        return set != null ? set : EMPTY;
+    }
+
+    /* Массив с множеством по ключу key, при необходимости увеличенный в полтора раза */
+    private static IntBitmap[] withSlot(IntBitmap[] sets, int key) {
+        if (key >= sets.length) {
+            sets = Arrays.copyOf(sets, Math.max(key + 1, sets.length + (sets.length >> 1)));
+        }
+        if (sets[key] == null) {
+            sets[key] = new IntBitmap();
+        }
+        return sets;
+    }
+
+    private static void remove(IntBitmap[] sets, int key, int value) {
+        IntBitmap set = get(sets, key);
+        if (set.remove(value) && set.isEmpty()) {
+            sets[key] = null;
+        }
+    }
+
+    private static void removeColumn(IntBitmap[] byKey, IntBitmap[] inverse, int key) {
+        get(byKey, key).forEach(other -> remove(inverse, other, key));
+        if (key < byKey.length) {
+            byKey[key] = null;
+        }
+    }
+
+    private static long sizeInBytes(IntBitmap[] sets) {
+        long bytes = sets.length * 4L;
+        for (IntBitmap set : sets) {
+            if (set != null) {
+                bytes += 32 + set.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private void write(Runnable change) {
+        IndexWrites.ifLoaded(lock.writeLock(), () -> loaded, change);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                log.info("ИНДЕКС: Загрузка индекса лайков из хранилища");
+                reset();
+                int[] likes = new int[1];
+                jdbcTemplate.query("SELECT FILM_ID, USER_ID FROM LIKES", (RowCallbackHandler) rs -> {
+                    put(rs.getInt(1), rs.getInt(2));
+                    likes[0]++;
+                });
+                loaded = true;
+                log.info("ИНДЕКС: Загружено {} лайков, индекс занимает около {} КБ", likes[0], sizeInBytes() / 1024);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Value
+    public static class Similarity {
+        int userId;
+        int commonLikes;
+    }
+}
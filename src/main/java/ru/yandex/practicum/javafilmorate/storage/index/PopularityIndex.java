@@ -0,0 +1,224 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import java.sql.Date;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/* Рейтинги популярности фильмов в памяти: общий, по жанру, по году выпуска и по жанру с годом.
+   Запись сериализуется блокировкой, чтение идёт без блокировки и повторяется под ней,
+   только если во время обхода рейтинг изменился */
+@Slf4j
+@Component
+public class PopularityIndex {
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::getLikes).reversed()
+            .thenComparingInt(Entry::getFilmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StampedLock lock = new StampedLock();
+    private final Map<Integer, FilmStats> films = new ConcurrentHashMap<>();
+    private final Map<BoardKey, ConcurrentSkipListSet<Entry>> boards = new ConcurrentHashMap<>();
+    private final AtomicLong likesVersions = new AtomicLong();
+    private volatile boolean loaded;
+
+    public PopularityIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Integer> top(Integer genreId, Integer year, int count) {
+        return top(genreId, year, null, count);
+    }
+
+    /* after - последняя отданная клиенту позиция (лайки, id фильма), выдача продолжается сразу за ней */
+    public List<Integer> top(Integer genreId, Integer year, Cursor after, int count) {
+        ensureLoaded();
+        BoardKey key = new BoardKey(genreId, year);
+        long stamp = lock.tryOptimisticRead();
+        List<Integer> filmIds = collect(key, after, count);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                filmIds = collect(key, after, count);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return filmIds;
+    }
+
+    public void putFilm(int filmId, Integer year, Collection<Integer> genreIds) {
+        int[] sortedGenreIds = sortedIds(genreIds);
+        TransactionHooks.afterCommit(() -> update(filmId, current ->
+                current != null ? current.withGenres(year, sortedGenreIds)
+                        : new FilmStats(year, sortedGenreIds, 0, 0)));
+    }
+
+    /* likes - счётчик, который вернул UPDATE строки фильма в этой же транзакции. Версия выдаётся, пока строка
+       заблокирована, поэтому порядок версий совпадает с порядком фиксаций. Колбэки параллельных транзакций
+       могут прийти в любом порядке - более старое число не затирает более новое */
+    public void refreshLikes(int filmId, int likes) {
+        long version = likesVersions.incrementAndGet();
+        TransactionHooks.afterCommit(() -> update(filmId, current -> {
+            if (current == null || current.getLikesVersion() > version) {
+                return current;
+            }
+            return new FilmStats(current.getYear(), current.getGenreIds(), likes, version);
+        }));
+    }
+
+    public void removeFilm(int filmId) {
+        TransactionHooks.afterCommit(() -> update(filmId, current -> null));
+    }
+
+    public void invalidate() {
+        TransactionHooks.afterCommit(this::reset);
+    }
+
+    private void reset() {
+        long stamp = lock.writeLock();
+        try {
+            log.info("ИНДЕКС: Сброс рейтингов популярности");
+            films.clear();
+            boards.clear();
+            loaded = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private List<Integer> collect(BoardKey key, Cursor after, int count) {
+        ConcurrentSkipListSet<Entry> board = boards.get(key);
+        if (board == null || count <= 0) {
+            return new ArrayList<>();
+        }
+        Set<Entry> tail = after != null ? board.tailSet(new Entry((int) after.getKey(), after.getId()), false) : board;
+        List<Integer> filmIds = new ArrayList<>(Math.min(count, 64));
+        for (Entry entry : tail) {
+            if (filmIds.size() == count) {
+                break;
+            }
+            filmIds.add(entry.getFilmId());
+        }
+        return filmIds;
+    }
+
+    private void update(int filmId, UnaryOperator<FilmStats> change) {
+        IndexWrites.ifLoaded(lock.asWriteLock(), () -> loaded, () -> {
+            FilmStats old = films.get(filmId);
+            FilmStats stats = change.apply(old);
+            if (stats != null) {
+                films.put(filmId, stats);
+            } else {
+                films.remove(filmId);
+            }
+            if (old != null) {
+                Entry oldEntry = new Entry(old.getLikes(), filmId);
+                for (BoardKey key : old.boardKeys()) {
+                    ConcurrentSkipListSet<Entry> board = boards.get(key);
+                    if (board != null) {
+                        board.remove(oldEntry);
+                    }
+                }
+            }
+            if (stats != null) {
+                addToBoards(filmId, stats);
+            }
+        });
+    }
+
+    private void addToBoards(int filmId, FilmStats stats) {
+        Entry entry = new Entry(stats.getLikes(), filmId);
+        for (BoardKey key : stats.boardKeys()) {
+            boards.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(ORDER)).add(entry);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (!loaded) {
+                load();
+                loaded = true;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void load() {
+        log.info("ИНДЕКС: Загрузка рейтингов популярности из хранилища");
+        Map<Integer, List<Integer>> genresByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, GENRE_ID FROM FILM_GENRES", (RowCallbackHandler) rs ->
+                genresByFilm.computeIfAbsent(rs.getInt(1), k -> new ArrayList<>())
+                        .add(rs.getInt(2)));
+        films.clear();
+        boards.clear();
+        jdbcTemplate.query("SELECT FILM_ID, FILM_RELEASE_DATE, FILM_LIKES FROM FILMS", (RowCallbackHandler) rs -> {
+            int filmId = rs.getInt(1);
+            Date releaseDate = rs.getDate(2);
+            FilmStats stats = new FilmStats(
+                    releaseDate != null ? releaseDate.toLocalDate().getYear() : null,
+                    sortedIds(genresByFilm.getOrDefault(filmId, List.of())),
+                    rs.getInt(3), 0);
+            films.put(filmId, stats);
+            addToBoards(filmId, stats);
+        });
+        log.info("ИНДЕКС: Загружено {} фильмов в {} рейтингов", films.size(), boards.size());
+    }
+
+    private static int[] sortedIds(Collection<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+    }
+
+    @Value
+    private static class BoardKey {
+        Integer genreId;
+        Integer year;
+    }
+
+    @Value
+    private static class Entry {
+        int likes;
+        int filmId;
+    }
+
+    @Value
+    private static class FilmStats {
+        Integer year;
+        int[] genreIds;
+        int likes;
+        long likesVersion;
+
+        FilmStats withGenres(Integer year, int[] genreIds) {
+            return new FilmStats(year, genreIds, likes, likesVersion);
+        }
+
+        List<BoardKey> boardKeys() {
+            List<BoardKey> keys = new ArrayList<>(2 + genreIds.length * 2);
+            keys.add(new BoardKey(null, null));
+            if (year != null) {
+                keys.add(new BoardKey(null, year));
+            }
+            for (int genreId : genreIds) {
+                keys.add(new BoardKey(genreId, null));
+                if (year != null) {
+                    keys.add(new BoardKey(genreId, year));
+                }
+            }
+            return keys;
+        }
+    }
+}
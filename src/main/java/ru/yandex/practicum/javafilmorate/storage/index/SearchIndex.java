@@ -0,0 +1,150 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Поисковый индекс по названиям фильмов и именам режиссёров.
+   Загружается из хранилища при первом поиске и дальше поддерживается хуками хранилищ */
+@Slf4j
+@Component
+public class SearchIndex {
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directors = new TrigramIndex();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private volatile boolean loaded;
+
+    public SearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Set<Integer> search(String query, boolean byTitle, boolean byDirector) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Set<Integer> filmIds = new HashSet<>();
+            if (byTitle) {
+                filmIds.addAll(titles.search(query));
+            }
+            if (byDirector) {
+                for (Integer directorId : directors.search(query)) {
+                    filmIds.addAll(filmsByDirector.getOrDefault(directorId, Set.of()));
+                }
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putFilm(int filmId, String name, Collection<Integer> directorIds) {
+        Set<Integer> directorSet = Set.copyOf(directorIds);
+        TransactionHooks.afterCommit(() -> write(() -> {
+            if (!directorSet.stream().allMatch(directors::contains)) {
+                /* Режиссёр появился в обход индекса - проще перечитать индекс целиком */
+                clear();
+                return;
+            }
+            unlinkFilm(filmId);
+            titles.put(filmId, name);
+            directorsByFilm.put(filmId, new HashSet<>(directorSet));
+            for (Integer directorId : directorSet) {
+                filmsByDirector.computeIfAbsent(directorId, k -> new HashSet<>()).add(filmId);
+            }
+        }));
+    }
+
+    public void removeFilm(int filmId) {
+        TransactionHooks.afterCommit(() -> write(() -> {
+            titles.remove(filmId);
+            unlinkFilm(filmId);
+        }));
+    }
+
+    public void putDirector(int directorId, String name) {
+        TransactionHooks.afterCommit(() -> write(() -> directors.put(directorId, name)));
+    }
+
+    public void removeDirector(int directorId) {
+        TransactionHooks.afterCommit(() -> write(() -> {
+            directors.remove(directorId);
+            for (Integer filmId : filmsByDirector.getOrDefault(directorId, Set.of())) {
+                directorsByFilm.getOrDefault(filmId, new HashSet<>()).remove(directorId);
+            }
+            filmsByDirector.remove(directorId);
+        }));
+    }
+
+    public void invalidate() {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void write(Runnable change) {
+        IndexWrites.ifLoaded(lock.writeLock(), () -> loaded, change);
+    }
+
+    private void unlinkFilm(int filmId) {
+        Set<Integer> oldDirectors = directorsByFilm.remove(filmId);
+        if (oldDirectors != null) {
+            for (Integer directorId : oldDirectors) {
+                Set<Integer> films = filmsByDirector.get(directorId);
+                if (films != null) {
+                    films.remove(filmId);
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        log.info("ИНДЕКС: Сброс поискового индекса");
+        titles.clear();
+        directors.clear();
+        filmsByDirector.clear();
+        directorsByFilm.clear();
+        loaded = false;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        log.info("ИНДЕКС: Загрузка поискового индекса из хранилища");
+        jdbcTemplate.query("SELECT FILM_ID, FILM_NAME FROM FILMS", (RowCallbackHandler) rs ->
+                titles.put(rs.getInt(1), rs.getString(2)));
+        jdbcTemplate.query("SELECT DIRECTOR_ID, DIRECTOR_NAME FROM DIRECTORS", (RowCallbackHandler) rs ->
+                directors.put(rs.getInt(1), rs.getString(2)));
+        jdbcTemplate.query("SELECT FILM_ID, DIRECTOR_ID FROM FILMS_DIRECTORS", (RowCallbackHandler) rs -> {
+            int filmId = rs.getInt(1);
+            int directorId = rs.getInt(2);
+            filmsByDirector.computeIfAbsent(directorId, k -> new HashSet<>()).add(filmId);
+            directorsByFilm.computeIfAbsent(filmId, k -> new HashSet<>()).add(directorId);
+        });
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* Индекс в памяти, который сохраняется в снимок IndexSnapshots и восстанавливается из него */
+interface SnapshotSection {
+    String snapshotName();
+
+    /* Загружает индекс из базы, если он ещё не загружен */
+    void load();
+
+    /* Пишет номер последнего учтённого изменения журнала и содержимое индекса, возвращает этот номер.
+       -1 - снимок сейчас снять нельзя, попытка повторится позже */
+    long writeSnapshot(DataOutput out) throws IOException;
+
+    /* Читает содержимое, записанное writeSnapshot, и дочитывает журнал после него.
+       false - снимок не подходит, индекс нужно загрузить из базы */
+    boolean restore(ByteBuffer snapshot);
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import ru.yandex.practicum.javafilmorate.model.Review;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/* Начало выдачи отзывов одного фильма в порядке USEFUL DESC, ID: список всегда совпадает с первыми
+   отзывами фильма в БД, а при complete содержит их все. Доступ синхронизирует TopReviewsIndex */
+class TopReviews {
+    static final Comparator<Review> ORDER = Comparator.comparingInt(Review::getUseful).reversed()
+            .thenComparingInt(Review::getReviewId);
+
+    private final int capacity;
+    private final List<Review> reviews = new ArrayList<>();
+    private boolean loaded;
+    private boolean complete;
+
+    TopReviews(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void load(List<Review> top) {
+        reviews.clear();
+        reviews.addAll(top);
+        complete = top.size() < capacity;
+        loaded = true;
+    }
+
+    /* После удалений начало выдачи могло стать короче нужного - такой список загружается заново */
+    boolean needsLoad() {
+        return !loaded || (!complete && reviews.size() < capacity);
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    void remove(int reviewId) {
+        reviews.removeIf(review -> review.getReviewId() == reviewId);
+    }
+
+    void put(Review review) {
+        remove(review.getReviewId());
+        int position = -Collections.binarySearch(reviews, review, ORDER) - 1;
+        if (position == reviews.size() && !complete) {
+            /* Отзыв оказался за последним известным - в БД перед ним могут быть отзывы, которых нет в списке */
+            return;
+        }
+        reviews.add(position, review);
+        if (reviews.size() > capacity) {
+            reviews.remove(reviews.size() - 1);
+            complete = false;
+        }
+    }
+
+    /* До count отзывов сразу за курсором или null, если список не покрывает страницу */
+    List<Review> page(Cursor after, int count) {
+        List<Review> page = new ArrayList<>(Math.min(count, reviews.size()));
+        for (Review review : reviews) {
+            if (page.size() == count) {
+                break;
+            }
+            if (after == null || review.getUseful() < after.getKey()
+                    || (review.getUseful() == after.getKey() && review.getReviewId() > after.getId())) {
+                page.add(review);
+            }
+        }
+        return page.size() == count || complete ? page : null;
+    }
+}
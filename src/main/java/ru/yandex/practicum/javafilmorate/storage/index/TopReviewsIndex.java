@@ -0,0 +1,134 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.javafilmorate.model.Review;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.Rows;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Самые полезные отзывы фильмов, которые недавно читали. Список фильма загружается при первом чтении,
+   а при записи отзыва перечитывается только изменённая строка. Чтение и обновление одного фильма
+   идут под его блокировкой, поэтому последней применяется строка, прочитанная после всех записей.
+   Внутри транзакции список не читается и не перечитывается: она видит свои незафиксированные записи */
+@Slf4j
+@Component
+public class TopReviewsIndex {
+    private final JdbcTemplate jdbcTemplate;
+    private final int reviewsPerFilm;
+    private final Map<Integer, TopReviews> films;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TopReviewsIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.reviews.top-cache-size:50}") int reviewsPerFilm,
+                           @Value("${filmorate.reviews.top-cache-films:10000}") int maxFilms) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reviewsPerFilm = reviewsPerFilm;
+        this.films = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, TopReviews> eldest) {
+                return size() > maxFilms;
+            }
+        };
+    }
+
+    /* Страница отзывов фильма из памяти или null, если её нужно читать из БД */
+    public List<Review> page(int filmId, Cursor after, int count) {
+        if (count > reviewsPerFilm || TransactionHooks.inTransaction()) {
+            misses.increment();
+            return null;
+        }
+        TopReviews top;
+        synchronized (films) {
+            top = films.computeIfAbsent(filmId, id -> new TopReviews(reviewsPerFilm));
+        }
+        List<Review> page;
+        synchronized (top) {
+            if (top.needsLoad()) {
+                log.info("ИНДЕКС: Загрузка {} самых полезных отзывов на фильм с id {}", reviewsPerFilm, filmId);
+                try {
+                    top.load(jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews WHERE FILM_ID = ? " +
+                            "ORDER BY USEFUL DESC, ID LIMIT ?", Rows.REVIEW, filmId, reviewsPerFilm));
+                } catch (RuntimeException e) {
+                    synchronized (films) {
+                        films.remove(filmId, top);
+                    }
+                    throw e;
+                }
+            }
+            page = top.page(after, count);
+        }
+        if (page == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return page;
+    }
+
+    /* Отзыв добавлен, изменён, удалён или за него проголосовали. До завершения транзакции список фильма
+       сбрасывается, а изменённая строка перечитывается только после фиксации или отката */
+    public void refresh(int filmId, int reviewId) {
+        if (TransactionHooks.inTransaction()) {
+            evict(filmId);
+        }
+        TransactionHooks.afterCompletion(() -> reload(filmId, reviewId));
+    }
+
+    public void removeFilm(int filmId) {
+        TransactionHooks.nowAndAfterCompletion(() -> evict(filmId));
+    }
+
+    /* Удаление пользователя каскадно удаляет его отзывы и меняет полезность отзывов, за которые он голосовал */
+    public void invalidate() {
+        TransactionHooks.nowAndAfterCompletion(() -> {
+            synchronized (films) {
+                log.info("ИНДЕКС: Сброс самых полезных отзывов");
+                films.clear();
+            }
+        });
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void evict(int filmId) {
+        synchronized (films) {
+            films.remove(filmId);
+        }
+    }
+
+    private void reload(int filmId, int reviewId) {
+        TopReviews top;
+        synchronized (films) {
+            top = films.get(filmId);
+        }
+        if (top == null) {
+            return;
+        }
+        synchronized (top) {
+            if (!top.isLoaded()) {
+                return;
+            }
+            List<Review> rows = jdbcTemplate.query("SELECT " + Rows.REVIEW_COLUMNS + " FROM reviews WHERE ID = ?",
+                    Rows.REVIEW, reviewId);
+            if (rows.isEmpty() || rows.get(0).getFilmId() != filmId) {
+                top.remove(reviewId);
+            } else {
+                top.put(rows.get(0));
+            }
+        }
+    }
+}
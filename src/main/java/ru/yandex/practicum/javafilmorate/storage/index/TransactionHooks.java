@@ -0,0 +1,56 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/* Индексы в памяти меняются только после фиксации транзакции, чтобы откат не оставлял в них следов */
+final class TransactionHooks {
+    private TransactionHooks() {
+    }
+
+    /* Записи текущего потока пока видны только ему самому */
+    static boolean inTransaction() {
+        return TransactionSynchronizationManager.isSynchronizationActive();
+    }
+
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /* Действие после завершения транзакции с любым исходом, после всех afterCommit */
+    static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /* Изменение применяется сразу, чтобы транзакция видела свои записи, и повторяется после её завершения:
+       при фиксации - уже для всех, при откате - возвращая прежнее состояние */
+    static void nowAndAfterCompletion(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+}
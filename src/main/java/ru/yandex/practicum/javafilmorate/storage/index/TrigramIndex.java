@@ -0,0 +1,90 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import java.util.*;
+
+/* Инвертированный индекс по триграммам строк для поиска подстроки без учёта регистра.
+   Не потокобезопасен, синхронизация - на стороне владельца */
+class TrigramIndex {
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<Long, Set<Integer>> postings = new HashMap<>();
+
+    void put(int id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (long trigram : trigrams(normalized)) {
+            postings.computeIfAbsent(trigram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    void remove(int id) {
+        String old = texts.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (long trigram : trigrams(old)) {
+            Set<Integer> posting = postings.get(trigram);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    boolean contains(int id) {
+        return texts.containsKey(id);
+    }
+
+    Set<Integer> search(String query) {
+        String normalized = normalize(query);
+        Set<Integer> result = new HashSet<>();
+        if (normalized.length() < 3) {
+            /* Для коротких запросов триграмм нет, проверяем строки напрямую */
+            texts.forEach((id, text) -> {
+                if (text.contains(normalized)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+        List<Set<Integer>> lists = new ArrayList<>();
+        for (long trigram : trigrams(normalized)) {
+            Set<Integer> posting = postings.get(trigram);
+            if (posting == null) {
+                return result;
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        for (Integer id : lists.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(id);
+            }
+            /* Совпадение всех триграмм ещё не гарантирует подстроку, поэтому проверяем кандидата */
+            if (inAll && texts.get(id).contains(normalized)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        texts.clear();
+        postings.clear();
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.javafilmorate.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Построчное чтение CSV (RFC 4180): поля через запятую, кавычки экранируются удвоением,
+   поле в кавычках может содержать запятые и переводы строк */
+public class CsvReader {
+    public static final String TEXT_CSV = "text/csv";
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private long recordLine;
+
+    public CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /* Следующая непустая запись или null в конце потока */
+    public List<String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+        recordLine = lineNumber;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                /* Перевод строки внутри поля в кавычках */
+                line = reader.readLine();
+                if (line == null) {
+                    throw new InvalidDataException("Незакрытая кавычка в записи CSV в строке " + recordLine);
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /* Номер строки, с которой началась последняя прочитанная запись */
+    public long getRecordLine() {
+        return recordLine;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.javafilmorate.utils;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/* Непрозрачный токен продолжения выдачи: ключ сортировки и id последней отданной записи */
+@Value
+public class Cursor {
+    long key;
+    int id;
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 2) {
+                throw new InvalidDataException("Некорректный курсор постраничной выдачи: " + token);
+            }
+            return new Cursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDataException("Некорректный курсор постраничной выдачи: " + token);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.javafilmorate.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/* Пишет объекты в поток по одному JSON на строку (application/x-ndjson) */
+public class NdjsonWriter<T> implements Consumer<T>, AutoCloseable {
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int FLUSH_EVERY = 100;
+
+    private final SequenceWriter writer;
+    private int written;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+    }
+
+    @Override
+    public void accept(T value) {
+        try {
+            writer.write(value);
+            if (++written % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.javafilmorate.utils;
+
+import lombok.Value;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/* Страница выдачи. Курсор следующей страницы передаётся клиенту в заголовке, тело остаётся массивом */
+@Value
+public class Page<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    List<T> items;
+    String nextCursor;
+
+    /* rows запрашиваются из хранилища с запасом в одну запись, чтобы понять, есть ли следующая страница */
+    public static <T> Page<T> of(List<T> rows, int size, Function<T, Cursor> cursorOf) {
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new Page<>(items, cursorOf.apply(items.get(size - 1)).encode());
+    }
+
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+}
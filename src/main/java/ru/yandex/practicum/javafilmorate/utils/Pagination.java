@@ -0,0 +1,24 @@
+package ru.yandex.practicum.javafilmorate.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/* Ограничение размера страницы на стороне сервера */
+@Component
+public class Pagination {
+    private final int maxPageSize;
+
+    public Pagination(@Value("${filmorate.pagination.max-page-size:1000}") int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int limit(Integer count) {
+        if (count == null) {
+            return maxPageSize;
+        }
+        if (count < 1) {
+            throw new InvalidDataException("Размер страницы должен быть больше 0");
+        }
+        return Math.min(count, maxPageSize);
+    }
+}
@@ -1,5 +1,3 @@
-DROP ALL OBJECTS;
-
 CREATE TABLE IF NOT EXISTS USERS
 (
     USER_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -0,0 +1,9 @@
+-- Журнал изменений, из которых строятся индексы в памяти. Индекс, восстановленный из снимка,
+-- дочитывает только строки с номером больше учтённого в снимке
+CREATE TABLE IF NOT EXISTS INDEX_CHANGES
+(
+    SEQ BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    KIND VARCHAR(20) NOT NULL,
+    FIRST_ID INTEGER NOT NULL,
+    SECOND_ID INTEGER NOT NULL
+);
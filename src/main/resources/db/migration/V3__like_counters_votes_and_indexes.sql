@@ -0,0 +1,24 @@
+-- Столбцы, таблицы и индексы, появившиеся после базовой схемы. Все изменения условные, поэтому скрипт
+-- одинаково доводит и новую базу, и базу, созданную до миграций и принятую за версию 0
+ALTER TABLE FILMS ADD COLUMN IF NOT EXISTS FILM_LIKES INTEGER DEFAULT 0 NOT NULL;
+UPDATE FILMS AS F SET FILM_LIKES = (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID);
+CREATE INDEX IF NOT EXISTS FILMS_LIKES_IDX ON FILMS (FILM_LIKES DESC, FILM_ID);
+UPDATE reviews SET USEFUL = 0 WHERE USEFUL IS NULL;
+ALTER TABLE reviews ALTER COLUMN USEFUL SET DEFAULT 0;
+ALTER TABLE reviews ALTER COLUMN USEFUL SET NOT NULL;
+CREATE TABLE IF NOT EXISTS REVIEW_VOTES
+(
+  REVIEW_ID INTEGER NOT NULL REFERENCES REVIEWS(ID) ON DELETE CASCADE,
+  USER_ID INTEGER NOT NULL REFERENCES USERS(USER_ID) ON DELETE CASCADE,
+  VOTE SMALLINT NOT NULL CHECK (VOTE IN (-1, 1)),
+  PRIMARY KEY (REVIEW_ID, USER_ID)
+);
+-- H2 сам индексирует столбцы внешних ключей по одному. Составные индексы ниже нужны там, где запросу мало
+-- одного столбца: поиск по паре, чтение только из индекса или упорядоченная выборка первых строк
+CREATE INDEX IF NOT EXISTS FRIENDS_USER_FRIEND_IDX ON FRIENDS (USER_ID, FRIEND_ID);
+CREATE INDEX IF NOT EXISTS FILM_GENRES_FILM_GENRE_IDX ON FILM_GENRES (FILM_ID, GENRE_ID);
+CREATE INDEX IF NOT EXISTS LIKES_USER_FILM_IDX ON LIKES (USER_ID, FILM_ID);
+CREATE INDEX IF NOT EXISTS REVIEWS_USEFUL_IDX ON reviews (USEFUL DESC, ID);
+CREATE INDEX IF NOT EXISTS REVIEWS_FILM_USEFUL_IDX ON reviews (FILM_ID, USEFUL DESC, ID);
+CREATE INDEX IF NOT EXISTS EVENTS_USER_IDX ON EVENTS (USER_ID, EVENT_ID);
+CREATE INDEX IF NOT EXISTS FILMS_DIRECTORS_FILM_DIRECTOR_IDX ON FILMS_DIRECTORS (FILM_ID, DIRECTOR_ID);
@@ -0,0 +1,6 @@
+-- Базы, созданные до MERGE в addFriend, могут хранить одну дружбу несколькими строками. Остаётся первая из них,
+-- дальше пару защищает ограничение уникальности, индекс которого заменяет прежний составной
+DELETE FROM FRIENDS AS F WHERE EXISTS (SELECT 1 FROM FRIENDS AS D
+    WHERE D.USER_ID = F.USER_ID AND D.FRIEND_ID = F.FRIEND_ID AND D.ID < F.ID);
+DROP INDEX IF EXISTS FRIENDS_USER_FRIEND_IDX;
+ALTER TABLE FRIENDS ADD CONSTRAINT IF NOT EXISTS FRIENDS_USER_FRIEND_UNIQUE UNIQUE (USER_ID, FRIEND_ID);
@@ -0,0 +1,7 @@
+-- Повторная отметка "like" раньше добавляла вторую строку пары и завышала FILM_LIKES. Остаётся первая строка,
+-- счётчики пересчитываются по оставшимся, дальше пару защищает ограничение уникальности
+DELETE FROM LIKES AS L WHERE EXISTS (SELECT 1 FROM LIKES AS D
+    WHERE D.FILM_ID = L.FILM_ID AND D.USER_ID = L.USER_ID AND D.ID < L.ID);
+UPDATE FILMS AS F SET FILM_LIKES = (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID)
+    WHERE FILM_LIKES <> (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID);
+ALTER TABLE LIKES ADD CONSTRAINT IF NOT EXISTS LIKES_FILM_USER_UNIQUE UNIQUE (FILM_ID, USER_ID);
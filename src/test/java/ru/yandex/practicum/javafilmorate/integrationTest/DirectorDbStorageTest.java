@@ -17,17 +17,17 @@ import java.util.Optional;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class DirectorDbStorageTest {
     private final DirectorStorage directorStorage;
-    private final Director director1 = new Director(null, "Name1");
-    private final Director director2 = new Director(null, "Name2");
-    private final Director director3 = new Director(null, "Name3");
-    private final Director director4 = new Director(null, "Name4");
+    private Director director1;
+    private Director director2;
+    private Director director3;
+    private Director director4;
 
     @BeforeEach
     void createDirectors() {
-        directorStorage.addDirector(director1);
-        directorStorage.addDirector(director2);
-        directorStorage.addDirector(director3);
-        directorStorage.addDirector(director4);
+        director1 = directorStorage.addDirector(new Director(null, "Name1"));
+        director2 = directorStorage.addDirector(new Director(null, "Name2"));
+        director3 = directorStorage.addDirector(new Director(null, "Name3"));
+        director4 = directorStorage.addDirector(new Director(null, "Name4"));
     }
 
     @AfterEach
@@ -65,8 +65,7 @@ public class DirectorDbStorageTest {
     @Test
     @DisplayName("Проверка методов addDirector и deleteDirector для Director")
     void testShouldDeleteDirectorById() {
-        final Director testDirector = new Director(null, "TestName");
-        directorStorage.addDirector(testDirector);
+        final Director testDirector = directorStorage.addDirector(new Director(null, "TestName"));
         List<Director> beforeDeletion = directorStorage.findAll();
         Assertions.assertEquals(beforeDeletion.size(), 5, "Количество режиссёров в списке не совпадает");
         directorStorage.deleteDirector(testDirector.getId());
@@ -14,23 +14,34 @@ import ru.yandex.practicum.javafilmorate.model.Event;
 import ru.yandex.practicum.javafilmorate.model.EventType;
 import ru.yandex.practicum.javafilmorate.model.OperationType;
 import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.service.EventService;
+import ru.yandex.practicum.javafilmorate.service.EventWriter;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedEventStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.EventStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.EventDbStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.Page;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
-import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
 
 @SpringBootTest(classes = JavaFilmorateApplication.class)
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
 class EventDbStorageTest {
 
     private final UserDbStorage userDbStorage;
     private final EventDbStorage eventDbStorage;
+    private final EventService eventService;
+    private final CachedEventStorage cachedEventStorage;
     private final User firstUser = new User(1, "email@yandex.ru", "Login1", "Name1", LocalDate.parse("1970-01-01"), null);
     private final Event event1 = new Event(EventType.REVIEW, OperationType.ADD, 111, 1);
     private final Event event2 = new Event(EventType.REVIEW, OperationType.REMOVE, 222, 1);
@@ -67,4 +78,129 @@ class EventDbStorageTest {
         Assertions.assertThat(event.stream().anyMatch(e -> e.getOperation().equals("ADD")));
         Assertions.assertThat(event.stream().anyMatch(e -> e.getEventId() == 111));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Тест пакетной записи Event: каждое событие получает свой id")
+    void testShouldAddEventsBatch() {
+        List<Event> batch = List.of(new Event(EventType.LIKE, OperationType.ADD, 1, 1),
+                new Event(EventType.LIKE, OperationType.REMOVE, 1, 1),
+                new Event(EventType.FRIEND, OperationType.ADD, 2, 1));
+        eventDbStorage.addAll(batch);
+        Assertions.assertThat(batch).extracting(Event::getEventId).doesNotContainNull().doesNotHaveDuplicates();
+        Assertions.assertThat(eventDbStorage.getUserEvents(firstUser.getId())).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("Тест асинхронной записи: лента содержит все события, принятые до запроса")
+    void testShouldReturnAcknowledgedEventsInFeed() {
+        for (int i = 0; i < 1000; i++) {
+            eventService.add(new Event(EventType.LIKE, OperationType.ADD, i, firstUser.getId()));
+        }
+        /* Без параметров - первая страница размера feed-page-size из кэша последних событий */
+        Page<Event> latest = eventService.getUserFeed(firstUser.getId(), null, null);
+        Assertions.assertThat(latest.getItems()).hasSize(100)
+                .extracting(Event::getEntityId).startsWith(900).endsWith(999);
+        Assertions.assertThat(latest.getNextCursor()).isNotNull();
+        Assertions.assertThat(cachedEventStorage.getHits()).isEqualTo(1);
+
+        /* Постранично от новых событий к старым: каждое событие ровно один раз */
+        List<Integer> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<Event> page = eventService.getUserFeed(firstUser.getId(), cursor, 100);
+            List<Integer> ids = page.getItems().stream().map(Event::getEventId).collect(Collectors.toList());
+            paged.addAll(0, ids);
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        Assertions.assertThat(pages).isEqualTo(11);
+        Assertions.assertThat(paged).hasSize(1002).doesNotHaveDuplicates().isSorted();
+    }
+
+    @Test
+    @DisplayName("Тест асинхронной записи: чтение ленты ждёт только событий своего пользователя")
+    void testShouldWaitOnlyForOwnPendingEvents() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        EventWriter writer = new EventWriter(new BlockingEventStorage(eventDbStorage, release),
+                EventWriter.Mode.ASYNC, 500, 10, 100);
+        writer.start();
+        try {
+            writer.write(new Event(EventType.LIKE, OperationType.ADD, 1, firstUser.getId()));
+
+            Thread other = new Thread(() -> writer.flush(firstUser.getId() + 1));
+            other.start();
+            other.join(1000);
+            Assertions.assertThat(other.isAlive()).as("Лента другого пользователя ждёт чужую пачку").isFalse();
+
+            Thread own = new Thread(() -> writer.flush(firstUser.getId()));
+            own.start();
+            own.join(200);
+            Assertions.assertThat(own.isAlive()).as("Лента не дождалась своего события").isTrue();
+            release.countDown();
+            own.join(5000);
+            Assertions.assertThat(own.isAlive()).isFalse();
+            Assertions.assertThat(eventDbStorage.getUserEvents(firstUser.getId())).hasSize(3);
+        } finally {
+            release.countDown();
+            writer.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Тест постраничной ленты: первые страницы отдаются из кэша последних событий")
+    void testShouldPageUserFeedFromRecentEvents() {
+        Page<Event> first = eventService.getUserFeed(firstUser.getId(), null, 1);
+        Assertions.assertThat(first.getItems()).extracting(Event::getEntityId).containsExactly(222);
+        eventService.add(event3);
+
+        Page<Event> latest = eventService.getUserFeed(firstUser.getId(), null, 2);
+        Assertions.assertThat(latest.getItems()).extracting(Event::getEntityId).containsExactly(222, 333);
+        Page<Event> older = eventService.getUserFeed(firstUser.getId(), latest.getNextCursor(), 2);
+        Assertions.assertThat(older.getItems()).extracting(Event::getEntityId).containsExactly(111);
+        Assertions.assertThat(older.getNextCursor()).isNull();
+        Assertions.assertThat(cachedEventStorage.getMisses()).isZero();
+        Assertions.assertThat(cachedEventStorage.getHits()).isEqualTo(3);
+    }
+
+    /* Хранилище, пакетная запись в которое ждёт разрешения теста */
+    private static class BlockingEventStorage implements EventStorage {
+        private final EventStorage eventStorage;
+        private final CountDownLatch release;
+
+        BlockingEventStorage(EventStorage eventStorage, CountDownLatch release) {
+            this.eventStorage = eventStorage;
+            this.release = release;
+        }
+
+        @Override
+        public Event add(Event event) {
+            return eventStorage.add(event);
+        }
+
+        @Override
+        public void addAll(List<Event> events) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            eventStorage.addAll(events);
+        }
+
+        @Override
+        public List<Event> getUserEvents(int userId) {
+            return eventStorage.getUserEvents(userId);
+        }
+
+        @Override
+        public List<Event> getUserEvents(int userId, Cursor before, int limit) {
+            return eventStorage.getUserEvents(userId, before, limit);
+        }
+
+        @Override
+        public void deleteUserEvents(int userId) {
+            eventStorage.deleteUserEvents(userId);
+        }
+    }
+}
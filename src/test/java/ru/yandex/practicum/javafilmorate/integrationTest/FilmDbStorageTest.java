@@ -1,5 +1,6 @@
 package ru.yandex.practicum.javafilmorate.integrationTest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,27 +9,53 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
 import ru.yandex.practicum.javafilmorate.model.*;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedDirectorStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedGenreStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedMpaStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.DirectorStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.*;
-
+import ru.yandex.practicum.javafilmorate.storage.index.IndexJournal;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.SearchIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.TopReviewsIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.InvalidDataException;
+import ru.yandex.practicum.javafilmorate.utils.NdjsonWriter;
+import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
-import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
 
 @SpringBootTest(classes = JavaFilmorateApplication.class)
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
 public class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
     private final LikesDbStorage likesDbStorage;
     private final UserDbStorage userDbStorage;
     private final DirectorStorage directorStorage;
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
     private final Film film1 = new Film(null, "Film1", "Description1", LocalDate.parse("1970-01-01"),
             140, new Mpa(1, "G"), 0);
     private final Film film2 = new Film(null, "Film2", "Description2", LocalDate.parse("1980-01-01"),
@@ -296,4 +323,268 @@ public class FilmDbStorageTest {
                 filmStorage.searchBySubstring("ilm", "director,title"), "Порядок параметров в by не" +
                         "имеет значения");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Количество запросов при получении фильмов не зависит от размера страницы")
+    void testFilmHydrationUsesConstantQueryCount() {
+        AtomicInteger statements = new AtomicInteger();
+        JdbcTemplate countingTemplate = new JdbcTemplate(countingDataSource(dataSource, statements));
+        CachedMpaStorage countingMpaStorage = new CachedMpaStorage(new MpaDbStorage(countingTemplate));
+        CachedGenreStorage countingGenreStorage = new CachedGenreStorage(new GenreDbStorage(countingTemplate));
+        SearchIndex countingSearchIndex = new SearchIndex(countingTemplate);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate, countingMpaStorage, countingGenreStorage,
+                new CachedDirectorStorage(new DirectorDbStorage(countingTemplate, countingSearchIndex)),
+                new PopularityIndex(countingTemplate), countingSearchIndex,
+                new LikeIndex(countingTemplate, new IndexJournal(countingTemplate, false)),
+                new TopReviewsIndex(countingTemplate, 50, 100));
+        directorStorage.addDirector(director);
+        likesDbStorage.addLike(film1Id, user1Id);
+        // прогрев кэша справочников
+        countingMpaStorage.findAll();
+        countingGenreStorage.findAll();
+
+        statements.set(0);
+        List<Film> smallPage = countingStorage.findAll();
+        int smallPageStatements = statements.get();
+
+        for (int i = 0; i < 20; i++) {
+            Film film = new Film(null, "Film" + (i + 4), "Description", LocalDate.parse("2000-01-01"),
+                    100, new Mpa(i % 5 + 1, null), 0);
+            film.setGenres(Set.of(new Genre(i % 6 + 1, null)));
+            film.getDirectors().add(director);
+            filmStorage.addFilm(film);
+            likesDbStorage.addLike(film.getId(), user2Id);
+        }
+
+        statements.set(0);
+        List<Film> bigPage = countingStorage.findAll();
+        Assertions.assertEquals(3, smallPage.size(), "Количество фильмов не совпадает");
+        Assertions.assertEquals(23, bigPage.size(), "Количество фильмов не совпадает");
+        Assertions.assertEquals(smallPageStatements, statements.get(),
+                "Количество запросов не должно зависеть от количества фильмов");
+        for (Film film : bigPage) {
+            Assertions.assertEquals(filmStorage.findById(film.getId()), film, "Данные фильма не совпадают");
+        }
+    }
+
+    @Test
+    @DisplayName("Обновление фильма меняет только разницу связей и целиком откатывается при ошибке")
+    void testUpdateFilmAppliesDiffInOneTransaction() {
+        AtomicInteger statements = new AtomicInteger();
+        JdbcTemplate countingTemplate = new JdbcTemplate(countingDataSource(dataSource, statements));
+        SearchIndex countingSearchIndex = new SearchIndex(countingTemplate);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate,
+                new CachedMpaStorage(new MpaDbStorage(countingTemplate)),
+                new CachedGenreStorage(new GenreDbStorage(countingTemplate)),
+                new CachedDirectorStorage(new DirectorDbStorage(countingTemplate, countingSearchIndex)),
+                new PopularityIndex(countingTemplate), countingSearchIndex,
+                new LikeIndex(countingTemplate, new IndexJournal(countingTemplate, false)),
+                new TopReviewsIndex(countingTemplate, 50, 100));
+        directorStorage.addDirector(director);
+        likesDbStorage.addLike(film1Id, user1Id);
+
+        Film update = new Film(film1Id, "Film1", "Description1", LocalDate.parse("1970-01-01"), 140,
+                new Mpa(2, null), 0);
+        update.setGenres(Set.of(new Genre(1, null), new Genre(2, null)));
+        update.setDirectors(Set.of(new Director(director.getId(), null)));
+        Film updated = filmStorage.updateFilm(update);
+        Assertions.assertEquals(filmStorage.findById(film1Id), updated, "Ответ не совпадает с сохранённым фильмом");
+        Assertions.assertEquals("PG", updated.getMpa().getName(), "Название рейтинга не заполнено");
+        Assertions.assertEquals(1, updated.getLikes(), "Лайки фильма не сохранены в ответе");
+
+        statements.set(0);
+        countingStorage.updateFilm(update);
+        Assertions.assertEquals(2, statements.get(), "Без изменений связей нужны только обновление и проверка");
+
+        update.setGenres(Set.of(new Genre(2, null), new Genre(3, null)));
+        statements.set(0);
+        updated = countingStorage.updateFilm(update);
+        Assertions.assertEquals(4, statements.get(), "Разница жанров применяется одним удалением и одной вставкой");
+        Assertions.assertEquals(filmStorage.findById(film1Id), updated, "Ответ не совпадает с сохранённым фильмом");
+        Assertions.assertEquals(List.of(2, 3), updated.getGenres().stream().map(Genre::getId)
+                .collect(Collectors.toList()), "Жанры не обновлены");
+
+        Film invalid = new Film(film1Id, "Film1", "Ошибка", LocalDate.parse("1970-01-01"), 140,
+                new Mpa(2, null), 0);
+        invalid.setGenres(Set.of(new Genre(1, null), new Genre(999, null)));
+        UnregisteredDataException e = Assertions.assertThrows(UnregisteredDataException.class,
+                () -> filmStorage.updateFilm(invalid));
+        Assertions.assertEquals("Жанр с id 999 не зарегистрирован в системе", e.getMessage());
+        Assertions.assertEquals(updated, filmStorage.findById(film1Id), "Обновление не откатилось целиком");
+
+        Film invalidMpa = new Film(film1Id, "Film1", "Ошибка", LocalDate.parse("1970-01-01"), 140,
+                new Mpa(99, null), 0);
+        e = Assertions.assertThrows(UnregisteredDataException.class, () -> filmStorage.updateFilm(invalidMpa));
+        Assertions.assertEquals("MPA с id 99 не зарегистрирован в системе", e.getMessage());
+
+        Film invalidDirector = new Film(null, "Film4", "Description4", LocalDate.parse("2000-01-01"), 100,
+                new Mpa(1, null), 0);
+        invalidDirector.setDirectors(Set.of(new Director(999, null)));
+        e = Assertions.assertThrows(UnregisteredDataException.class, () -> filmStorage.addFilm(invalidDirector));
+        Assertions.assertEquals("Режиссёр с id 999 не зарегистрирован в системе", e.getMessage());
+        Assertions.assertEquals(3, filmStorage.findAll().size(), "Фильм с ошибкой не должен добавляться");
+    }
+
+    @Test
+    @DisplayName("Счётчик лайков обновляется вместе с таблицей LIKES и пересчитывается")
+    void testLikeCounters() {
+        likesDbStorage.addLike(film1Id, user1Id);
+        likesDbStorage.addLike(film1Id, user2Id);
+        likesDbStorage.addLike(film1Id, user3Id);
+        likesDbStorage.addLike(film2Id, user3Id);
+        likesDbStorage.deleteLike(film1Id, user1Id);
+        likesDbStorage.deleteLike(film3Id, user1Id);
+        Assertions.assertEquals(2, filmStorage.findById(film1Id).getLikes(), "Счётчик после удаления лайка");
+        Assertions.assertEquals(0, filmStorage.findById(film3Id).getLikes(), "Счётчик не должен уходить в минус");
+
+        userDbStorage.deleteUser(user3Id);
+        Assertions.assertEquals(1, filmStorage.findById(film1Id).getLikes(), "Счётчик после удаления пользователя");
+        Assertions.assertEquals(0, filmStorage.findById(film2Id).getLikes(), "Счётчик после удаления пользователя");
+
+        new JdbcTemplate(dataSource).update("UPDATE FILMS SET FILM_LIKES = 100 WHERE FILM_ID = ?", film3Id);
+        Assertions.assertEquals(1, likesDbStorage.rebuildLikeCounters(), "Пересчитан должен быть один фильм");
+        Assertions.assertEquals(0, filmStorage.findById(film3Id).getLikes(), "Счётчик после пересчёта");
+        Assertions.assertEquals(List.of(filmStorage.findById(film1Id), filmStorage.findById(film2Id),
+                filmStorage.findById(film3Id)), filmStorage.getPopularFilms(10), "Порядок популярных фильмов");
+    }
+
+    @Test
+    @DisplayName("Рейтинги популярности отвечают из памяти и следят за изменениями фильмов")
+    void testPopularityIndex() {
+        AtomicInteger statements = new AtomicInteger();
+        PopularityIndex countingIndex = new PopularityIndex(new JdbcTemplate(countingDataSource(dataSource, statements)));
+        likesDbStorage.addLike(film2Id, user1Id);
+        Assertions.assertEquals(List.of(film2Id, film1Id), countingIndex.top(null, null, 2), "Общий рейтинг");
+        statements.set(0);
+        Assertions.assertEquals(List.of(film2Id, film1Id, film3Id), countingIndex.top(null, null, 10),
+                "Общий рейтинг");
+        Assertions.assertEquals(List.of(film3Id), countingIndex.top(null, 1990, 10), "Рейтинг по году");
+        Assertions.assertEquals(0, statements.get(), "Загруженный рейтинг не должен обращаться к базе");
+
+        Film film3 = new Film(film3Id, "Film3", "Description3", LocalDate.parse("1980-05-05"),
+                190, new Mpa(2, "PG"), 0);
+        film3.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        filmStorage.updateFilm(film3);
+        likesDbStorage.addLike(film3Id, user1Id);
+        likesDbStorage.addLike(film3Id, user2Id);
+        Assertions.assertEquals(List.of(), filmStorage.getPopularByYear(10, 1990), "Фильм должен покинуть 1990 год");
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id), filmStorage.findById(film2Id)),
+                filmStorage.getPopularByYear(10, 1980), "Рейтинг по году после обновления фильма");
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id)),
+                filmStorage.getPopularByGenreAndYear(10, 2, 1980), "Рейтинг по жанру и году");
+
+        likesDbStorage.deleteLike(film3Id, user1Id);
+        likesDbStorage.deleteLike(film3Id, user2Id);
+        filmStorage.deleteFilm(film2Id);
+        Assertions.assertEquals(List.of(filmStorage.findById(film1Id), filmStorage.findById(film3Id)),
+                filmStorage.getPopularFilms(10), "Рейтинг после удаления лайков и фильма");
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id)),
+                filmStorage.getPopularByGenre(10, 1), "Рейтинг по жанру");
+    }
+
+    @Test
+    @DisplayName("Постраничная выдача фильмов и рейтинга по курсору")
+    void testKeysetPagination() {
+        likesDbStorage.addLike(film3Id, user1Id);
+        likesDbStorage.addLike(film3Id, user2Id);
+        likesDbStorage.addLike(film1Id, user1Id);
+
+        Assertions.assertEquals(List.of(filmStorage.findById(film1Id), filmStorage.findById(film2Id)),
+                filmStorage.findAll(null, 2), "Первая страница фильмов");
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id)),
+                filmStorage.findAll(new Cursor(film2Id, film2Id), 2), "Вторая страница фильмов");
+
+        List<Film> firstPage = filmStorage.getPopular(null, null, null, 2);
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id), filmStorage.findById(film1Id)), firstPage,
+                "Первая страница рейтинга");
+        Film last = firstPage.get(1);
+        Assertions.assertEquals(List.of(filmStorage.findById(film2Id)),
+                filmStorage.getPopular(null, null, new Cursor(last.getLikes(), last.getId()), 2),
+                "Вторая страница рейтинга");
+
+        String token = new Cursor(last.getLikes(), last.getId()).encode();
+        Assertions.assertEquals(new Cursor(last.getLikes(), last.getId()), Cursor.decode(token), "Курсор");
+        Assertions.assertThrows(InvalidDataException.class, () -> Cursor.decode("not a cursor"),
+                "Некорректный курсор");
+    }
+
+    @Test
+    @DisplayName("Потоковая выгрузка фильмов в формате NDJSON")
+    void testStreamAllAsNdjson() throws IOException {
+        Film film = filmStorage.findById(film2Id);
+        film.setGenres(Set.of(new Genre(1, "Комедия")));
+        directorStorage.addDirector(director);
+        film.setDirectors(Set.of(director));
+        filmStorage.updateFilm(film);
+        likesDbStorage.addLike(film2Id, user1Id);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NdjsonWriter<Film> writer = new NdjsonWriter<>(objectMapper, out)) {
+            filmStorage.streamAll(writer);
+        }
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(3, lines.length, "Количество строк не совпадает");
+        List<Film> expected = filmStorage.findAll(null, 10);
+        for (int i = 0; i < lines.length; i++) {
+            Assertions.assertEquals(objectMapper.writeValueAsString(expected.get(i)), lines[i],
+                    "Строка выгрузки не совпадает с фильмом");
+        }
+    }
+
+    @Test
+    @DisplayName("Поисковый индекс следит за фильмами и режиссёрами")
+    void testSearchIndex() {
+        directorStorage.addDirector(director);
+        Assertions.assertEquals(List.of(), filmStorage.searchBySubstring("director", "director"),
+                "У режиссёра ещё нет фильмов");
+
+        Film film2 = filmStorage.findById(film2Id);
+        film2.setDirectors(Set.of(director));
+        filmStorage.updateFilm(film2);
+        likesDbStorage.addLike(film3Id, user1Id);
+        Assertions.assertEquals(List.of(filmStorage.findById(film2Id)),
+                filmStorage.searchBySubstring("RECTOR", "director"), "Поиск по режиссёру без учёта регистра");
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id), filmStorage.findById(film1Id),
+                        filmStorage.findById(film2Id)),
+                filmStorage.searchBySubstring("fi", "title"), "Короткий запрос, порядок по лайкам");
+
+        Film renamed = new Film(film1Id, "Другое название", "Description1", LocalDate.parse("1970-01-01"),
+                140, new Mpa(1, "G"), 0);
+        filmStorage.updateFilm(renamed);
+        directorStorage.updateDirector(new Director(director.getId(), "Новое Имя"));
+        Assertions.assertEquals(List.of(filmStorage.findById(film3Id), filmStorage.findById(film2Id)),
+                filmStorage.searchBySubstring("film", "title,director"), "Переименованный фильм не находится");
+        Assertions.assertEquals(List.of(filmStorage.findById(film1Id), filmStorage.findById(film2Id)),
+                filmStorage.searchBySubstring("ое", "director,title"), "Поиск по кириллице");
+
+        filmStorage.deleteFilm(film3Id);
+        directorStorage.deleteDirector(director.getId());
+        Assertions.assertEquals(List.of(), filmStorage.searchBySubstring("новое", "director"),
+                "Удалённый режиссёр не находится");
+        Assertions.assertEquals(List.of(filmStorage.findById(film2Id)),
+                filmStorage.searchBySubstring("film", "title"), "Удалённый фильм не находится");
+        Assertions.assertEquals(List.of(), filmStorage.searchBySubstring("%' OR 1=1 --", "title"),
+                "Запрос не интерпретируется как SQL");
+    }
+
+    private static DataSource countingDataSource(DataSource dataSource, AtomicInteger statements) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if (method.getName().equals("prepareStatement")
+                                    || method.getName().equals("createStatement")) {
+                                statements.incrementAndGet();
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+    }
+}
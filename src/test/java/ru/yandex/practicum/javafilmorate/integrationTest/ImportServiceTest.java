@@ -0,0 +1,190 @@
+package ru.yandex.practicum.javafilmorate.integrationTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Friendship;
+import ru.yandex.practicum.javafilmorate.model.ImportReport;
+import ru.yandex.practicum.javafilmorate.model.ImportRow;
+import ru.yandex.practicum.javafilmorate.model.Like;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.service.ImportService;
+import ru.yandex.practicum.javafilmorate.storage.dao.FriendStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.ImportStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.LikeStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+
+import javax.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+
+@SpringBootTest(classes = JavaFilmorateApplication.class)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class ImportServiceTest {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    private final ImportService importService;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FriendStorage friendStorage;
+    private final ImportStorage importStorage;
+    private final LikeStorage likeStorage;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Test
+    @DisplayName("Импорт пользователей и дружбы из CSV с отчётом об ошибочных строках")
+    void testImportUsersAndFriendsFromCsv() {
+        ImportReport users = importService.importUsers(stream(
+                "email,login,name,birthday\n" +
+                "first@yandex.ru,first,\"Имя, с запятой\",1990-01-01\n" +
+                "not-an-email,second,,1991-01-01\n" +
+                "third@yandex.ru,third,,1992-01-01\n" +
+                "broken,row\n"), CSV);
+        assertThat(users.getImported()).isEqualTo(2);
+        assertThat(users.getErrors()).extracting(ImportReport.RowError::getLine).containsExactlyInAnyOrder(3L, 5L);
+        List<User> imported = userDbStorage.findAll();
+        assertThat(imported).extracting(User::getName).containsExactly("Имя, с запятой", "third");
+
+        int first = imported.get(0).getId();
+        int third = imported.get(1).getId();
+        ImportReport friends = importService.importFriendships(stream(
+                "userId,friendId\n" +
+                first + "," + third + "\n" +
+                first + "," + third + "\n" +
+                first + "," + first + "\n" +
+                first + ",999\n"), CSV);
+        assertThat(friends.getImported()).isEqualTo(1);
+        assertThat(friends.getRejected()).isEqualTo(3);
+        assertThat(friendStorage.getUserFriends(first)).extracting(User::getId).containsExactly(third);
+    }
+
+    @Test
+    @DisplayName("Импорт фильмов и лайков из NDJSON: проверка ссылок и счётчиков лайков")
+    void testImportFilmsAndLikesFromNdjson() {
+        importService.importUsers(stream(
+                "{\"email\":\"a@yandex.ru\",\"login\":\"a\",\"birthday\":\"1990-01-01\"}\n" +
+                "{\"email\":\"b@yandex.ru\",\"login\":\"b\",\"birthday\":\"1990-01-01\"}\n"), NDJSON);
+        ImportReport films = importService.importFilms(stream(
+                "{\"name\":\"Film1\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":90," +
+                        "\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":2}]}\n" +
+                "\n" +
+                "{\"name\":\"Film2\",\"description\":\"d\",\"releaseDate\":\"2001-01-01\",\"duration\":90," +
+                        "\"mpa\":{\"id\":2},\"genres\":[{\"id\":99}]}\n" +
+                "{not json}\n" +
+                "{\"name\":\"\",\"description\":\"d\",\"releaseDate\":\"2001-01-01\",\"duration\":90," +
+                        "\"mpa\":{\"id\":1}}\n" +
+                "{\"name\":\"Film3\",\"description\":\"d\",\"releaseDate\":\"2002-01-01\",\"duration\":100," +
+                        "\"mpa\":{\"id\":3}}\n"), NDJSON);
+        assertThat(films.getImported()).isEqualTo(2);
+        assertThat(films.getErrors()).extracting(ImportReport.RowError::getLine)
+                .containsExactlyInAnyOrder(3L, 4L, 5L);
+        List<Film> catalog = filmDbStorage.findAll();
+        assertThat(catalog).extracting(Film::getName).containsExactly("Film1", "Film3");
+        assertThat(catalog.get(0).getGenres()).hasSize(2);
+
+        int film1 = catalog.get(0).getId();
+        int film3 = catalog.get(1).getId();
+        List<User> users = userDbStorage.findAll();
+        int a = users.get(0).getId();
+        int b = users.get(1).getId();
+        ImportReport likes = importService.importLikes(stream(
+                "{\"filmId\":" + film3 + ",\"userId\":" + a + "}\n" +
+                "{\"filmId\":" + film3 + ",\"userId\":" + b + "}\n" +
+                "{\"filmId\":" + film3 + ",\"userId\":" + b + "}\n" +
+                "{\"filmId\":" + film1 + ",\"userId\":" + a + "}\n" +
+                "{\"filmId\":" + film1 + ",\"userId\":999}\n"), NDJSON);
+        assertThat(likes.getImported()).isEqualTo(3);
+        assertThat(likes.getRejected()).isEqualTo(2);
+        assertThat(filmDbStorage.getPopularFilms(10)).extracting(Film::getId, Film::getLikes)
+                .containsExactly(tuple(film3, 2), tuple(film1, 1));
+    }
+
+    @Test
+    @DisplayName("Импорт лайков порциями: уже записанные отметки отклоняются, индекс лайков сбрасывается один раз")
+    void testImportLikesInChunks() {
+        int a = userDbStorage.addUser(new User(null, "a@yandex.ru", "a", "A", LocalDate.parse("1990-01-01"), null))
+                .getId();
+        int b = userDbStorage.addUser(new User(null, "b@yandex.ru", "b", "B", LocalDate.parse("1990-01-01"), null))
+                .getId();
+        int film1 = filmDbStorage.addFilm(new Film(null, "Film1", "d", LocalDate.parse("2000-01-01"), 90,
+                new Mpa(1, "G"), 0)).getId();
+        int film2 = filmDbStorage.addFilm(new Film(null, "Film2", "d", LocalDate.parse("2001-01-01"), 90,
+                new Mpa(1, "G"), 0)).getId();
+        likeStorage.addLike(film1, a);
+        AtomicInteger resets = new AtomicInteger();
+        ImportStorage countingStorage = new ImportStorage() {
+            @Override
+            public void importFilms(List<ImportRow<Film>> rows) {
+                importStorage.importFilms(rows);
+            }
+
+            @Override
+            public void importUsers(List<ImportRow<User>> rows) {
+                importStorage.importUsers(rows);
+            }
+
+            @Override
+            public void importLikes(List<ImportRow<Like>> rows) {
+                importStorage.importLikes(rows);
+            }
+
+            @Override
+            public void importFriendships(List<ImportRow<Friendship>> rows) {
+                importStorage.importFriendships(rows);
+            }
+
+            @Override
+            public void likesImported() {
+                resets.incrementAndGet();
+                importStorage.likesImported();
+            }
+
+            @Override
+            public void friendshipsImported() {
+                importStorage.friendshipsImported();
+            }
+        };
+        ImportService chunked = new ImportService(countingStorage, objectMapper, validator, 2, 100);
+
+        ImportReport likes = chunked.importLikes(stream(
+                "filmId,userId\n" +
+                film1 + "," + a + "\n" +
+                film1 + "," + b + "\n" +
+                film2 + "," + a + "\n" +
+                film2 + "," + b + "\n" +
+                film2 + "," + b + "\n"), CSV);
+
+        assertThat(likes.getImported()).isEqualTo(3);
+        assertThat(likes.getErrors()).extracting(ImportReport.RowError::getLine).containsExactlyInAnyOrder(2L, 6L);
+        assertThat(resets.get()).isEqualTo(1);
+        assertThat(likeStorage.getLikes(film1)).containsExactlyInAnyOrder(a, b);
+        assertThat(filmDbStorage.getPopularFilms(10)).extracting(Film::getId, Film::getLikes)
+                .containsExactly(tuple(film1, 2), tuple(film2, 2));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.javafilmorate.integrationTest;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.metrics.SqlStatementsFilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = JavaFilmorateApplication.class, properties = "filmorate.metrics.sql-statements-header=true")
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class MetricsTest {
+    private final MockMvc mockMvc;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Вызовы JdbcTemplate замеряются по методам DAO, SQL-запросы считаются на каждый HTTP-запрос")
+    void testJdbcTimersAndStatementCounter() throws Exception {
+        /* Первый запрос загружает справочник в кэш, второй обходится без обращения к БД */
+        mockMvc.perform(get("/mpa"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementsFilter.STATEMENTS_HEADER, "1"));
+        mockMvc.perform(get("/mpa"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementsFilter.STATEMENTS_HEADER, "0"));
+
+        assertThat(meterRegistry.get("filmorate.jdbc")
+                .tags("dao", "MpaDbStorage", "method", "findAll", "outcome", "SUCCESS")
+                .timer().count()).isEqualTo(1);
+        DistributionSummary statements = meterRegistry.get("filmorate.sql.statements")
+                .tags("method", "GET", "uri", "/mpa")
+                .summary();
+        assertThat(statements.count()).isEqualTo(2);
+        assertThat(statements.totalAmount()).isEqualTo(1);
+        assertThat(meterRegistry.get("filmorate.cache.requests")
+                .tags("cache", "MPA", "result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("filmorate.cache.requests")
+                .tags("cache", "MPA", "result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("filmorate_jdbc_seconds_bucket{dao=\"MpaDbStorage\"")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("filmorate_sql_statements_bucket")))
+                .andExpect(content().string(containsString("filmorate_cache_requests_total{cache=\"MPA\"")));
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.javafilmorate.integrationTest;
+
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.LikesDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.IndexJournal;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+
+@SpringBootTest(classes = JavaFilmorateApplication.class)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class MigrationTest {
+    private final Flyway flyway;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserDbStorage userDbStorage;
+
+    @Test
+    @DisplayName("Повторный запуск миграций ничего не применяет и сохраняет данные")
+    void testRepeatedMigrateIsNoop() {
+        Assertions.assertEquals(List.of("1", "2", "3", "4", "5", "null"), versions(flyway.info().applied()));
+        User user = userDbStorage.addUser(new User(null, "user@yandex.ru", "login", "Name",
+                LocalDate.parse("1990-01-01"), null));
+
+        Assertions.assertEquals(0, flyway.migrate().migrationsExecuted, "Применены уже выполненные миграции");
+        Assertions.assertEquals("login", userDbStorage.findById(user.getId()).getLogin());
+        Assertions.assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM GENRES", Integer.class));
+        Assertions.assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM MPA", Integer.class));
+    }
+
+    @Test
+    @DisplayName("База, созданная до миграций, принимается за базовую версию без потери данных")
+    void testLegacyDatabaseIsBaselined() {
+        SingleConnectionDataSource legacy = new SingleConnectionDataSource("jdbc:h2:mem:legacy", "sa", "", true);
+        try {
+            JdbcTemplate legacyTemplate = new JdbcTemplate(legacy);
+            legacyTemplate.execute("CREATE TABLE USERS (USER_ID INTEGER GENERATED BY DEFAULT AS IDENTITY " +
+                    "PRIMARY KEY, USER_EMAIL CHARACTER VARYING(255) NOT NULL, USER_LOGIN CHARACTER VARYING(255) " +
+                    "NOT NULL, USER_NAME CHARACTER VARYING(255), USER_BIRTHDAY DATE)");
+            legacyTemplate.update("INSERT INTO USERS (USER_EMAIL, USER_LOGIN) VALUES ('old@yandex.ru', 'old')");
+            legacyTemplate.execute("CREATE TABLE GENRES (GENRE_ID INTEGER GENERATED BY DEFAULT AS IDENTITY " +
+                    "PRIMARY KEY, GENRE_NAME CHARACTER VARYING(255) NOT NULL)");
+            legacyTemplate.update("INSERT INTO GENRES (GENRE_NAME) VALUES ('Комедия')");
+            legacyTemplate.execute("CREATE TABLE MPA (MPA_ID INTEGER GENERATED BY DEFAULT AS IDENTITY " +
+                    "PRIMARY KEY, MPA_NAME VARCHAR(25) NOT NULL)");
+            legacyTemplate.update("INSERT INTO MPA (MPA_NAME) VALUES ('G')");
+            legacyTemplate.execute("CREATE TABLE FILMS (FILM_ID INTEGER GENERATED BY DEFAULT AS IDENTITY " +
+                    "PRIMARY KEY, FILM_NAME CHARACTER VARYING(255) NOT NULL, FILM_DESCRIPTION CHARACTER VARYING(255) " +
+                    "NOT NULL, FILM_RELEASE_DATE DATE NOT NULL, FILM_DURATION INTEGER NOT NULL, " +
+                    "MPA_ID INTEGER NOT NULL REFERENCES MPA (MPA_ID))");
+            legacyTemplate.update("INSERT INTO FILMS (FILM_NAME, FILM_DESCRIPTION, FILM_RELEASE_DATE, FILM_DURATION, " +
+                    "MPA_ID) VALUES ('Old', 'Description', '2000-01-01', 120, 1)");
+            legacyTemplate.execute("CREATE TABLE LIKES (ID INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "FILM_ID INTEGER NOT NULL REFERENCES FILMS(FILM_ID) ON DELETE CASCADE, " +
+                    "USER_ID INTEGER NOT NULL REFERENCES USERS(USER_ID) ON DELETE CASCADE)");
+            legacyTemplate.update("INSERT INTO LIKES (FILM_ID, USER_ID) VALUES (1, 1), (1, 1)");
+            legacyTemplate.execute("CREATE TABLE FRIENDS (ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "USER_ID INTEGER NOT NULL REFERENCES USERS(USER_ID) ON DELETE CASCADE, " +
+                    "FRIEND_ID INTEGER NOT NULL REFERENCES USERS(USER_ID) ON DELETE CASCADE)");
+            legacyTemplate.update("INSERT INTO USERS (USER_EMAIL, USER_LOGIN) VALUES ('friend@yandex.ru', 'friend')");
+            legacyTemplate.update("INSERT INTO FRIENDS (USER_ID, FRIEND_ID) VALUES (1, 2), (1, 2), (2, 1)");
+
+            Flyway.configure().configuration(flyway.getConfiguration()).dataSource(legacy).load().migrate();
+
+            Assertions.assertEquals("old", legacyTemplate.queryForObject(
+                    "SELECT USER_LOGIN FROM USERS WHERE USER_ID = 1", String.class));
+            Assertions.assertEquals(6, legacyTemplate.queryForObject("SELECT COUNT(*) FROM GENRES",
+                    Integer.class));
+            Assertions.assertEquals(1, legacyTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_NAME = 'REVIEW_VOTES'", Integer.class), "Недостающие таблицы не созданы");
+            Assertions.assertEquals(1, legacyTemplate.queryForObject("SELECT FILM_LIKES FROM FILMS", Integer.class),
+                    "Счётчик отметок не заполнен по таблице LIKES без повторов");
+            Assertions.assertEquals(1, legacyTemplate.queryForObject("SELECT COUNT(*) FROM LIKES", Integer.class),
+                    "Повторяющиеся отметки не удалены");
+            Assertions.assertEquals(2, legacyTemplate.queryForObject("SELECT COUNT(*) FROM FRIENDS", Integer.class),
+                    "Повторяющиеся строки дружбы не удалены");
+
+            LikesDbStorage likes = new LikesDbStorage(legacyTemplate, new PopularityIndex(legacyTemplate),
+                    new LikeIndex(legacyTemplate, new IndexJournal(legacyTemplate, false)));
+            likes.addLike(1, 2);
+            likes.addLike(1, 2);
+            Assertions.assertEquals(2, legacyTemplate.queryForObject("SELECT FILM_LIKES FROM FILMS", Integer.class));
+            legacyTemplate.update("INSERT INTO reviews (CONTENT, IS_POSITIVE, FILM_ID, USER_ID) " +
+                    "VALUES ('Review', TRUE, 1, 1)");
+            Assertions.assertEquals(0, legacyTemplate.queryForObject("SELECT USEFUL FROM reviews", Integer.class));
+            Assertions.assertEquals(List.of("0", "1", "2", "3", "4", "5", "null"), versions(
+                    Flyway.configure().configuration(flyway.getConfiguration()).dataSource(legacy).load()
+                            .info().applied()));
+        } finally {
+            legacy.destroy();
+        }
+    }
+
+    private static List<String> versions(MigrationInfo[] migrations) {
+        return Arrays.stream(migrations)
+                .map(migration -> String.valueOf(migration.getVersion()))
+                .collect(Collectors.toList());
+    }
+}
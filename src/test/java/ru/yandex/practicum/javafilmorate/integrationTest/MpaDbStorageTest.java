@@ -8,15 +8,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedMpaStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.ReferenceCache;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.MpaDbStorage;
+import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SpringBootTest(classes = JavaFilmorateApplication.class)
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class MpaDbStorageTest {
     private final MpaDbStorage mpaDbStorage;
+    private final CachedMpaStorage cachedMpaStorage;
 
     @Test
     @DisplayName("Проверка метода findById для Mpa")
@@ -37,4 +43,36 @@ class MpaDbStorageTest {
     void testFindAllMpa() {
         Assertions.assertEquals(5, mpaDbStorage.findAll().size(), "Количество данных не совпадает");
     }
+
+    @Test
+    @DisplayName("Проверка кэша справочника Mpa")
+    void testCachedMpa() {
+        long missesBefore = cachedMpaStorage.getCache().getMisses();
+        Assertions.assertEquals("G", cachedMpaStorage.findById(1).getName(), "Названия рейтингов не совпадают");
+        long hitsBefore = cachedMpaStorage.getCache().getHits();
+        Assertions.assertSame(cachedMpaStorage.findById(2), cachedMpaStorage.findById(2),
+                "Кэш должен возвращать общий экземпляр");
+        Assertions.assertEquals(5, cachedMpaStorage.findAll().size(), "Количество данных не совпадает");
+        Assertions.assertEquals(hitsBefore + 3, cachedMpaStorage.getCache().getHits(), "Счётчик попаданий");
+        Assertions.assertTrue(cachedMpaStorage.getCache().getMisses() <= missesBefore + 1, "Счётчик промахов");
+        Assertions.assertThrows(UnregisteredDataException.class, () -> cachedMpaStorage.findById(999));
+    }
+
+    @Test
+    @DisplayName("Отсутствующий id не перезагружает справочник")
+    void testMissingIdDoesNotReload() {
+        AtomicInteger loads = new AtomicInteger();
+        ReferenceCache<Mpa> cache = new ReferenceCache<>("MPA", () -> {
+            loads.incrementAndGet();
+            return mpaDbStorage.findAll();
+        }, Mpa::getId);
+        Assertions.assertEquals("G", cache.get(1).getName());
+        Assertions.assertNull(cache.get(999));
+        Assertions.assertNull(cache.get(999));
+        Assertions.assertEquals(1, loads.get(), "Справочник загружался повторно");
+
+        cache.invalidate();
+        Assertions.assertNull(cache.get(999));
+        Assertions.assertEquals(2, loads.get(), "После сброса справочник должен загрузиться заново");
+    }
 }
@@ -0,0 +1,285 @@
+package ru.yandex.practicum.javafilmorate.integrationTest;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.*;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedDirectorStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedGenreStorage;
+import ru.yandex.practicum.javafilmorate.storage.cache.CachedMpaStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.DirectorStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.*;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendSuggestions;
+import ru.yandex.practicum.javafilmorate.storage.index.IndexJournal;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.SearchIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.TopReviewsIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+
+/* Каждый запрос пяти DAO прогоняется через EXPLAIN: план не должен читать таблицу целиком.
+   Полный проход по индексу допустим только для упорядоченной выборки первых строк с LIMIT */
+@SpringBootTest(classes = JavaFilmorateApplication.class)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class QueryPlanTest {
+    private static final List<Class<?>> DAOS = List.of(FilmDbStorage.class, LikesDbStorage.class,
+            FriendsDbStorage.class, ReviewDbStorage.class, EventDbStorage.class);
+    /* Обращение к таблице или индексу в комментарии плана H2: PUBLIC.FILMS.tableScan - чтение таблицы целиком,
+       PUBLIC.PRIMARY_KEY_3: FILM_ID = ?1 - поиск по индексу, имя индекса без условия - проход по всему индексу */
+    private static final Pattern ACCESS = Pattern.compile("/\\* PUBLIC\\.([A-Z0-9_]+)(\\.tableScan)?( \\*/|:)");
+    private static final Pattern DELTA_TABLE = Pattern.compile("(?s).*FROM (?:FINAL|OLD) TABLE \\((.*)\\)\\s*$");
+    /* Запросы, которые читают таблицу целиком намеренно */
+    private static final Map<String, String> FULL_READS = Map.of(
+            "SELECT FILM_ID, FILM_NAME, FILM_DESCRIPTION, FILM_RELEASE_DATE, FILM_DURATION, MPA_ID, FILM_LIKES " +
+                    "FROM FILMS", "findAll отдаёт весь каталог",
+            "SELECT FILM_ID, FILM_NAME, FILM_DESCRIPTION, FILM_RELEASE_DATE, FILM_DURATION, MPA_ID, FILM_LIKES " +
+                    "FROM FILMS ORDER BY FILM_ID", "streamAll выгружает весь каталог",
+            "UPDATE FILMS AS F SET FILM_LIKES = (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID) " +
+                    "WHERE FILM_LIKES <> (SELECT COUNT(L.ID) FROM LIKES AS L WHERE L.FILM_ID = F.FILM_ID)",
+            "rebuildLikeCounters сверяет счётчики всех фильмов");
+
+    private final UserDbStorage userDbStorage;
+    private final DirectorStorage directorStorage;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Set<String>> queries = new ConcurrentHashMap<>();
+
+    @Test
+    @DisplayName("Запросы хранилищ фильмов, лайков, друзей, отзывов и событий не читают таблицы целиком")
+    void testQueriesUseIndexes() {
+        JdbcTemplate recordingTemplate = new JdbcTemplate(recordingDataSource(dataSource));
+        SearchIndex searchIndex = new SearchIndex(jdbcTemplate);
+        PopularityIndex popularityIndex = new PopularityIndex(jdbcTemplate);
+        LikeIndex likeIndex = new LikeIndex(jdbcTemplate, new IndexJournal(jdbcTemplate, false));
+        /* В памяти держится один отзыв фильма: страницы побольше читаются запросами самого хранилища */
+        TopReviewsIndex topReviews = new TopReviewsIndex(recordingTemplate, 1, 100);
+        FilmDbStorage films = new FilmDbStorage(recordingTemplate,
+                new CachedMpaStorage(new MpaDbStorage(jdbcTemplate)),
+                new CachedGenreStorage(new GenreDbStorage(jdbcTemplate)),
+                new CachedDirectorStorage(new DirectorDbStorage(jdbcTemplate, searchIndex)),
+                popularityIndex, searchIndex, likeIndex, topReviews);
+        LikesDbStorage likes = new LikesDbStorage(recordingTemplate, popularityIndex, likeIndex);
+        FriendIndex friendIndex = new FriendIndex(jdbcTemplate, new IndexJournal(jdbcTemplate, false));
+        FriendsDbStorage friends = new FriendsDbStorage(recordingTemplate, friendIndex,
+                new FriendSuggestions(friendIndex, 10, 10, 10, 100));
+        ReviewDbStorage reviews = new ReviewDbStorage(recordingTemplate, topReviews);
+        EventDbStorage events = new EventDbStorage(recordingTemplate);
+
+        int first = userDbStorage.addUser(new User(null, "first@yandex.ru", "first", "First",
+                LocalDate.parse("1980-01-01"), null)).getId();
+        int second = userDbStorage.addUser(new User(null, "second@yandex.ru", "second", "Second",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        int third = userDbStorage.addUser(new User(null, "third@yandex.ru", "third", "Third",
+                LocalDate.parse("2000-01-01"), null)).getId();
+        Director director = directorStorage.addDirector(new Director(null, "Director"));
+
+        Film film = new Film(null, "Film", "Description", LocalDate.parse("2000-01-01"), 120, new Mpa(1, "G"), 0);
+        film.setGenres(new HashSet<>(List.of(new Genre(1, "Комедия"))));
+        film.setDirectors(new HashSet<>(List.of(director)));
+        int filmId = films.addFilm(film).getId();
+        Film other = films.addFilm(new Film(null, "Other", "Description", LocalDate.parse("2010-01-01"), 90,
+                new Mpa(2, "PG"), 0));
+        film.setGenres(new HashSet<>(List.of(new Genre(2, "Драма"))));
+        films.updateFilm(film);
+        films.findAll();
+        films.findAll(new Cursor(0, filmId), 10);
+        films.streamAll(f -> { });
+        films.findById(filmId);
+        films.findByIds(List.of(filmId, other.getId()));
+
+        likes.addLike(filmId, first);
+        likes.addLike(filmId, second);
+        likes.addLike(other.getId(), first);
+        likes.getLikes(filmId);
+        likes.rebuildLikeCounters();
+        films.getPopularFilms(10);
+        films.getPopularByGenre(10, 2);
+        films.getPopularByYear(10, 2000);
+        films.getPopularByGenreAndYear(10, 2, 2000);
+        films.getPopular(null, null, new Cursor(2, filmId), 10);
+        films.searchBySubstring("fil", "title,director");
+        films.findDirectorFilmsByYearOrLikes(director.getId(), "year");
+        films.findDirectorFilmsByYearOrLikes(director.getId(), "likes");
+        films.commonFilms(first, second);
+
+        friends.addFriend(first, second);
+        friends.addFriend(first, third);
+        friends.addFriend(second, third);
+        friends.getUserFriends(first);
+        friends.getCommonsFriends(first, second);
+        friends.getFriendSuggestions(first, 10);
+        friends.deleteFriend(first, third);
+
+        Review review = reviews.add(new Review(0, "Content", true, first, filmId, 0));
+        reviews.add(new Review(0, "Other", false, second, other.getId(), 0));
+        reviews.findReviewsByFilmID(filmId, null, 1);
+        reviews.update(new Review(review.getReviewId(), "Updated", false, first, filmId, 0));
+        reviews.setVote(review.getReviewId(), second, 1);
+        reviews.removeVote(review.getReviewId(), second, 1);
+        reviews.setVote(review.getReviewId(), third, 1);
+        reviews.findAllReviews(null, 10);
+        reviews.findAllReviews(new Cursor(1, review.getReviewId()), 10);
+        reviews.findReviewsByFilmID(filmId, null, 10);
+        reviews.findReviewsByFilmID(filmId, new Cursor(1, review.getReviewId()), 10);
+        reviews.findReviewByID(review.getReviewId());
+
+        events.add(new Event(EventType.LIKE, OperationType.ADD, filmId, first));
+        events.addAll(List.of(new Event(EventType.FRIEND, OperationType.ADD, second, first),
+                new Event(EventType.REVIEW, OperationType.ADD, review.getReviewId(), first)));
+        events.getUserEvents(first);
+        events.getUserEvents(first, null, 10);
+        events.getUserEvents(first, new Cursor(0, 3), 10);
+
+        reviews.removeReview(review.getReviewId());
+        likes.deleteLike(filmId, second);
+        events.deleteUserEvents(first);
+        films.deleteFilm(other.getId());
+
+        Set<String> uncovered = new TreeSet<>();
+        Set<String> covered = queries.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+        for (Class<?> dao : DAOS) {
+            for (Method method : dao.getDeclaredMethods()) {
+                String name = dao.getSimpleName() + "." + method.getName();
+                if (Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())
+                        && !method.isSynthetic() && !covered.contains(name)) {
+                    uncovered.add(name);
+                }
+            }
+        }
+        Assertions.assertTrue(uncovered.isEmpty(), "Методы без проверенных запросов: " + uncovered);
+
+        List<String> violations = new ArrayList<>();
+        queries.forEach((sql, origins) -> {
+            if (FULL_READS.containsKey(sql)) {
+                return;
+            }
+            String plan = explain(sql);
+            Matcher deltaTable = DELTA_TABLE.matcher(sql);
+            if (deltaTable.matches()) {
+                plan += "\n" + explain(deltaTable.group(1));
+            }
+            List<String> scans = fullScans(plan);
+            if (!scans.isEmpty()) {
+                violations.add(origins + ": " + sql + " -> " + scans + "\n" + plan);
+            }
+        });
+        Assertions.assertTrue(violations.isEmpty(), "Запросы читают таблицы целиком:\n" +
+                String.join("\n\n", violations));
+    }
+
+    @Test
+    @DisplayName("Проверка распознавания полного чтения таблицы в плане")
+    void testFullScanDetection() {
+        Assertions.assertEquals(List.of("FILMS"), fullScans(explain("SELECT * FROM FILMS WHERE FILM_NAME = ?")));
+        Assertions.assertEquals(List.of(), fullScans(explain("SELECT * FROM FILMS WHERE FILM_ID = ?")));
+        Assertions.assertEquals(List.of(), fullScans(explain("SELECT * FROM FILMS ORDER BY FILM_ID LIMIT ?")));
+        Assertions.assertFalse(fullScans(explain("SELECT * FROM FILMS ORDER BY FILM_ID")).isEmpty());
+    }
+
+    /* Имена таблиц, прочитанных целиком, и индексов, пройденных без условия вне выборки первых строк */
+    private static List<String> fullScans(String plan) {
+        boolean topN = plan.contains("index sorted") && plan.contains("FETCH FIRST");
+        List<String> scans = new ArrayList<>();
+        Matcher access = ACCESS.matcher(plan);
+        while (access.find()) {
+            if (access.group(2) != null || (access.group(3).equals(" */") && !topN)) {
+                scans.add(access.group(1));
+            }
+        }
+        return scans;
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                int parameters = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameters; i++) {
+                    statement.setNull(i, Types.NULL);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    return rs.getString(1);
+                }
+            }
+        });
+    }
+
+    /* Запоминает текст каждого запроса и метод DAO, из которого он выполнен */
+    private void record(String sql) {
+        Set<String> names = DAOS.stream().map(Class::getName).collect(Collectors.toSet());
+        List<StackWalker.StackFrame> frames = StackWalker.getInstance().walk(stream -> stream
+                .filter(frame -> names.contains(frame.getClassName()) && !frame.getMethodName().startsWith("lambda$"))
+                .collect(Collectors.toList()));
+        if (frames.isEmpty()) {
+            return;
+        }
+        StackWalker.StackFrame origin = frames.get(frames.size() - 1);
+        String className = origin.getClassName();
+        queries.computeIfAbsent(sql.trim(), key -> ConcurrentHashMap.newKeySet())
+                .add(className.substring(className.lastIndexOf('.') + 1) + "." + origin.getMethodName());
+    }
+
+    private DataSource recordingDataSource(DataSource dataSource) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if (method.getName().equals("prepareStatement")) {
+                                record((String) args[0]);
+                            }
+                            Object result = invoke(method, connection, args);
+                            return method.getName().equals("createStatement")
+                                    ? recordingStatement((Statement) result) : result;
+                        });
+            }
+        };
+    }
+
+    private Statement recordingStatement(Statement statement) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    if ((method.getName().startsWith("execute") || method.getName().equals("addBatch"))
+                            && args != null && args[0] instanceof String) {
+                        record((String) args[0]);
+                    }
+                    return invoke(method, statement, args);
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -7,12 +7,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.javafilmorate.model.Film;
 import ru.yandex.practicum.javafilmorate.model.Mpa;
 import ru.yandex.practicum.javafilmorate.model.Review;
 import ru.yandex.practicum.javafilmorate.model.User;
 import ru.yandex.practicum.javafilmorate.storage.dao.ReviewStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.*;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.IndexJournal;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.PopularityIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.SearchIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.TopReviewsIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
 import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.time.LocalDate;
@@ -26,17 +35,25 @@ import static org.junit.jupiter.api.Assertions.*;
 public class ReviewDbStorageTest {
     private final JdbcTemplate jdbcTemplate;
     private ReviewStorage reviewStorage;
+    private TopReviewsIndex topReviews;
+    private FilmDbStorage filmStorage;
     private int film1Id, film2Id;
     private int user1Id, user2Id, user3Id;
 
     @BeforeEach
     void beforeEach() {
-        reviewStorage = new ReviewDbStorage(jdbcTemplate);
+        topReviews = new TopReviewsIndex(jdbcTemplate, 3, 100);
+        reviewStorage = new ReviewDbStorage(jdbcTemplate, topReviews);
         GenreDbStorage genreStorage = new GenreDbStorage(jdbcTemplate);
         MpaDbStorage mpaDbStorage = new MpaDbStorage(jdbcTemplate);
-        DirectorDbStorage directorDbStorage = new DirectorDbStorage(jdbcTemplate);
-        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate, mpaDbStorage, genreStorage, directorDbStorage);
-        UserDbStorage userDbStorage = new UserDbStorage(jdbcTemplate);
+        SearchIndex searchIndex = new SearchIndex(jdbcTemplate);
+        DirectorDbStorage directorDbStorage = new DirectorDbStorage(jdbcTemplate, searchIndex);
+        PopularityIndex popularityIndex = new PopularityIndex(jdbcTemplate);
+        LikeIndex likeIndex = new LikeIndex(jdbcTemplate, new IndexJournal(jdbcTemplate, false));
+        filmStorage = new FilmDbStorage(jdbcTemplate, mpaDbStorage, genreStorage, directorDbStorage,
+                popularityIndex, searchIndex, likeIndex, topReviews);
+        UserDbStorage userDbStorage = new UserDbStorage(jdbcTemplate, popularityIndex, likeIndex, topReviews,
+                new FriendIndex(jdbcTemplate, new IndexJournal(jdbcTemplate, false)));
         Film film1 = new Film(null, "Film1", "Description1", LocalDate.parse("1970-01-01"),
                 140, new Mpa(1, "G"), 0);
         filmStorage.addFilm(film1);
@@ -73,14 +90,14 @@ public class ReviewDbStorageTest {
         int review2Id = reviewStorage.add(review2).getReviewId();
         Review review3 = new Review(0, "ReviewUser1Film2", false, user1Id, film2Id, 0);
         int review3Id = reviewStorage.add(review3).getReviewId();
-        List<Review> reviewList = reviewStorage.findAllReviews(10);
+        List<Review> reviewList = reviewStorage.findAllReviews(null, 10);
         assertThat(reviewList.size()).isEqualTo(3);
-        reviewList = reviewStorage.findReviewsByFilmID(film1Id, 10);
+        reviewList = reviewStorage.findReviewsByFilmID(film1Id, null, 10);
         assertThat(reviewList.size()).isEqualTo(2);
-        reviewList = reviewStorage.findReviewsByFilmID(film2Id, 10);
+        reviewList = reviewStorage.findReviewsByFilmID(film2Id, null, 10);
         assertThat(reviewList.size()).isEqualTo(1);
         /* Получаем отзывы с ограничением количества */
-        reviewList = reviewStorage.findAllReviews(2);
+        reviewList = reviewStorage.findAllReviews(null, 2);
         assertThat(reviewList.size()).isEqualTo(2);
         /* Меняем контекст и оценку фильма в отзыве. Данные о пользователе, фильме и полезности могут быть любые - ни на что не влияют */
         Review updatedReview = new Review(review1Id, "updatedReviewContext", true, 9999, 8888, 123);
@@ -103,4 +120,88 @@ public class ReviewDbStorageTest {
                 UnregisteredDataException.class, () -> reviewStorage.add(reviewFromNotExistFilm));
         assertEquals("Определен несуществующий пользователь или фильм", exceptionNotFilm.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReviewsKeysetPagination() {
+        /* Отзывы упорядочены по полезности по убыванию, при равенстве - по id */
+        Review review1 = reviewStorage.add(new Review(0, "Review1", true, user1Id, film1Id, 0));
+        Review review2 = reviewStorage.add(new Review(0, "Review2", true, user2Id, film1Id, 0));
+        Review review3 = reviewStorage.add(new Review(0, "Review3", true, user3Id, film1Id, 0));
+        Review review4 = reviewStorage.add(new Review(0, "Review4", true, user1Id, film2Id, 0));
+        reviewStorage.setVote(review3.getReviewId(), user1Id, 1);
+        reviewStorage.setVote(review3.getReviewId(), user2Id, 1);
+        reviewStorage.setVote(review1.getReviewId(), user2Id, -1);
+
+        List<Review> firstPage = reviewStorage.findAllReviews(null, 2);
+        assertThat(firstPage).extracting(Review::getReviewId)
+                .containsExactly(review3.getReviewId(), review2.getReviewId());
+        Review last = firstPage.get(1);
+        List<Review> secondPage = reviewStorage.findAllReviews(new Cursor(last.getUseful(), last.getReviewId()), 2);
+        assertThat(secondPage).extracting(Review::getReviewId)
+                .containsExactly(review4.getReviewId(), review1.getReviewId());
+
+        Review first = firstPage.get(0);
+        List<Review> filmPage = reviewStorage.findReviewsByFilmID(film1Id,
+                new Cursor(first.getUseful(), first.getReviewId()), 10);
+        assertThat(filmPage).extracting(Review::getReviewId)
+                .containsExactly(review2.getReviewId(), review1.getReviewId());
+    }
+
+    @Test
+    public void testReviewVotesAreIdempotent() {
+        int reviewId = reviewStorage.add(new Review(0, "Review", true, user1Id, film1Id, 0)).getReviewId();
+        reviewStorage.setVote(reviewId, user2Id, 1);
+        reviewStorage.setVote(reviewId, user2Id, 1);
+        reviewStorage.setVote(reviewId, user3Id, 1);
+        assertEquals(2, reviewStorage.findReviewByID(reviewId).getUseful(), "Повторный лайк не учитывается");
+
+        reviewStorage.setVote(reviewId, user3Id, -1);
+        assertEquals(0, reviewStorage.findReviewByID(reviewId).getUseful(), "Лайк заменяется дизлайком");
+
+        reviewStorage.removeVote(reviewId, user3Id, 1);
+        assertEquals(0, reviewStorage.findReviewByID(reviewId).getUseful(), "Удаление чужого типа голоса");
+        reviewStorage.removeVote(reviewId, user3Id, -1);
+        reviewStorage.removeVote(reviewId, user3Id, -1);
+        assertEquals(1, reviewStorage.findReviewByID(reviewId).getUseful(), "Повторное удаление не учитывается");
+
+        assertThrows(UnregisteredDataException.class, () -> reviewStorage.setVote(999, user2Id, 1));
+        assertThrows(UnregisteredDataException.class, () -> reviewStorage.removeVote(999, user2Id, 1));
+    }
+
+    /* Внутри транзакции список отзывов читается из БД, поэтому кэш проверяется в режиме автофиксации */
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Test
+    public void testTopReviewsCacheFollowsWrites() {
+        /* В памяти держатся три самых полезных отзыва фильма */
+        Review review1 = reviewStorage.add(new Review(0, "Review1", true, user1Id, film1Id, 0));
+        Review review2 = reviewStorage.add(new Review(0, "Review2", true, user2Id, film1Id, 0));
+        Review review3 = reviewStorage.add(new Review(0, "Review3", true, user3Id, film1Id, 0));
+        Review review4 = reviewStorage.add(new Review(0, "Review4", false, user1Id, film1Id, 0));
+        assertThat(reviewStorage.findReviewsByFilmID(film1Id, null, 3)).extracting(Review::getReviewId)
+                .containsExactly(review1.getReviewId(), review2.getReviewId(), review3.getReviewId());
+
+        /* Отзыв за пределами списка поднимается голосами наверх, лишний отзыв вытесняется */
+        reviewStorage.setVote(review4.getReviewId(), user2Id, 1);
+        reviewStorage.setVote(review4.getReviewId(), user3Id, 1);
+        reviewStorage.setVote(review1.getReviewId(), user2Id, -1);
+        List<Review> top = reviewStorage.findReviewsByFilmID(film1Id, null, 3);
+        assertThat(top).extracting(Review::getReviewId)
+                .containsExactly(review4.getReviewId(), review2.getReviewId(), review3.getReviewId());
+        assertEquals(2, top.get(0).getUseful());
+
+        /* Изменение текста и удаление отзыва сразу видны в списке, страница за его пределами читается из БД */
+        reviewStorage.update(new Review(review2.getReviewId(), "Updated", false, user2Id, film1Id, 0));
+        reviewStorage.removeReview(review3.getReviewId());
+        assertThat(reviewStorage.findReviewsByFilmID(film1Id, null, 2)).extracting(Review::getContent)
+                .containsExactly("Review4", "Updated");
+        Review last = reviewStorage.findReviewByID(review2.getReviewId());
+        assertThat(reviewStorage.findReviewsByFilmID(film1Id, new Cursor(last.getUseful(), last.getReviewId()), 3))
+                .extracting(Review::getReviewId).containsExactly(review1.getReviewId());
+        assertEquals(3, topReviews.getHits());
+
+        /* Отзывы удалённого фильма не остаются в памяти */
+        filmStorage.deleteFilm(film1Id);
+        assertThat(reviewStorage.findReviewsByFilmID(film1Id, null, 3)).isEmpty();
+    }
+}
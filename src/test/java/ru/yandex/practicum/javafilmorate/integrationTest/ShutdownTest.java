@@ -0,0 +1,94 @@
+package ru.yandex.practicum.javafilmorate.integrationTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.Event;
+import ru.yandex.practicum.javafilmorate.model.EventType;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.model.OperationType;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.service.EventService;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.LikesDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Приложение на файловой базе с настройками application.properties: остановка контекста должна успеть
+   дописать всё в базу до её закрытия */
+class ShutdownTest {
+    private static final Path DIRECTORY = Path.of("target/shutdown-test");
+    private static final Path SNAPSHOT = DIRECTORY.resolve("indexes.snapshot");
+
+    @BeforeEach
+    void clean() throws IOException {
+        FileSystemUtils.deleteRecursively(DIRECTORY);
+    }
+
+    @Test
+    @DisplayName("Снимок индексов записывается при остановке приложения")
+    void testSnapshotIsWrittenOnShutdown() {
+        ConfigurableApplicationContext context = start();
+        int userId = context.getBean(UserDbStorage.class).addUser(new User(null, "user@yandex.ru", "user", "User",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        int filmId = context.getBean(FilmDbStorage.class).addFilm(new Film(null, "Film", "Description",
+                LocalDate.parse("2000-01-01"), 120, new Mpa(1, "G"), 0)).getId();
+        context.getBean(LikesDbStorage.class).addLike(filmId, userId);
+        Assertions.assertFalse(Files.exists(SNAPSHOT), "Снимок записан раньше остановки");
+
+        context.close();
+
+        Assertions.assertTrue(Files.exists(SNAPSHOT), "Снимок индексов не записан при остановке");
+    }
+
+    @Test
+    @DisplayName("События из очереди асинхронной записи дописываются в базу при остановке приложения")
+    void testQueuedEventsAreWrittenOnShutdown() {
+        /* Длинное окно держит события в очереди писателя до остановки */
+        ConfigurableApplicationContext context = start("--filmorate.events.batch-size=100000",
+                "--filmorate.events.flush-window-ms=60000");
+        int userId = context.getBean(UserDbStorage.class).addUser(new User(null, "user@yandex.ru", "user", "User",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        EventService eventService = context.getBean(EventService.class);
+        for (int i = 0; i < 1000; i++) {
+            eventService.add(new Event(EventType.LIKE, OperationType.ADD, i, userId));
+        }
+
+        context.close();
+
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:file:./" + DIRECTORY.resolve("filmorate"), "sa", "password", true);
+        try {
+            Assertions.assertEquals(1000, new JdbcTemplate(dataSource).queryForObject(
+                    "SELECT COUNT(*) FROM EVENTS WHERE USER_ID = ?", Integer.class, userId),
+                    "Принятые события потеряны при остановке");
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>(List.of("--filmorate.db.path=./" + DIRECTORY.resolve("filmorate"),
+                "--filmorate.snapshots.path=" + SNAPSHOT,
+                "--filmorate.snapshots.interval-ms=3600000"));
+        args.addAll(List.of(properties));
+        return new SpringApplicationBuilder(JavaFilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+}
@@ -19,24 +19,36 @@ import ru.yandex.practicum.javafilmorate.storage.dao.FriendStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.LikeStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
 import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendIndex;
+import ru.yandex.practicum.javafilmorate.storage.index.FriendSuggestions;
+import ru.yandex.practicum.javafilmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.javafilmorate.utils.Cursor;
+import ru.yandex.practicum.javafilmorate.utils.InvalidDataException;
+import ru.yandex.practicum.javafilmorate.utils.Pagination;
+import ru.yandex.practicum.javafilmorate.utils.UnregisteredDataException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
 
 @SpringBootTest(classes = JavaFilmorateApplication.class)
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
 class UserDbStorageTest {
     private final FilmDbStorage filmDbStorage;
     private final UserDbStorage userDbStorage;
     private final FriendStorage friendStorage;
     private final EventService eventService;
     private final LikeStorage likeStorage;
+    private final Pagination pagination;
+    private final LikeIndex likeIndex;
+    private final FriendIndex friendIndex;
+    private final FriendSuggestions friendSuggestions;
     private final User firstUser = new User(1, "email@yandex.ru", "Login1", "Name1", LocalDate.parse("1970-01-01"), null);
     private final User secontUser = new User(1, "email@gmail.com", "Login2", "Name2", LocalDate.parse("1980-01-01"), null);
     private final User thirdUser = new User(3, "email@gmail.com", "Login3", "Name3", LocalDate.parse("1990-01-01"), null);
@@ -74,6 +86,16 @@ class UserDbStorageTest {
         assertEquals(3, currentList.size(), "Количество пользователей не совпадает");
     }
 
+    @Test
+    @DisplayName("Постраничная выдача пользователей по курсору")
+    void testFindAllPage() {
+        List<User> firstPage = userDbStorage.findAll(null, 2);
+        assertEquals(List.of(firstUser, secontUser), firstPage, "Первая страница пользователей");
+        User last = firstPage.get(1);
+        assertEquals(List.of(thirdUser), userDbStorage.findAll(new Cursor(last.getId(), last.getId()), 2),
+                "Вторая страница пользователей");
+    }
+
     @Test
     @DisplayName("Проверка метода deleteUser")
     void testDeleteUser() {
@@ -86,11 +108,11 @@ class UserDbStorageTest {
         Assertions.assertArrayEquals(expect, current.toArray(), "Удален не тот user.");
     }
 
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
     @Test
     @DisplayName("Проверка метода findSimilarUserId в UserService")
     void findRecommendationsForUserTest() {
-        UserService userService = new UserService(userDbStorage, filmDbStorage, friendStorage, eventService);
+        UserService userService = new UserService(userDbStorage, filmDbStorage, friendStorage, eventService,
+                pagination, likeIndex);
 
         Film film1 = new Film(null, "Film1", "Description1", LocalDate.parse("1970-01-01"),
                 140, new Mpa(1, "G"), 0);
@@ -133,4 +155,134 @@ class UserDbStorageTest {
         assertThat(films.get(0).getId()).isEqualTo(3);
         assertThat(films.get(1).getId()).isEqualTo(5);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Рекомендации по нескольким похожим пользователям")
+    void findRecommendationsBySeveralSimilarUsersTest() {
+        List<Integer> filmIds = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Film film = new Film(null, "Film" + i, "Description" + i, LocalDate.parse("1980-01-01"),
+                    100, new Mpa(1, "G"), 0);
+            filmDbStorage.addFilm(film);
+            filmIds.add(film.getId());
+        }
+        int user1Id = firstUser.getId();
+        int user2Id = secontUser.getId();
+        int user3Id = thirdUser.getId();
+        likeStorage.addLike(filmIds.get(0), user1Id);
+        likeStorage.addLike(filmIds.get(1), user1Id);
+
+        likeStorage.addLike(filmIds.get(0), user2Id);
+        likeStorage.addLike(filmIds.get(1), user2Id);
+        likeStorage.addLike(filmIds.get(4), user2Id);
+
+        likeStorage.addLike(filmIds.get(0), user3Id);
+        likeStorage.addLike(filmIds.get(2), user3Id);
+        likeStorage.addLike(filmIds.get(4), user3Id);
+
+        assertEquals(List.of(new LikeIndex.Similarity(user2Id, 2), new LikeIndex.Similarity(user3Id, 1)),
+                likeIndex.findSimilarUsers(user1Id, 5), "Похожие пользователи по числу общих лайков");
+        UserService userService = new UserService(userDbStorage, filmDbStorage, friendStorage, eventService,
+                pagination, likeIndex);
+        /* Фильм 5 лайкнули оба похожих пользователя, поэтому он идёт первым */
+        assertThat(userService.findRecommendationsForUser(user1Id, 2)).extracting(Film::getId)
+                .containsExactly(filmIds.get(4), filmIds.get(2));
+
+        likeStorage.deleteLike(filmIds.get(1), user2Id);
+        userDbStorage.deleteUser(user3Id);
+        assertEquals(List.of(new LikeIndex.Similarity(user2Id, 1)), likeIndex.findSimilarUsers(user1Id, 5),
+                "Индекс должен учитывать удаление лайка и пользователя");
+    }
+
+    @Test
+    @DisplayName("Друзья и общие друзья из графа дружбы")
+    void testFriendsFromGraph() {
+        int user1Id = firstUser.getId();
+        int user2Id = secontUser.getId();
+        int user3Id = thirdUser.getId();
+        int user4Id = userDbStorage.addUser(new User(null, "fourth@yandex.ru", "Login4", "Name4",
+                LocalDate.parse("2000-01-01"), null)).getId();
+        friendStorage.addFriend(user1Id, user4Id);
+        friendStorage.addFriend(user1Id, user3Id);
+        friendStorage.addFriend(user1Id, user3Id);
+        friendStorage.addFriend(user2Id, user3Id);
+        friendStorage.addFriend(user2Id, user4Id);
+
+        /* Повторный запрос дружбы не дублирует друга, списки идут по возрастанию id */
+        assertThat(friendStorage.getUserFriends(user1Id)).extracting(User::getId).containsExactly(user3Id, user4Id);
+        assertThat(friendStorage.getUserFriends(user3Id)).isEmpty();
+        assertThat(friendStorage.getCommonsFriends(user1Id, user2Id)).extracting(User::getId)
+                .containsExactly(user3Id, user4Id);
+        assertThat(friendStorage.getCommonsFriends(user1Id, user3Id)).isEmpty();
+
+        friendStorage.deleteFriend(user2Id, user4Id);
+        userDbStorage.deleteUser(user3Id);
+        assertThat(friendStorage.getCommonsFriends(user1Id, user2Id)).isEmpty();
+        assertThat(friendStorage.getUserFriends(user1Id)).extracting(User::getId).containsExactly(user4Id);
+        Assertions.assertThrows(UnregisteredDataException.class, () -> friendStorage.getUserFriends(user3Id),
+                "Друзья удалённого пользователя");
+        Assertions.assertThrows(UnregisteredDataException.class,
+                () -> friendStorage.getCommonsFriends(user1Id, user3Id), "Общие друзья с удалённым пользователем");
+    }
+
+    @Test
+    @DisplayName("Рекомендации друзей по числу общих друзей")
+    void testFriendSuggestions() {
+        int user1Id = firstUser.getId();
+        int user2Id = secontUser.getId();
+        int user3Id = thirdUser.getId();
+        int user4Id = addUser("Login4");
+        int user5Id = addUser("Login5");
+        UserService userService = new UserService(userDbStorage, filmDbStorage, friendStorage, eventService,
+                pagination, likeIndex);
+        userService.addFriend(user1Id, user2Id);
+        userService.addFriend(user1Id, user3Id);
+        userService.addFriend(user2Id, user1Id);
+        userService.addFriend(user2Id, user4Id);
+        userService.addFriend(user2Id, user5Id);
+        userService.addFriend(user3Id, user4Id);
+
+        /* Себя и уже добавленных друзей не рекомендуем, user4 - общий друг двух друзей */
+        assertThat(userService.getFriendSuggestions(user1Id, 10)).extracting(User::getId)
+                .containsExactly(user4Id, user5Id);
+        long hits = friendSuggestions.getHits();
+        assertThat(userService.getFriendSuggestions(user1Id, 1)).extracting(User::getId).containsExactly(user4Id);
+        assertEquals(hits + 1, friendSuggestions.getHits(), "Повторный запрос должен отдаваться из кэша");
+
+        /* Изменение у друга пользователя видно без явного сброса его рекомендаций */
+        userService.addFriend(user3Id, user5Id);
+        assertThat(userService.getFriendSuggestions(user1Id, 10)).extracting(User::getId)
+                .containsExactly(user4Id, user5Id);
+        userService.deleteFriend(user2Id, user4Id);
+        assertThat(userService.getFriendSuggestions(user1Id, 10)).extracting(User::getId)
+                .containsExactly(user5Id, user4Id);
+        userService.addFriend(user1Id, user5Id);
+        assertThat(userService.getFriendSuggestions(user1Id, 10)).extracting(User::getId)
+                .containsExactly(user4Id);
+        userDbStorage.deleteUser(user4Id);
+        assertThat(userService.getFriendSuggestions(user1Id, 10)).isEmpty();
+
+        /* Друг с числом друзей больше предела пропускается целиком */
+        FriendSuggestions capped = new FriendSuggestions(friendIndex, 10, 10, 2, 100);
+        int user6Id = addUser("Login6");
+        userService.addFriend(user2Id, user6Id);
+        userService.addFriend(user3Id, user6Id);
+        userService.deleteFriend(user3Id, user5Id);
+        userService.deleteFriend(user1Id, user5Id);
+        assertThat(friendSuggestions.suggest(user1Id, 10)).containsExactly(user6Id, user5Id);
+        assertThat(capped.suggest(user1Id, 10)).containsExactly(user6Id);
+
+        /* Обход останавливается на друге, чей список не помещается в предел просмотренных записей дружбы */
+        FriendSuggestions edgeCapped = new FriendSuggestions(friendIndex, 10, 10, 10, 3);
+        assertThat(edgeCapped.suggest(user1Id, 10)).containsExactly(user5Id, user6Id);
+
+        Assertions.assertThrows(InvalidDataException.class, () -> userService.getFriendSuggestions(user1Id, 0));
+        Assertions.assertThrows(UnregisteredDataException.class,
+                () -> userService.getFriendSuggestions(user4Id, 10), "Рекомендации удалённому пользователю");
+    }
+
+    private int addUser(String login) {
+        return userDbStorage.addUser(new User(null, login.toLowerCase() + "@yandex.ru", login, login,
+                LocalDate.parse("2000-01-01"), null)).getId();
+    }
+}
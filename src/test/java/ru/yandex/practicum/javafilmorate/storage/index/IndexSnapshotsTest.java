@@ -0,0 +1,145 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FriendsDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.LikesDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+
+@SpringBootTest(classes = JavaFilmorateApplication.class, properties = {
+        "filmorate.snapshots.enabled=true",
+        "filmorate.snapshots.path=target/index-snapshots-test/indexes.snapshot",
+        "filmorate.snapshots.interval-ms=3600000"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class IndexSnapshotsTest {
+    private static final Path PATH = Path.of("target/index-snapshots-test/indexes.snapshot");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserDbStorage userDbStorage;
+    private final FilmDbStorage filmDbStorage;
+    private final LikesDbStorage likesDbStorage;
+    private final FriendsDbStorage friendsDbStorage;
+    private final LikeIndex likeIndex;
+    private final FriendIndex friendIndex;
+    private final IndexJournal journal;
+    private final IndexSnapshots snapshots;
+    private int first;
+    private int second;
+    private int third;
+    private int film;
+    private int other;
+
+    @BeforeEach
+    void createData() {
+        first = addUser("first");
+        second = addUser("second");
+        third = addUser("third");
+        film = addFilm("Film");
+        other = addFilm("Other");
+        likesDbStorage.addLike(film, first);
+        likesDbStorage.addLike(film, second);
+        likesDbStorage.addLike(other, first);
+        friendsDbStorage.addFriend(first, second);
+        friendsDbStorage.addFriend(first, third);
+        friendsDbStorage.addFriend(second, third);
+    }
+
+    @Test
+    @DisplayName("Индекс лайков восстанавливается из снимка и дочитывает журнал после него")
+    void testRestoreReplaysJournal() throws Exception {
+        Assertions.assertTrue(snapshots.write(), "Снимок не записан");
+        likesDbStorage.addLike(other, third);
+        likesDbStorage.deleteLike(film, first);
+        int deleted = addFilm("Deleted");
+        likesDbStorage.addLike(deleted, third);
+        filmDbStorage.deleteFilm(deleted);
+        userDbStorage.deleteUser(second);
+
+        LikeIndex restored = new LikeIndex(jdbcTemplate, journal);
+        Assertions.assertEquals(1, restore(restored), "Индекс не восстановлен из снимка");
+        Assertions.assertEquals(List.of(), restored.usersWhoLiked(film));
+        Assertions.assertEquals(List.of(first, third), restored.usersWhoLiked(other));
+        Assertions.assertEquals(List.of(), restored.usersWhoLiked(deleted));
+        Assertions.assertEquals(likeIndex.commonFilms(first, third), restored.commonFilms(first, third));
+
+        Assertions.assertTrue(snapshots.write(), "Повторный снимок не записан");
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INDEX_CHANGES", Integer.class),
+                "Журнал, покрытый снимком, не очищен");
+    }
+
+    @Test
+    @DisplayName("После сброса индекса или очистки журнала снимок не используется")
+    void testStaleSnapshotIsIgnored() throws Exception {
+        Assertions.assertTrue(snapshots.write(), "Снимок не записан");
+        likeIndex.invalidate();
+        likesDbStorage.addLike(other, third);
+
+        LikeIndex reloaded = new LikeIndex(jdbcTemplate, journal);
+        Assertions.assertEquals(0, restore(reloaded), "Сброшенный индекс восстановлен из снимка");
+        Assertions.assertEquals(List.of(first, third), reloaded.usersWhoLiked(other));
+
+        Assertions.assertTrue(snapshots.write(), "Снимок не записан");
+        journal.clear();
+        Assertions.assertEquals(0, restore(new LikeIndex(jdbcTemplate, journal)),
+                "Снимок без отметки в журнале восстановлен");
+    }
+
+    @Test
+    @DisplayName("Граф дружбы восстанавливается из снимка и дочитывает журнал после него")
+    void testFriendsRestoreReplaysJournal() throws Exception {
+        Assertions.assertTrue(snapshots.write(), "Снимок не записан");
+        int fourth = addUser("fourth");
+        friendsDbStorage.addFriend(first, fourth);
+        friendsDbStorage.addFriend(third, first);
+        friendsDbStorage.deleteFriend(first, third);
+        userDbStorage.deleteUser(second);
+
+        FriendIndex restored = new FriendIndex(jdbcTemplate, journal);
+        Assertions.assertEquals(1, restore(restored), "Граф дружбы не восстановлен из снимка");
+        Assertions.assertArrayEquals(new int[]{fourth}, restored.friends(first));
+        Assertions.assertArrayEquals(new int[]{first}, restored.friends(third));
+        Assertions.assertArrayEquals(new int[0], restored.friends(second));
+        Assertions.assertArrayEquals(friendIndex.friends(first), restored.friends(first));
+
+        friendIndex.invalidate();
+        Assertions.assertTrue(snapshots.write(), "Снимок не записан");
+        friendIndex.invalidate();
+        Assertions.assertEquals(0, restore(new FriendIndex(jdbcTemplate, journal)),
+                "Сброшенный граф восстановлен из снимка");
+    }
+
+    private int restore(SnapshotSection index) {
+        return new IndexSnapshots(journal, List.of(index), PATH, 3_600_000).restore();
+    }
+
+    private int addUser(String login) {
+        return userDbStorage.addUser(new User(null, login + "@yandex.ru", login, login,
+                LocalDate.parse("1990-01-01"), null)).getId();
+    }
+
+    private int addFilm(String name) {
+        return filmDbStorage.addFilm(new Film(null, name, "Description", LocalDate.parse("2000-01-01"), 120,
+                new Mpa(1, "G"), 0)).getId();
+    }
+}
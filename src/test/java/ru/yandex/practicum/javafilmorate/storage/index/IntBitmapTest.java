@@ -0,0 +1,98 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+class IntBitmapTest {
+
+    @Test
+    @DisplayName("Сжатое множество ведёт себя как TreeSet в разреженных и плотных блоках")
+    void testMatchesTreeSet() {
+        SplittableRandom random = new SplittableRandom(42);
+        IntBitmap bitmap = new IntBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 60_000; i++) {
+            /* Первый блок заполняется плотно и переходит в битовую карту, остальные остаются массивами */
+            int value = random.nextInt(4) == 0 ? random.nextInt(1 << 20) : random.nextInt(12_000);
+            if (random.nextInt(5) == 0) {
+                Assertions.assertEquals(expected.remove(value), bitmap.remove(value), "remove " + value);
+            } else {
+                Assertions.assertEquals(expected.add(value), bitmap.add(value), "add " + value);
+            }
+        }
+        Assertions.assertEquals(expected.size(), bitmap.cardinality(), "Количество значений не совпадает");
+        Assertions.assertEquals(new ArrayList<>(expected), values(bitmap), "Значения или их порядок не совпадают");
+        for (int value = 0; value < 13_000; value++) {
+            Assertions.assertEquals(expected.contains(value), bitmap.contains(value), "contains " + value);
+        }
+
+        /* Обратный переход в массив при удалении из плотного блока */
+        for (int value = 0; value < 12_000; value++) {
+            Assertions.assertEquals(expected.remove(value), bitmap.remove(value), "remove " + value);
+        }
+        Assertions.assertEquals(new ArrayList<>(expected), values(bitmap), "Значения после удаления не совпадают");
+        expected.forEach(bitmap::remove);
+        Assertions.assertTrue(bitmap.isEmpty(), "Множество должно стать пустым");
+        Assertions.assertEquals(List.of(), values(bitmap));
+    }
+
+    @Test
+    @DisplayName("Пересечение и разность для всех сочетаний массивов и битовых карт")
+    void testIntersections() {
+        SplittableRandom random = new SplittableRandom(7);
+        IntBitmap dense = new IntBitmap();
+        IntBitmap sparse = new IntBitmap();
+        TreeSet<Integer> denseExpected = new TreeSet<>();
+        TreeSet<Integer> sparseExpected = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(3 << 16);
+            dense.add(value);
+            denseExpected.add(value);
+        }
+        for (int i = 0; i < 2_000; i++) {
+            int value = random.nextInt(4 << 16);
+            sparse.add(value);
+            sparseExpected.add(value);
+        }
+        IntBitmap otherDense = new IntBitmap();
+        TreeSet<Integer> otherDenseExpected = new TreeSet<>();
+        for (int i = 0; i < 30_000; i++) {
+            int value = random.nextInt(2 << 16);
+            otherDense.add(value);
+            otherDenseExpected.add(value);
+        }
+
+        assertIntersection(denseExpected, sparseExpected, dense, sparse);
+        assertIntersection(sparseExpected, denseExpected, sparse, dense);
+        assertIntersection(denseExpected, otherDenseExpected, dense, otherDense);
+        assertIntersection(sparseExpected, sparseExpected, sparse, sparse);
+
+        TreeSet<Integer> difference = new TreeSet<>(denseExpected);
+        difference.removeAll(sparseExpected);
+        List<Integer> actual = new ArrayList<>();
+        dense.forEachAndNot(sparse, actual::add);
+        Assertions.assertEquals(new ArrayList<>(difference), actual, "Разность не совпадает");
+    }
+
+    private static void assertIntersection(TreeSet<Integer> leftExpected, TreeSet<Integer> rightExpected,
+                                           IntBitmap left, IntBitmap right) {
+        TreeSet<Integer> intersection = new TreeSet<>(leftExpected);
+        intersection.retainAll(rightExpected);
+        Assertions.assertEquals(intersection.size(), left.andCardinality(right), "Размер пересечения не совпадает");
+        List<Integer> actual = new ArrayList<>();
+        left.forEachAnd(right, actual::add);
+        Assertions.assertEquals(new ArrayList<>(intersection), actual, "Пересечение не совпадает");
+    }
+
+    private static List<Integer> values(IntBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.LikesDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+
+@SpringBootTest(classes = JavaFilmorateApplication.class)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class PopularityIndexTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final UserDbStorage userDbStorage;
+    private final FilmDbStorage filmDbStorage;
+
+    @Test
+    @DisplayName("Лайки, зафиксированные во время загрузки рейтинга, не теряются")
+    void testLikesCommittedDuringLoad() throws Exception {
+        int first = addFilm("First");
+        int second = addFilm("Second");
+        int userId = userDbStorage.addUser(new User(null, "user@yandex.ru", "user", "User",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        int otherId = userDbStorage.addUser(new User(null, "other@yandex.ru", "other", "Other",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        CountDownLatch selected = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        Thread committing = Thread.currentThread();
+        /* Загрузка прочитала FILMS и ждёт, пока лайки зафиксируются и их колбэки либо встанут в очередь
+           за блокировкой загрузки, либо отработают */
+        JdbcTemplate pausingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                super.query(sql, rch);
+                if (sql.contains("FROM FILMS")) {
+                    selected.countDown();
+                    await(committed);
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+                    while (completed.getCount() > 0 && committing.getState() != Thread.State.WAITING
+                            && System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+        };
+        PopularityIndex index = new PopularityIndex(pausingTemplate);
+        LikesDbStorage likes = new LikesDbStorage(jdbcTemplate, index,
+                new LikeIndex(jdbcTemplate, new IndexJournal(jdbcTemplate, false)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> loading = executor.submit(() -> index.top(null, null, 10));
+            await(selected);
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        committed.countDown();
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        completed.countDown();
+                    }
+                });
+                likes.addLike(second, userId);
+                likes.addLike(second, otherId);
+            });
+            loading.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(List.of(second, first), index.top(null, null, 10),
+                "Лайки, зафиксированные во время загрузки, должны попасть в рейтинг");
+
+        likes.deleteLike(second, userId);
+        likes.addLike(first, userId);
+        likes.addLike(first, otherId);
+        Assertions.assertEquals(List.of(first, second), index.top(null, null, 10));
+    }
+
+    @Test
+    @DisplayName("Удаление пользователя обновляет рейтинг его фильмов без перезагрузки")
+    void testUserDeletionRefreshesOnlyLikedFilms() {
+        int first = addFilm("First");
+        int second = addFilm("Second");
+        int userId = userDbStorage.addUser(new User(null, "user@yandex.ru", "user", "User",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        int otherId = userDbStorage.addUser(new User(null, "other@yandex.ru", "other", "Other",
+                LocalDate.parse("1990-01-01"), null)).getId();
+        AtomicInteger loads = new AtomicInteger();
+        JdbcTemplate countingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                if (sql.contains("FROM FILMS")) {
+                    loads.incrementAndGet();
+                }
+                super.query(sql, rch);
+            }
+        };
+        PopularityIndex index = new PopularityIndex(countingTemplate);
+        LikeIndex likeIndex = new LikeIndex(jdbcTemplate, new IndexJournal(jdbcTemplate, false));
+        LikesDbStorage likes = new LikesDbStorage(jdbcTemplate, index, likeIndex);
+        UserDbStorage users = new UserDbStorage(jdbcTemplate, index, likeIndex,
+                new TopReviewsIndex(jdbcTemplate, 3, 100), new FriendIndex(jdbcTemplate,
+                new IndexJournal(jdbcTemplate, false)));
+        likes.addLike(second, userId);
+        likes.addLike(second, otherId);
+        likes.addLike(first, otherId);
+        Assertions.assertEquals(List.of(second, first), index.top(null, null, 10));
+
+        users.deleteUser(userId);
+
+        Assertions.assertEquals(List.of(first, second), index.top(null, null, 10));
+        Assertions.assertEquals(1, loads.get(), "Рейтинг перезагружен после удаления пользователя");
+    }
+
+    private int addFilm(String name) {
+        return filmDbStorage.addFilm(new Film(null, name, "Description", LocalDate.parse("2000-01-01"), 120,
+                new Mpa(1, "G"), 0)).getId();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Не дождались соседнего потока");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.javafilmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.javafilmorate.JavaFilmorateApplication;
+import ru.yandex.practicum.javafilmorate.model.Film;
+import ru.yandex.practicum.javafilmorate.model.Mpa;
+import ru.yandex.practicum.javafilmorate.model.Review;
+import ru.yandex.practicum.javafilmorate.model.User;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.FilmDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.ReviewDbStorage;
+import ru.yandex.practicum.javafilmorate.storage.dao.implementation.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD;
+
+@SpringBootTest(classes = JavaFilmorateApplication.class)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = AFTER_EACH_TEST_METHOD)
+class TopReviewsIndexTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final PlatformTransactionManager transactionManager;
+    private final UserDbStorage userDbStorage;
+    private final FilmDbStorage filmDbStorage;
+    private final ReviewDbStorage reviewDbStorage;
+    private final TopReviewsIndex topReviews;
+
+    @Test
+    @DisplayName("Соседний поток не видит в списке отзывов голос из незафиксированной транзакции")
+    void testOtherThreadReadsDuringOpenTransaction() throws Exception {
+        int filmId = filmDbStorage.addFilm(new Film(null, "Film", "Description", LocalDate.parse("2000-01-01"), 120,
+                new Mpa(1, "G"), 0)).getId();
+        int authorId = addUser("author");
+        int voterId = addUser("voter");
+        int first = reviewDbStorage.add(new Review(0, "First", true, authorId, filmId, 0)).getReviewId();
+        int second = reviewDbStorage.add(new Review(0, "Second", true, authorId, filmId, 0)).getReviewId();
+        Assertions.assertEquals(List.of(first, second), top(filmId));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.executeWithoutResult(status -> {
+                reviewDbStorage.setVote(second, voterId, 1);
+                Assertions.assertEquals(List.of(first, second), read(executor, filmId),
+                        "Голос виден до фиксации");
+            });
+            Assertions.assertEquals(List.of(second, first), top(filmId), "Зафиксированный голос не виден");
+
+            transaction.executeWithoutResult(status -> {
+                reviewDbStorage.setVote(first, voterId, 1);
+                reviewDbStorage.setVote(first, authorId, 1);
+                Assertions.assertEquals(List.of(second, first), read(executor, filmId),
+                        "Голоса видны до фиксации");
+                status.setRollbackOnly();
+            });
+            Assertions.assertEquals(List.of(second, first), top(filmId), "Отменённые голоса остались в списке");
+        } finally {
+            executor.shutdownNow();
+        }
+        long hits = topReviews.getHits();
+        top(filmId);
+        Assertions.assertEquals(hits + 1, topReviews.getHits(), "Список вне транзакции должен отдаваться из памяти");
+    }
+
+    private int addUser(String login) {
+        return userDbStorage.addUser(new User(null, login + "@yandex.ru", login, login,
+                LocalDate.parse("1990-01-01"), null)).getId();
+    }
+
+    private List<Integer> read(ExecutorService executor, int filmId) {
+        try {
+            return executor.submit(() -> top(filmId)).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Integer> top(int filmId) {
+        return reviewDbStorage.findReviewsByFilmID(filmId, null, 10).stream()
+                .map(Review::getReviewId)
+                .collect(Collectors.toList());
+    }
+}